@@ -2,9 +2,12 @@ package com.contare.printers.averydennison;
 
 import com.contare.printers.core.BasePrinter;
 import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.types.SendFunction;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -22,17 +25,38 @@ public class AveryDennisonPrinter extends BasePrinter {
 
     @Override
     public Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, false, (conn) -> conn.send(content));
+    }
+
+    @Override
+    public Set<String> print(final InputStream content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, false, (conn) -> conn.send(content));
+    }
+
+    @Override
+    public Set<String> print(final Path content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, true, (conn) -> conn.send(content));
+    }
+
+    // transfer: the job sends a file, so the socket is backed by a channel
+    private Set<String> print(final String sku, final Integer epcs, final boolean transfer, final SendFunction sender) throws PrinterException {
         final Set<String> results = new TreeSet<>();
 
+        setSku(sku);
+
+        boolean completed = false;
+        long sentAt = System.currentTimeMillis();
+
         int iteration = 0;                                  // loop iterations
         long elapsedTime = 0L;
         long lastReadTime = System.currentTimeMillis();
         long maxTimeWithoutRead = 15_000;
 
         try {
-            connection.reconnect();
+            connection.reconnect(transfer);
 
-            connection.send(content);
+            sentAt = System.currentTimeMillis();
+            sender.send(connection);
 
             while ((elapsedTime = System.currentTimeMillis() - lastReadTime) < maxTimeWithoutRead) {
                 logger.infof("Socket iteration: %d - elapsed time: %d ms", iteration, elapsedTime);
@@ -48,7 +72,7 @@ public class AveryDennisonPrinter extends BasePrinter {
                             lastReadTime = System.currentTimeMillis();
                             boolean added = results.add(read);
                             if (added) {
-                                onReceiveEpc(read, null);
+                                receiveEpc(read, null);
                             }
                         }
                     }
@@ -58,9 +82,14 @@ public class AveryDennisonPrinter extends BasePrinter {
                     logger.error("Failed to read socket", e);
                 }
             }
+
+            completed = true;
         } catch (IOException e) {
             throw new PrinterException(e);
         } finally {
+            // the job ends when the printer stops returning epcs, so the idle timeout is not part of it
+            recordJob(sku, epcs, results.size(), Math.max(0, lastReadTime - sentAt), completed);
+
             // stop printing
             printing = false;
             // close printer connection
@@ -1,16 +1,33 @@
 package com.contare.printers.core;
 
+import com.contare.printers.core.cache.SettingsCache;
+import com.contare.printers.core.cache.SkuRegistry;
 import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.ByteBufferInputStream;
+import com.contare.printers.core.journal.EpcJournal;
+import com.contare.printers.core.objects.EpcDuplicate;
+import com.contare.printers.core.objects.EpcEvent;
+import com.contare.printers.core.objects.JobStats;
 import com.contare.printers.core.objects.RawPacket;
+import com.contare.printers.core.registry.EpcRegistry;
+import com.contare.printers.core.stream.EpcBatcher;
+import com.contare.printers.core.stream.EpcPublisher;
+import com.contare.printers.core.stream.EventRing;
 import com.contare.printers.core.types.ParseFunction;
 import com.contare.printers.core.utils.CmdUtils;
+import lombok.RequiredArgsConstructor;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
 public abstract class BasePrinter implements Printer {
@@ -21,34 +38,57 @@ public abstract class BasePrinter implements Printer {
 
     protected final PrinterConnection connection;
     protected final Logger logger;
+    protected final String label;
 
-    protected final Set<String> _skus = ConcurrentHashMap.newKeySet();
+    protected final EpcPublisher epcStream = new EpcPublisher();    // epcs of every job, see 'receiveEpc'
+    protected volatile EventRing events;                            // ring shared with other printers, null = none
+    protected volatile EpcBatcher batcher;                          // bulk epc delivery, null = none
+    protected volatile EpcJournal journal;                          // durable record of confirmed epcs, null = none
+    protected volatile EpcRegistry registry;                        // process-wide duplicate detection, null = none
+    private long journalJob = 0;                                    // journal id of the current job, 0 = not started
+    private final AtomicReference<CancelRequest> cancelRequest = new AtomicReference<>(); // posted by other threads
+    private volatile long jobId = 0;                                // identity of the current job, see 'setJobId'
+    private boolean canceled = false;                               // current job canceled by a request, see 'recordJob'
+
+    protected final SkuRegistry _skus = new SkuRegistry();  // canceled skus, forgotten after a while
+    protected final SettingsCache settings = new SettingsCache();
 
     protected String sku;                   // last/current SKU printed
     protected boolean printing = false;
     protected boolean paused = false;
+    protected volatile boolean bufferPressure = false;  // printer reported its receive buffer near full during the current job
+    protected volatile JobStats lastJob;                // statistics of the last finished job
 
     public BasePrinter(final String ip, final Integer port) {
         connection = new PrinterConnection(ip, port);
-        logger = Logger.getLogger(createLabel(ip, port));
+        label = createLabel(ip, port);
+        logger = Logger.getLogger(label);
     }
 
     protected abstract String createLabel(final String ip, final Integer port);
 
     @Override
     public void connect() throws PrinterException {
+        settings.invalidate();
         try {
             connection.connect();
         } catch (IOException e) {
+            receiveError("Error connecting printer", e);
             throw new PrinterException(e, "Error connecting printer");
         }
     }
 
+    /**
+     * Reconnect after an error, applied settings are forgotten (see {@link SettingsCache}).
+     * obs.: drivers reconnect the socket directly at the start of each job, which keeps the settings.
+     */
     @Override
     public void reconnect() throws PrinterException {
+        settings.invalidate();
         try {
-            connection.reconnect();
+            connection.reconnect(false);
         } catch (IOException e) {
+            receiveError("Error reconnecting printer", e);
             throw new PrinterException(e, "Error reconnecting printer");
         }
     }
@@ -58,6 +98,7 @@ public abstract class BasePrinter implements Printer {
         try {
             connection.close();
         } catch (IOException e) {
+            receiveError("Error closing printer connection", e);
             throw new PrinterException(e, "Error closing printer connection");
         }
     }
@@ -74,12 +115,261 @@ public abstract class BasePrinter implements Printer {
         return canceled;
     }
 
+    @Override
+    public Set<String> print(final Path content, final String sku, final Integer epcs) throws PrinterException {
+        Objects.requireNonNull(content, "Content path cannot be null");
+        try (final InputStream in = Files.newInputStream(content)) {
+            return print(in, sku, epcs);
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error reading file '%s'", content);
+        }
+    }
+
+    @Override
+    public Set<String> print(final ByteBuffer content, final String sku, final Integer epcs) throws PrinterException {
+        Objects.requireNonNull(content, "Content buffer cannot be null");
+        return print(new ByteBufferInputStream(content.duplicate()), sku, epcs);
+    }
+
+    @Override
+    public JobStats getLastJob() {
+        return lastJob;
+    }
+
+    @Override
+    public EpcPublisher getEpcStream() {
+        return epcStream;
+    }
+
+    public EventRing getEventRing() {
+        return events;
+    }
+
+    /**
+     * Publish EPC, status and error events of this printer in a ring shared with other printers.
+     *
+     * @param events - shared ring, null to stop publishing
+     */
+    public void setEventRing(final EventRing events) {
+        this.events = events;
+    }
+
+    public EpcBatcher getEpcBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Deliver the epcs of this printer in bulk, the last batch of a job is delivered when the job ends.
+     *
+     * @param batcher - batcher (may be shared with other printers), null to stop batching
+     */
+    public void setEpcBatcher(final EpcBatcher batcher) {
+        this.batcher = batcher;
+    }
+
+    public EpcJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Record every epc confirmed by this printer in a durable journal, a job is started in the journal with its
+     * first epc and ended when the driver records the job.
+     *
+     * @param journal - journal (may be shared with other printers), null to stop recording
+     */
+    public void setJournal(final EpcJournal journal) {
+        this.journal = journal;
+    }
+
+    public EpcRegistry getEpcRegistry() {
+        return registry;
+    }
+
+    /**
+     * Check every epc confirmed by this printer against a registry shared by every printer, an epc already encoded
+     * (by any printer) is published as an error on the event ring and delivered to the registry listeners.
+     *
+     * @param registry - shared registry, null to stop checking
+     */
+    public void setEpcRegistry(final EpcRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Record a new epc in the journal, check it in the registry and publish it on the printer stream, event ring and
+     * batcher, then call the {@link #onReceiveEpc} hook.
+     * Drivers call it once per epc returned by the printer, it blocks while a stream subscriber is behind.
+     *
+     * @param epc - rfid hexadecimal string.
+     * @param tid - tag id, null if the printer does not return it.
+     * @throws PrinterException if the journal cannot be written or interrupted while waiting for a subscriber.
+     */
+    protected void receiveEpc(final String epc, final String tid) throws PrinterException {
+        final EpcJournal log = journal;
+        if (log != null) {
+            if (journalJob == 0) {
+                journalJob = log.begin(sku, label);
+            }
+            log.append(journalJob, epc, tid);
+        }
+        final EpcRegistry known = registry;
+        if (known != null) {
+            final EpcDuplicate duplicate = known.register(epc, label, sku);
+            if (duplicate != null) {
+                receiveError(duplicate.toString(), null);
+            }
+        }
+        final EventRing ring = events;
+        if (ring != null) {
+            ring.publishEpc(label, sku, epc, tid);
+        }
+        final EpcBatcher bulk = batcher;
+        if (bulk != null) {
+            bulk.add(label, sku, epc, tid);
+        }
+        if (epcStream.hasSubscribers()) {
+            try {
+                epcStream.publish(new EpcEvent(epc, tid, sku, label, System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrinterException(e, "Interrupted while publishing EPC '%s'", epc);
+            }
+        }
+        onReceiveEpc(epc, tid);
+    }
+
+    /**
+     * Publish a printer status change on the event ring, drivers call it when the status differs from the last one.
+     *
+     * @param status - vendor status message
+     */
+    protected void receiveStatus(final Object status) {
+        final EventRing ring = events;
+        if (ring != null) {
+            ring.publishStatus(label, sku, status);
+        }
+    }
+
+    /**
+     * Publish a printer error on the event ring.
+     *
+     * @param message - error description
+     * @param error   - cause, may be null
+     */
+    protected void receiveError(final String message, final Throwable error) {
+        final EventRing ring = events;
+        if (ring != null) {
+            ring.publishError(label, sku, message, error);
+        }
+    }
+
+    /**
+     * Record statistics of a finished job.
+     * <p>
+     * obs.: a job that did not complete because its sku is ignored or a cancel request was handled
+     *       is recorded as canceled (see {@link JobStats#isCanceled()}), it is not a printer failure.
+     *
+     * @param sku       - job sku
+     * @param labels    - number of labels sent
+     * @param printed   - number of epcs returned by the printer
+     * @param elapsed   - job duration (milliseconds)
+     * @param completed - true if the printer finished the job without errors
+     */
+    protected void recordJob(final String sku, final Integer labels, final int printed, final long elapsed, final boolean completed) {
+        final boolean skipped = !completed && (canceled || isIgnoredSku(sku));
+        canceled = false;
+        // dropped before 'lastJob' is visible, callers reacting to it (e.g. a router canceling a failed job) post new requests
+        cancelRequest.set(null);
+        lastJob = new JobStats(sku, (labels != null) ? labels : printed, printed, elapsed, bufferPressure, completed, skipped);
+        logger.debugf("Job finished: %s", lastJob);
+        if (!completed && !skipped) {
+            receiveError("Job did not complete", null);
+        }
+        final EpcBatcher bulk = batcher;
+        if (bulk != null) {
+            bulk.endJob(label, sku);
+        }
+        final EpcJournal log = journal;
+        if (log != null && journalJob != 0) {
+            try {
+                log.end(journalJob, completed);
+            } catch (PrinterException e) {
+                logger.errorf(e, "Failed to record the end of journal job %d", journalJob);
+            }
+        }
+        journalJob = 0;
+    }
+
     protected void setSku(final String sku) {
         this.sku = sku;
     }
 
+    @Override
+    public void setJobId(final long job) {
+        jobId = job;
+        // requests of another job are stale
+        cancelRequest.updateAndGet((r) -> (r != null && r.job == job) ? r : null);
+    }
+
+    @Override
+    public long getJobId() {
+        return jobId;
+    }
+
+    @Override
+    public boolean requestCancel(final long job) {
+        if (!canCancelWhilePrinting(false)) {
+            logger.warnf("Job %d cannot be canceled while printing", job);
+            return false;
+        }
+        cancelRequest.set(new CancelRequest(job, false));
+        logger.infof("Cancel of job %d requested", job);
+        return true;
+    }
+
+    @Override
+    public boolean requestCancelSku(final long job) {
+        if (!canCancelWhilePrinting(true)) {
+            logger.warnf("SKU of job %d cannot be canceled while printing", job);
+            return false;
+        }
+        cancelRequest.set(new CancelRequest(job, true));
+        logger.infof("Cancel of the SKU of job %d requested", job);
+        return true;
+    }
+
+    /**
+     * Drivers that call {@link #handleCancelRequest()} while they wait for the printer override it.
+     *
+     * @param ignore - true for a sku cancel (see {@link #cancelSku()}), false for a job cancel (see {@link #cancel()})
+     * @return true if cancel requests are handled between polls, false if the printer can only be canceled directly.
+     */
+    protected boolean canCancelWhilePrinting(final boolean ignore) {
+        return false;
+    }
+
     /**
-     * Mark sku as ignored so on next 'print' calls
+     * Handle a cancel posted by {@link #requestCancel(long)} / {@link #requestCancelSku(long)},
+     * drivers call it from the printing thread between polls.
+     *
+     * @return true if the current job was canceled, the job should stop waiting for the printer.
+     * @throws PrinterException if the cancel command fails.
+     */
+    protected boolean handleCancelRequest() throws PrinterException {
+        final CancelRequest requested = cancelRequest.getAndSet(null);
+        if (requested == null) {
+            return false;
+        }
+        if (requested.job != jobId) {
+            logger.debugf("Ignoring cancel of job %d, printing job %d", requested.job, jobId);
+            return false;
+        }
+        canceled = true;
+        return requested.ignore ? cancelSku() : cancel();
+    }
+
+    /**
+     * Mark sku as ignored so on next 'print' calls, until it expires from the registry.
      *
      * @param sku - sku to be ignored.
      * @return true if successfully added to skus list.
@@ -88,7 +378,8 @@ public abstract class BasePrinter implements Printer {
         return _skus.add(sku);
     }
 
-    protected boolean isIgnoredSku(final String sku) {
+    @Override
+    public boolean isIgnoredSku(final String sku) {
         return _skus.contains(sku);
     }
 
@@ -96,6 +387,13 @@ public abstract class BasePrinter implements Printer {
         _skus.clear();
     }
 
+    /**
+     * @return registry of canceled skus (size, expirations and evictions for metrics).
+     */
+    public SkuRegistry getIgnoredSkus() {
+        return _skus;
+    }
+
     // HELPERS
 
     /**
@@ -155,4 +453,10 @@ public abstract class BasePrinter implements Printer {
         }
     }
 
+    @RequiredArgsConstructor
+    private static class CancelRequest {
+        private final long job;         // identity of the job to cancel (see setJobId)
+        private final boolean ignore;   // keep ignoring the sku on next jobs (see cancelSku)
+    }
+
 }
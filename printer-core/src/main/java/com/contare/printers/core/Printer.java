@@ -1,7 +1,12 @@
 package com.contare.printers.core;
 
 import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.JobStats;
+import com.contare.printers.core.stream.EpcPublisher;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.Set;
 
 public interface Printer extends AutoCloseable {
@@ -17,6 +22,54 @@ public interface Printer extends AutoCloseable {
      */
     Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException;
 
+    /**
+     * Stream label content to printer, content is sent in bounded chunks so memory does not grow with job size.
+     *
+     * @param content - label content stream (not closed)
+     * @param sku     - current sku
+     * @param epcs    - number of epcs inside content
+     * @return        - list of epcs printed by printer
+     * @throws PrinterException
+     */
+    Set<String> print(final InputStream content, final String sku, final Integer epcs) throws PrinterException;
+
+    /**
+     * Stream label file to printer.
+     *
+     * @param content - label file path
+     * @param sku     - current sku
+     * @param epcs    - number of epcs inside content
+     * @return        - list of epcs printed by printer
+     * @throws PrinterException
+     */
+    Set<String> print(final Path content, final String sku, final Integer epcs) throws PrinterException;
+
+    /**
+     * Stream label content to printer, the buffer position is not modified.
+     *
+     * @param content - label content buffer (from position to limit)
+     * @param sku     - current sku
+     * @param epcs    - number of epcs inside content
+     * @return        - list of epcs printed by printer
+     * @throws PrinterException
+     */
+    Set<String> print(final ByteBuffer content, final String sku, final Integer epcs) throws PrinterException;
+
+    /**
+     * Statistics of the last finished job, used to size and route the next ones.
+     *
+     * @return last job statistics, null if no job was printed yet.
+     */
+    JobStats getLastJob();
+
+    /**
+     * Stream of the EPCs returned by the printer for every job, with backpressure and batched delivery.
+     * Subscribers receive EPCs as they are encoded, without subclassing the driver.
+     *
+     * @return printer EPC stream.
+     */
+    EpcPublisher getEpcStream();
+
     /**
      * Hook called when the printer returns a new EPC/TID.
      *
@@ -77,4 +130,42 @@ public interface Printer extends AutoCloseable {
      */
     boolean cancelSku() throws PrinterException;
 
+    /**
+     * @param sku - sku
+     * @return true if the sku was canceled (see {@link #cancelSku()}) and its jobs are skipped.
+     */
+    boolean isIgnoredSku(final String sku);
+
+    /**
+     * Tag the next job with an identity, so cancel requests only reach the job they were posted for.
+     *
+     * obs.: set by the thread printing (e.g. the printer queue) right before each job, 0 once it returns.
+     *
+     * @param job - job identity, 0 = none
+     */
+    void setJobId(final long job);
+
+    long getJobId();
+
+    /**
+     * Ask the thread printing to cancel a job, safe to call from any thread (see {@link #cancel()}).
+     *
+     * obs.: sent by the printing thread between status polls, as {@link #requestCancelSku(long)}.
+     *
+     * @param job - identity of the job to cancel (see {@link #setJobId(long)}), ignored if another job is printing
+     * @return false if the driver cannot cancel a job while it prints (nothing is posted).
+     */
+    boolean requestCancel(final long job);
+
+    /**
+     * Ask the thread printing to cancel the SKU of a job, safe to call from any thread.
+     *
+     * obs.: the connection belongs to the printing thread, so it sends the cancel (see {@link #cancelSku()})
+     *       between status polls, the request is dropped once the job finishes.
+     *
+     * @param job - identity of the job to cancel (see {@link #setJobId(long)}), ignored if another job is printing
+     * @return false if the driver cannot cancel a job while it prints (nothing is posted).
+     */
+    boolean requestCancelSku(final long job);
+
 }
@@ -1,5 +1,6 @@
 package com.contare.printers.core;
 
+import com.contare.printers.core.io.PooledOutputStream;
 import com.contare.printers.core.objects.RawPacket;
 import lombok.Getter;
 import org.jboss.logging.Logger;
@@ -9,8 +10,13 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -23,6 +29,8 @@ public class PrinterConnection implements Closeable {
     private static final int STX = 0x02;    // start of text: first character of message text, and may be used to terminate the message heading.
     private static final int ETX = 0x03;    // end of text: in message transmission, delimits the end of the main text of a message.
 
+    private static final int CHUNK_SIZE = 8_192; // maximum number of bytes written at once when streaming content
+
     private final Logger logger = Logger.getLogger(PrinterConnection.class);
 
     private final String ip;
@@ -30,6 +38,7 @@ public class PrinterConnection implements Closeable {
     private final Charset charset;
 
     private final Object lock = new Object();
+    private boolean channelBacked = false;  // socket backed by a SocketChannel, only needed to transfer files
     private Socket _socket;
     private BufferedInputStream _input;
     private BufferedOutputStream _output;
@@ -48,11 +57,22 @@ public class PrinterConnection implements Closeable {
         return (_socket != null && _socket.isConnected() && !_socket.isClosed());
     }
 
-    public void connect(final int timeout) throws IOException {
+    /**
+     * Connect to the printer.
+     * <p>
+     * obs.: a channel-backed socket is only needed by {@link #send(FileChannel, long, long)}, plain sockets are kept
+     * otherwise: on Java 8, a timed read on a channel-backed socket holds the channel blocking lock and serialises
+     * writes behind it.
+     *
+     * @param timeout - connect timeout (ms)
+     * @param channel - true to back the socket by a SocketChannel
+     */
+    public void connect(final int timeout, final boolean channel) throws IOException {
         synchronized (lock) {
             try {
                 // create tcp socket
-                _socket = new Socket();
+                _socket = channel ? SocketChannel.open().socket() : new Socket();
+                this.channelBacked = channel;
                 _socket.connect(new InetSocketAddress(ip, port), timeout);
                 _socket.setSoTimeout(5_000);
                 _socket.setTcpNoDelay(true);
@@ -75,6 +95,10 @@ public class PrinterConnection implements Closeable {
         }
     }
 
+    public void connect(final int timeout) throws IOException {
+        connect(timeout, false);
+    }
+
     public void connect() throws IOException {
         connect(5_000);
     }
@@ -116,11 +140,21 @@ public class PrinterConnection implements Closeable {
         }
     }
 
+    /**
+     * Reconnect the socket, keeping the kind of socket of the last connection (see {@link #reconnect(boolean)}).
+     */
     public void reconnect() throws IOException {
+        reconnect(channelBacked);
+    }
+
+    /**
+     * @param channel - true to back the socket by a SocketChannel, drivers ask for it when a job transfers a file
+     */
+    public void reconnect(final boolean channel) throws IOException {
         if (isConnected()) {
             disconnect();
         }
-        connect();
+        connect(5_000, channel);
     }
 
     @Override
@@ -162,10 +196,23 @@ public class PrinterConnection implements Closeable {
      * @throws IOException if IO error or not connected
      */
     public void send(final byte[] bytes) throws IOException {
+        if (bytes == null) return;
+        send(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Send a region of a byte array to the printer and flush.
+     *
+     * @param bytes  payload
+     * @param offset first byte to be sent
+     * @param length number of bytes to be sent
+     * @throws IOException if IO error or not connected
+     */
+    public void send(final byte[] bytes, final int offset, final int length) throws IOException {
         if (bytes == null) return;
         synchronized (lock) {
             try {
-                _output.write(bytes);
+                _output.write(bytes, offset, length);
                 _output.flush();
             } catch (IOException e) {
                 // TODO: Should I implement a custom exception for printer connection errors?
@@ -174,6 +221,141 @@ public class PrinterConnection implements Closeable {
         }
     }
 
+    /**
+     * Send a job made of several segments (e.g. header, label bodies, footer) without concatenating them.
+     * Segments are written with a single gathering write whenever the socket allows it, then flushed.
+     * <p>
+     * obs.: segments are sent from position to limit, their positions are not modified so cached templates can be reused.
+     *
+     * @param segments payload segments, in order
+     * @return number of bytes sent.
+     * @throws IOException if IO error or not connected
+     */
+    public long send(final ByteBuffer... segments) throws IOException {
+        if (segments == null || segments.length == 0) return 0;
+
+        final ByteBuffer[] views = new ByteBuffer[segments.length];
+        long total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            views[i] = (segments[i] != null) ? segments[i].duplicate() : ByteBuffer.allocate(0);
+            total += views[i].remaining();
+        }
+
+        synchronized (lock) {
+            // bytes still buffered by previous send calls go first
+            _output.flush();
+
+            final SocketChannel channel = _socket.getChannel();
+            if (channel == null) {
+                // plain socket (see connect), write the segments through the stream
+                final byte[] chunk = new byte[CHUNK_SIZE];
+                for (ByteBuffer view : views) {
+                    while (view.hasRemaining()) {
+                        final int n = Math.min(chunk.length, view.remaining());
+                        view.get(chunk, 0, n);
+                        _output.write(chunk, 0, n);
+                    }
+                }
+                _output.flush();
+                return total;
+            }
+
+            long sent = 0;
+            while (sent < total) {
+                sent += channel.write(views);
+            }
+            return sent;
+        }
+    }
+
+    /**
+     * Send content assembled into pooled buffers, buffers are given back to the pool once the write completes (or fails).
+     *
+     * @param content pooled content
+     * @return number of bytes sent.
+     * @throws IOException if IO error or not connected
+     */
+    public long send(final PooledOutputStream content) throws IOException {
+        if (content == null) return 0;
+        try {
+            return send(content.segments());
+        } finally {
+            content.close();
+        }
+    }
+
+    /**
+     * Stream content to the printer in bounded chunks and flush once the stream is exhausted.
+     * <p>
+     * obs.: memory usage does not depend on the content size, the stream is not closed.
+     *
+     * @param in payload stream
+     * @return number of bytes sent.
+     * @throws IOException if IO error or not connected
+     */
+    public long send(final InputStream in) throws IOException {
+        if (in == null) return 0;
+        synchronized (lock) {
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            long total = 0;
+            int n;
+            while ((n = in.read(chunk)) != EOF) {
+                _output.write(chunk, 0, n);
+                total += n;
+            }
+            _output.flush();
+            return total;
+        }
+    }
+
+    /**
+     * Send a file to the printer without copying its bytes into the Java heap.
+     *
+     * @param path file to be sent
+     * @return number of bytes sent.
+     * @throws IOException if IO error or not connected
+     */
+    public long send(final Path path) throws IOException {
+        if (path == null) return 0;
+        try (final FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return send(file, 0, file.size());
+        }
+    }
+
+    /**
+     * Send a region of a file to the printer using FileChannel.transferTo (sendfile when supported by the OS).
+     * <p>
+     * obs.: bytes still buffered by previous send calls are flushed first, so ordering is preserved; the connection
+     * must be opened with a channel-backed socket ({@link #reconnect(boolean)}).
+     *
+     * @param file     file channel
+     * @param position first byte to be sent
+     * @param count    number of bytes to be sent
+     * @return number of bytes sent.
+     * @throws IOException if IO error, not connected or the socket is not backed by a channel
+     */
+    public long send(final FileChannel file, final long position, final long count) throws IOException {
+        if (file == null) return 0;
+        synchronized (lock) {
+            _output.flush();
+
+            final SocketChannel channel = _socket.getChannel();
+            if (channel == null) {
+                throw new IOException(String.format("Connection to printer %s:%d is not backed by a channel", ip, port));
+            }
+
+            long sent = 0;
+            while (sent < count) {
+                final long n = file.transferTo(position + sent, count - sent, channel);
+                if (n <= 0 && (position + sent) >= file.size()) {
+                    throw new EOFException(String.format("File ended after %d of %d bytes", sent, count));
+                }
+                sent += n;
+            }
+            return sent;
+        }
+    }
+
     /**
      * Read all lines from the printer until EOF.
      *
@@ -0,0 +1,295 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.PrinterConsumer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.BufferPool;
+import com.contare.printers.core.io.PooledOutputStream;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Bulk label generation pipeline.
+ * <p>
+ * Records are read sequentially and grouped into job-sized chunks (a chunk never mixes SKUs),
+ * each chunk is rendered in parallel on a ForkJoinPool and chunks are delivered to the sink in input order.
+ * At most 'window' chunks are rendered or waiting for delivery at the same time, so memory stays bounded
+ * no matter how many records the source has.
+ * <p>
+ * With a {@link BufferPool} (see {@link #setBufferPool}) each chunk is rendered straight into pooled direct buffers,
+ * the labels of a chunk are rendered in sequence (chunks still render in parallel) and the printer sends the chunk
+ * from the pool ({@link LabelChunk#getStream()}); the sink owns the chunk and closes it once printed.
+ *
+ * @param <T> - record type
+ */
+public class BulkGenerator<T> {
+
+    private static final int THRESHOLD = 64; // labels rendered sequentially by a single fork/join task
+
+    private final Logger logger = Logger.getLogger(BulkGenerator.class);
+
+    private final ForkJoinPool pool;
+    private final LabelRenderer<T> renderer;
+    private final Function<T, String> sku;
+    private final Function<T, String> epc;
+    private final int chunkSize;    // maximum number of labels per chunk
+    private final int window;       // maximum number of chunks in flight
+
+    @Getter
+    @Setter
+    private volatile String header = "";    // content prepended to every chunk (e.g. printer setup), read by the pool threads
+    @Getter
+    @Setter
+    private volatile String footer = "";    // content appended to every chunk
+
+    private volatile BufferPool buffers;        // render chunks into pooled buffers, null = Strings
+    private volatile String owner;              // pool owner charged for the buffers (e.g. printer label)
+    private volatile Charset charset;           // printer charset of the pooled content
+
+    public BulkGenerator(final ForkJoinPool pool,
+                         final LabelRenderer<T> renderer,
+                         final Function<T, String> sku,
+                         final Function<T, String> epc,
+                         final int chunkSize,
+                         final int window) {
+        if (chunkSize <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Chunk size and window must be positive");
+        }
+        this.pool = Objects.requireNonNull(pool, "Pool is required");
+        this.renderer = Objects.requireNonNull(renderer, "Renderer is required");
+        this.sku = Objects.requireNonNull(sku, "SKU function is required");
+        this.epc = Objects.requireNonNull(epc, "EPC function is required");
+        this.chunkSize = chunkSize;
+        this.window = window;
+    }
+
+    public BulkGenerator(final LabelRenderer<T> renderer,
+                         final Function<T, String> sku,
+                         final Function<T, String> epc,
+                         final int chunkSize) {
+        // keep every core busy, plus one chunk waiting for delivery
+        this(ForkJoinPool.commonPool(), renderer, sku, epc, chunkSize, ForkJoinPool.commonPool().getParallelism() + 1);
+    }
+
+    /**
+     * Render chunks into pooled direct buffers instead of Strings.
+     *
+     * @param buffers - buffer pool, null to render Strings
+     * @param owner   - pool owner charged for the buffers (e.g. printer label), limited by its quota
+     * @param charset - printer charset
+     */
+    public void setBufferPool(final BufferPool buffers, final String owner, final Charset charset) {
+        this.owner = owner;
+        this.charset = charset;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Render every record and deliver the chunks, in order, to the sink.
+     *
+     * @param records - record source, consumed lazily
+     * @param sink    - chunk consumer (e.g. printer queue)
+     * @return number of chunks generated.
+     * @throws PrinterException if rendering fails or the sink rejects a chunk.
+     */
+    public long generate(final Iterator<T> records, final PrinterConsumer<LabelChunk> sink) throws PrinterException {
+        final Deque<ChunkTask> inflight = new ArrayDeque<>(window);
+
+        long index = 0;
+        try {
+            List<T> batch = new ArrayList<>(chunkSize);
+            String current = null;
+
+            while (records.hasNext()) {
+                final T record = records.next();
+                final String value = sku.apply(record);
+
+                if (!batch.isEmpty() && (batch.size() >= chunkSize || !Objects.equals(value, current))) {
+                    submit(inflight, new ChunkTask(index++, current, batch), sink);
+                    batch = new ArrayList<>(chunkSize);
+                }
+
+                current = value;
+                batch.add(record);
+            }
+
+            if (!batch.isEmpty()) {
+                submit(inflight, new ChunkTask(index++, current, batch), sink);
+            }
+
+            while (!inflight.isEmpty()) {
+                deliver(inflight.poll(), sink);
+            }
+
+            logger.debugf("Generated %d chunks", index);
+            return index;
+        } finally {
+            // stop rendering chunks that will never be delivered
+            for (ChunkTask task : inflight) {
+                task.abandon();
+            }
+        }
+    }
+
+    private void submit(final Deque<ChunkTask> inflight, final ChunkTask task, final PrinterConsumer<LabelChunk> sink) throws PrinterException {
+        if (inflight.size() >= window) {
+            deliver(inflight.poll(), sink);
+        }
+        pool.execute(task);
+        inflight.add(task);
+    }
+
+    private void deliver(final ChunkTask task, final PrinterConsumer<LabelChunk> sink) throws PrinterException {
+        final LabelChunk chunk;
+        try {
+            chunk = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PrinterException(e, "Interrupted while rendering labels");
+        } catch (ExecutionException e) {
+            throw new PrinterException(e.getCause(), "Error rendering labels");
+        }
+        logger.debugf("Chunk rendered: %s", chunk);
+        try {
+            sink.accept(chunk);
+        } catch (PrinterException | RuntimeException e) {
+            chunk.close();
+            throw e;
+        }
+    }
+
+    private class ChunkTask extends RecursiveTask<LabelChunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long index;
+        private final String sku;
+        private final List<T> records;
+
+        private boolean abandoned = false;  // generation stopped, guarded by 'this'
+        private LabelChunk rendered;        // guarded by 'this'
+
+        ChunkTask(final long index, final String sku, final List<T> records) {
+            this.index = index;
+            this.sku = sku;
+            this.records = records;
+        }
+
+        // give back the buffers of a chunk that will never be delivered, rendered or not yet
+        synchronized void abandon() {
+            abandoned = true;
+            cancel(false);
+            if (rendered != null) {
+                rendered.close();
+            }
+        }
+
+        @Override
+        protected LabelChunk compute() {
+            final LabelChunk chunk = (buffers != null) ? renderPooled() : render();
+            synchronized (this) {
+                if (abandoned) {
+                    chunk.close();
+                } else {
+                    rendered = chunk;
+                }
+            }
+            return chunk;
+        }
+
+        private LabelChunk renderPooled() {
+            final BufferPool arena = buffers;
+            final Charset cs = charset;
+            final PooledOutputStream out = arena.open(owner);
+            try {
+                out.write(header, cs);
+                for (T record : records) {
+                    renderer.render(record, out, cs);
+                }
+                out.write(footer, cs);
+            } catch (IOException e) {
+                out.close();
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                out.close();
+                throw e;
+            }
+            return new LabelChunk(index, sku, out, cs, epcs());
+        }
+
+        private List<String> epcs() {
+            final List<String> epcs = new ArrayList<>(records.size());
+            for (T record : records) {
+                epcs.add(epc.apply(record));
+            }
+            return epcs;
+        }
+
+        private LabelChunk render() {
+            final String[] labels = new String[records.size()];
+            new RenderTask(records, labels, 0, labels.length).invoke();
+
+            int length = header.length() + footer.length();
+            for (String label : labels) {
+                length += label.length();
+            }
+
+            final StringBuilder sb = new StringBuilder(length);
+            sb.append(header);
+            for (String label : labels) {
+                sb.append(label);
+            }
+            sb.append(footer);
+
+            return new LabelChunk(index, sku, sb.toString(), epcs());
+        }
+
+    }
+
+    private class RenderTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> records;
+        private final String[] labels;
+        private final int from;
+        private final int to;
+
+        RenderTask(final List<T> records, final String[] labels, final int from, final int to) {
+            this.records = records;
+            this.labels = labels;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    labels[i] = renderer.render(records.get(i));
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RenderTask(records, labels, from, middle), new RenderTask(records, labels, middle, to));
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.objects.JobStats;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learns the best number of labels per job for each printer model.
+ * <p>
+ * Behaviour (additive increase / multiplicative decrease):
+ * - Starts at the initial size and grows 25% after every full chunk finished without buffer pressure,
+ * as long as throughput (labels/second) keeps up with the best one observed.
+ * - Halves the size when the printer reports its receive buffer near full / full,
+ * and caps further growth below the size that caused it.
+ * - Goes back to the best size when a larger chunk was slower.
+ * - Every job is judged on its own size, not on the current one: with render-ahead the job that finished was sized
+ * before the previous measurement was applied.
+ */
+public class ChunkSizer {
+
+    @Getter
+    private final int min;
+    @Getter
+    private final int max;
+    @Getter
+    private final int initial;
+
+    private final Map<String, State> models = new ConcurrentHashMap<>();
+
+    public ChunkSizer(final int min, final int max, final int initial) {
+        if (min <= 0 || max < min || initial < min || initial > max) {
+            throw new IllegalArgumentException("Invalid chunk size limits");
+        }
+        this.min = min;
+        this.max = max;
+        this.initial = initial;
+    }
+
+    public ChunkSizer() {
+        this(10, 2_000, 100);
+    }
+
+    /**
+     * @param model - printer model
+     * @return number of labels for the next job.
+     */
+    public int next(final String model) {
+        final State state = state(model);
+        synchronized (state) {
+            return state.size;
+        }
+    }
+
+    /**
+     * Learn from a finished job, sent with as many labels as the sizer asked for.
+     *
+     * @param model - printer model
+     * @param stats - job statistics
+     */
+    public void record(final String model, final JobStats stats) {
+        if (stats == null) return;
+        record(model, stats, stats.getLabels());
+    }
+
+    /**
+     * Learn from a finished job.
+     *
+     * @param model     - printer model
+     * @param stats     - job statistics
+     * @param requested - chunk size returned by {@link #next} when the job was sized
+     */
+    public void record(final String model, final JobStats stats, final int requested) {
+        if (stats == null) return;
+
+        final int size = stats.getLabels();
+        final State state = state(model);
+        synchronized (state) {
+            if (stats.isBufferPressure()) {
+                state.ceiling = Math.max(min, size - (size / 4));
+                state.size = Math.max(min, Math.min(state.size, size / 2));
+                return;
+            }
+
+            // failed or partial jobs (e.g. last chunk of a SKU) say nothing about the chunk size
+            if (!stats.isCompleted() || size < requested) {
+                return;
+            }
+
+            final double lps = stats.getLabelsPerSecond();
+            if (lps >= state.best * 0.95) {
+                if (lps > state.best) {
+                    state.best = lps;
+                    state.bestSize = size;
+                }
+                state.size = Math.min(state.ceiling, state.size + Math.max(1, state.size / 4));
+            } else {
+                state.size = state.bestSize;
+            }
+        }
+    }
+
+    private State state(final String model) {
+        return models.computeIfAbsent(model, (k) -> new State(initial, max));
+    }
+
+    private static class State {
+
+        private int size;
+        private int ceiling;
+        private double best = 0.0;
+        private int bestSize;
+
+        State(final int size, final int ceiling) {
+            this.size = size;
+            this.ceiling = ceiling;
+            this.bestSize = size;
+        }
+
+    }
+
+}
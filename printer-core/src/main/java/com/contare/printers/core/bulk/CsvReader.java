@@ -0,0 +1,125 @@
+package com.contare.printers.core.bulk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy CSV record source, the first line is the header with field names.
+ * Each record is returned as a map of field name to value, so it can be rendered by a {@link LabelTemplate}.
+ * <p>
+ * obs.:
+ * 1. Fields may be enclosed by double quotes, a doubled quote inside them is an escaped quote.
+ * 2. Quoted fields spanning multiple lines are not supported.
+ * 3. Blank lines are skipped.
+ */
+public class CsvReader implements Iterator<Map<String, String>>, Closeable {
+
+    private static final char QUOTE = '"';
+
+    private final BufferedReader reader;
+    private final char delimiter;
+    private final List<String> header;
+
+    private String next;
+
+    public CsvReader(final Reader reader, final char delimiter) throws IOException {
+        this.reader = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+        this.delimiter = delimiter;
+
+        final String line = readLine();
+        if (line == null) {
+            throw new IOException("CSV header not found");
+        }
+        this.header = split(line);
+        this.next = readLine();
+    }
+
+    public CsvReader(final Reader reader) throws IOException {
+        this(reader, ',');
+    }
+
+    public List<String> getHeader() {
+        return new ArrayList<>(header);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+
+        final List<String> values = split(next);
+        final Map<String, String> record = new LinkedHashMap<>(header.size() * 2);
+        for (int i = 0; i < header.size(); i++) {
+            record.put(header.get(i), (i < values.size()) ? values.get(i) : "");
+        }
+
+        try {
+            next = readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private List<String> split(final String line) {
+        final List<String> out = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == QUOTE && i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    sb.append(QUOTE);
+                    i++;
+                } else if (c == QUOTE) {
+                    quoted = false;
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == delimiter) {
+                out.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        out.add(sb.toString().trim());
+
+        return out;
+    }
+
+}
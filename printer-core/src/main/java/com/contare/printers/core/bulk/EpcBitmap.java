@@ -0,0 +1,123 @@
+package com.contare.printers.core.bulk;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set of EPCs stored as bitmaps over serial number ranges.
+ * <p>
+ * Behaviour:
+ * - An EPC is split into a prefix (header, company, item reference, ...) and its serial number, the last 'serialBits'
+ * bits of the hexadecimal EPC (38 bits for SGTIN-96).
+ * - Each prefix keeps its serials in 4096-bit blocks created on demand, so a job of consecutive serials costs about
+ * one bit per EPC and lookups are a hash lookup plus a bit test.
+ * - EPCs that are not hexadecimal (or too short) are kept as plain strings.
+ * <p>
+ * obs.: not thread-safe.
+ */
+public class EpcBitmap {
+
+    public static final int SGTIN96_SERIAL_BITS = 38;
+
+    private static final int BLOCK_SHIFT = 12;                      // 4096 serials per block
+    private static final int BLOCK_WORDS = (1 << BLOCK_SHIFT) / 64;
+
+    private final int serialBits;
+    private final int tailChars;        // hexadecimal characters holding the serial
+    private final long serialMask;
+
+    private final Map<String, Map<Long, long[]>> prefixes = new HashMap<>();
+    private final Set<String> others = new HashSet<>();
+    private int size = 0;
+
+    public EpcBitmap() {
+        this(SGTIN96_SERIAL_BITS);
+    }
+
+    public EpcBitmap(final int serialBits) {
+        if (serialBits <= 0 || serialBits > 60) {
+            throw new IllegalArgumentException("Invalid serial bits: " + serialBits);
+        }
+        this.serialBits = serialBits;
+        this.tailChars = (serialBits + 3) / 4;
+        this.serialMask = (1L << serialBits) - 1;
+    }
+
+    /**
+     * @param epc - rfid hexadecimal string
+     * @return true if the epc was not in the set.
+     */
+    public boolean add(final String epc) {
+        final long serial = serial(epc);
+        if (serial < 0) {
+            if (others.add(epc)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        final long[] block = prefixes.computeIfAbsent(prefix(epc), (k) -> new HashMap<>())
+            .computeIfAbsent(serial >>> BLOCK_SHIFT, (k) -> new long[BLOCK_WORDS]);
+        final int bit = (int) (serial & ((1 << BLOCK_SHIFT) - 1));
+        final long mask = 1L << (bit & 63);
+        if ((block[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+        block[bit >>> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    public boolean contains(final String epc) {
+        final long serial = serial(epc);
+        if (serial < 0) {
+            return others.contains(epc);
+        }
+
+        final Map<Long, long[]> blocks = prefixes.get(prefix(epc));
+        if (blocks == null) return false;
+        final long[] block = blocks.get(serial >>> BLOCK_SHIFT);
+        if (block == null) return false;
+        final int bit = (int) (serial & ((1 << BLOCK_SHIFT) - 1));
+        return (block[bit >>> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param epc - rfid hexadecimal string
+     * @return serial number of the epc, -1 if it is not hexadecimal or too short.
+     */
+    public long serial(final String epc) {
+        if (epc == null || epc.length() <= tailChars) {
+            return -1;
+        }
+        long tail = 0;
+        for (int i = epc.length() - tailChars; i < epc.length(); i++) {
+            final int digit = Character.digit(epc.charAt(i), 16);
+            if (digit < 0) return -1;
+            tail = (tail << 4) | digit;
+        }
+        return tail & serialMask;
+    }
+
+    /**
+     * @param epc - rfid hexadecimal string (see {@link #serial(String)})
+     * @return epc without its serial number, EPCs of the same product share it.
+     */
+    public String prefix(final String epc) {
+        final int split = epc.length() - tailChars;
+        final long high = Long.parseLong(epc.substring(split), 16) >>> serialBits;
+        return epc.substring(0, split).toUpperCase() + ":" + Long.toHexString(high);
+    }
+
+}
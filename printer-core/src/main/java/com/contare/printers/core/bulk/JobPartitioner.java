@@ -0,0 +1,131 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.Printer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.JobStats;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Splits the EPC list of a SKU into jobs sized by a {@link ChunkSizer} and prints them one after the other.
+ * <p>
+ * The next chunk is rendered while the current one is printing, so the printer does not wait for rendering
+ * between jobs. Printer statistics of every job are fed back to the sizer.
+ * <p>
+ * obs.: since the next chunk is rendered ahead, a new size is applied from the chunk after it.
+ */
+public class JobPartitioner {
+
+    private final Logger logger = Logger.getLogger(JobPartitioner.class);
+
+    @Getter
+    private final ChunkSizer sizer;
+
+    public JobPartitioner(final ChunkSizer sizer) {
+        this.sizer = Objects.requireNonNull(sizer, "Chunk sizer is required");
+    }
+
+    public JobPartitioner() {
+        this(new ChunkSizer());
+    }
+
+    public Set<String> print(final Printer printer, final String sku, final List<String> epcs, final LabelRenderer<List<String>> renderer) throws PrinterException {
+        return print(printer, printer.getClass().getSimpleName(), sku, epcs, renderer);
+    }
+
+    /**
+     * Print every EPC of a SKU, partitioned into jobs.
+     *
+     * @param printer  - target printer
+     * @param model    - printer model, chunk sizes are learned per model
+     * @param sku      - current sku
+     * @param epcs     - every epc of the sku
+     * @param renderer - render the job content of a list of epcs
+     * @return epcs printed by printer
+     * @throws PrinterException if a job fails.
+     */
+    public Set<String> print(final Printer printer,
+                             final String model,
+                             final String sku,
+                             final List<String> epcs,
+                             final LabelRenderer<List<String>> renderer) throws PrinterException {
+        Objects.requireNonNull(printer, "Printer is required");
+        Objects.requireNonNull(epcs, "EPC list is required");
+        Objects.requireNonNull(renderer, "Renderer is required");
+
+        final Set<String> results = new TreeSet<>();
+
+        int offset = 0;
+        int requested = 0;                  // size asked to the sizer for 'chunk'
+        List<String> chunk = null;
+        CompletableFuture<String> pending = null;
+        if (!epcs.isEmpty()) {
+            requested = sizer.next(model);
+            chunk = epcs.subList(0, Math.min(epcs.size(), requested));
+            offset = chunk.size();
+            pending = render(renderer, chunk);
+        }
+
+        int jobs = 0;
+        while (chunk != null) {
+            final String content = await(pending);
+            final List<String> current = chunk;
+            final int size = requested;
+
+            // render the next chunk while this one prints
+            if (offset < epcs.size()) {
+                requested = sizer.next(model);
+                chunk = epcs.subList(offset, Math.min(epcs.size(), offset + requested));
+                offset += chunk.size();
+                pending = render(renderer, chunk);
+            } else {
+                chunk = null;
+                pending = null;
+            }
+
+            logger.debugf("Printing sku '%s', job %d (%d labels)", sku, jobs, current.size());
+            final Set<String> printed = printer.print(content, sku, current.size());
+            results.addAll(printed);
+            jobs++;
+
+            // measured on the job that just finished, not on the one rendered ahead
+            final JobStats stats = printer.getLastJob();
+            sizer.record(model, stats, size);
+            logger.debugf("Job finished: %s, next chunk size = %d", stats, sizer.next(model));
+
+            // printer is not printing anymore (sku canceled, error), do not flood it with the next chunks
+            if (printed.isEmpty()) {
+                logger.warnf("No EPC printed for sku '%s', aborting remaining %d labels", sku, epcs.size() - results.size());
+                if (pending != null) {
+                    pending.cancel(true);
+                }
+                break;
+            }
+        }
+
+        return results;
+    }
+
+    private CompletableFuture<String> render(final LabelRenderer<List<String>> renderer, final List<String> chunk) {
+        return CompletableFuture.supplyAsync(() -> renderer.render(chunk));
+    }
+
+    private String await(final CompletableFuture<String> future) throws PrinterException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PrinterException(e, "Interrupted while rendering labels");
+        } catch (ExecutionException e) {
+            throw new PrinterException(e.getCause(), "Error rendering labels");
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.PrinterConsumer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.journal.JournalJob;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Resume an interrupted job (connection drop, crash) by reprinting only the labels whose EPC was never confirmed,
+ * instead of the whole SKU partition.
+ * <p>
+ * Behaviour:
+ * - Confirmed EPCs come from the result sets of the attempts and/or from the journal (see {@link #confirmed}),
+ * they are loaded into an {@link EpcBitmap} so a job of millions of labels is checked in one pass.
+ * - {@link #verify} reports missing records (and their serial gaps), EPCs confirmed more than once and EPCs that are not
+ * part of the job.
+ * - {@link #resume} renders only the missing records with the job {@link BulkGenerator} and sends them to the sink,
+ * run {@link #verify} again with the new results to check the job is complete.
+ * <p>
+ * Usage pattern:
+ * JobResume&lt;Record&gt; resume = new JobResume&lt;&gt;(Record::getEpc);
+ * ResumeReport&lt;Record&gt; report = resume.resume(records, JobResume.confirmed(journal.getRecovered().values(), sku), generator, queue::submit);
+ *
+ * @param <T> - record type
+ */
+public class JobResume<T> {
+
+    private final Logger logger = Logger.getLogger(JobResume.class);
+
+    private final Function<T, String> epc;
+    private final int serialBits;
+
+    public JobResume(final Function<T, String> epc) {
+        this(epc, EpcBitmap.SGTIN96_SERIAL_BITS);
+    }
+
+    public JobResume(final Function<T, String> epc, final int serialBits) {
+        this.epc = Objects.requireNonNull(epc, "EPC function is required");
+        this.serialBits = serialBits;
+    }
+
+    /**
+     * EPCs of a sku confirmed in the journal, across every attempt (an epc encoded twice is listed twice).
+     *
+     * @param jobs - jobs rebuilt from the journal
+     * @param sku  - job sku, null for every sku
+     * @return confirmed epcs.
+     */
+    public static List<String> confirmed(final Collection<JournalJob> jobs, final String sku) {
+        final List<String> out = new ArrayList<>();
+        for (JournalJob job : jobs) {
+            if (sku == null || Objects.equals(sku, job.getSku())) {
+                out.addAll(job.getEpcs().keySet());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Compare the records of a job with the epcs confirmed by the printers.
+     *
+     * @param records   - every record of the job, in job order
+     * @param confirmed - epcs confirmed by the printers (repeated if confirmed more than once)
+     * @return report of missing, duplicated and unexpected epcs.
+     */
+    public ResumeReport<T> verify(final Collection<T> records, final Iterable<String> confirmed) {
+        final EpcBitmap done = new EpcBitmap(serialBits);
+        final Set<String> duplicates = new TreeSet<>();
+        for (String value : confirmed) {
+            if (!done.add(value)) {
+                duplicates.add(value);
+            }
+        }
+
+        final EpcBitmap expected = new EpcBitmap(serialBits);
+        final List<T> missing = new ArrayList<>();
+        for (T record : records) {
+            final String value = epc.apply(record);
+            if (expected.add(value) && !done.contains(value)) {
+                missing.add(record);
+            }
+        }
+
+        final Set<String> unexpected = new TreeSet<>();
+        for (String value : confirmed) {
+            if (!expected.contains(value)) {
+                unexpected.add(value);
+            }
+        }
+
+        final ResumeReport<T> report = new ResumeReport<>(expected.size(), done.size(), missing, gaps(expected, missing), duplicates, unexpected);
+        if (!report.isClean()) {
+            logger.warnf("Job verification: %s", report);
+        }
+        return report;
+    }
+
+    /**
+     * Reprint the records of a job whose epc was never confirmed.
+     *
+     * @param records   - every record of the job, in job order
+     * @param confirmed - epcs confirmed by the printers
+     * @param generator - label generator of the job
+     * @param sink      - chunk consumer (e.g. printer queue)
+     * @return report computed before reprinting.
+     * @throws PrinterException if rendering fails or the sink rejects a chunk.
+     */
+    public ResumeReport<T> resume(final Collection<T> records,
+                                  final Iterable<String> confirmed,
+                                  final BulkGenerator<T> generator,
+                                  final PrinterConsumer<LabelChunk> sink) throws PrinterException {
+        final ResumeReport<T> report = verify(records, confirmed);
+        if (report.isComplete()) {
+            logger.infof("Nothing to resume: %s", report);
+            return report;
+        }
+
+        logger.infof("Resuming %d of %d labels: %s", report.getMissing().size(), report.getExpected(), report.getGaps());
+        generator.generate(report.getMissing().iterator(), sink);
+        return report;
+    }
+
+    // missing hexadecimal epcs merged into ranges of consecutive serials, by prefix
+    private List<ResumeReport.Gap> gaps(final EpcBitmap bitmap, final List<T> missing) {
+        final List<Serial> serials = new ArrayList<>(missing.size());
+        for (T record : missing) {
+            final String value = epc.apply(record);
+            final long serial = bitmap.serial(value);
+            if (serial >= 0) {
+                serials.add(new Serial(bitmap.prefix(value), serial));
+            }
+        }
+        serials.sort(Comparator.comparing((Serial s) -> s.prefix).thenComparingLong((s) -> s.serial));
+
+        final List<ResumeReport.Gap> out = new ArrayList<>();
+        Serial first = null;
+        Serial last = null;
+        for (Serial s : serials) {
+            if (last != null && last.prefix.equals(s.prefix) && s.serial == last.serial + 1) {
+                last = s;
+                continue;
+            }
+            if (first != null) {
+                out.add(new ResumeReport.Gap(first.prefix, first.serial, last.serial));
+            }
+            first = s;
+            last = s;
+        }
+        if (first != null) {
+            out.add(new ResumeReport.Gap(first.prefix, first.serial, last.serial));
+        }
+        return out;
+    }
+
+    private static class Serial {
+        private final String prefix;
+        private final long serial;
+
+        private Serial(final String prefix, final long serial) {
+            this.prefix = prefix;
+            this.serial = serial;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.io.ByteBufferInputStream;
+import com.contare.printers.core.io.PooledOutputStream;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Job-sized block of rendered labels, all of them from the same SKU.
+ * <p>
+ * Chunks rendered into a {@link com.contare.printers.core.io.BufferPool} keep their content in pooled buffers:
+ * send them with {@link #getStream()} and close the chunk once printed to give the buffers back.
+ * <p>
+ * Usage pattern:
+ * try (LabelChunk c = chunk) { printer.print(c.getStream(), c.getSku(), c.size()); }
+ */
+@Getter
+public class LabelChunk implements AutoCloseable {
+
+    private final long index;           // chunk sequence number, starting at 0
+    private final String sku;
+    private final List<String> epcs;    // epcs inside content, in label order
+
+    @Getter(AccessLevel.NONE)
+    private final String content;               // header + rendered labels + footer, null if pooled
+    @Getter(AccessLevel.NONE)
+    private final PooledOutputStream buffers;   // same content in pooled buffers, null if not pooled
+    @Getter(AccessLevel.NONE)
+    private final Charset charset;              // charset of the pooled content
+
+    public LabelChunk(final long index, final String sku, final String content, final List<String> epcs) {
+        this.index = index;
+        this.sku = sku;
+        this.content = content;
+        this.epcs = epcs;
+        this.buffers = null;
+        this.charset = null;
+    }
+
+    public LabelChunk(final long index, final String sku, final PooledOutputStream buffers, final Charset charset, final List<String> epcs) {
+        this.index = index;
+        this.sku = sku;
+        this.content = null;
+        this.epcs = epcs;
+        this.buffers = buffers;
+        this.charset = charset;
+    }
+
+    public int size() {
+        return epcs.size();
+    }
+
+    public boolean isPooled() {
+        return buffers != null;
+    }
+
+    /**
+     * @return content, decoded from the pooled buffers (a copy) if the chunk is pooled.
+     */
+    public String getContent() {
+        if (buffers == null) {
+            return content;
+        }
+        final StringBuilder sb = new StringBuilder((int) buffers.getSize());
+        for (ByteBuffer segment : buffers.segments()) {
+            sb.append(charset.decode(segment));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return content bytes read straight from the pooled buffers.
+     * @throws IllegalStateException if the chunk is not pooled (print {@link #getContent()} instead).
+     */
+    public InputStream getStream() {
+        if (buffers == null) {
+            throw new IllegalStateException("Chunk " + index + " is not pooled");
+        }
+        final List<InputStream> streams = new ArrayList<>();
+        for (ByteBuffer segment : buffers.segments()) {
+            streams.add(new ByteBufferInputStream(segment));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    /**
+     * Give the pooled buffers back, the content is no longer available.
+     */
+    @Override
+    public void close() {
+        if (buffers != null) {
+            buffers.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final long length = (buffers != null) ? buffers.getSize() : content.length();
+        return String.format("%s{ index = %d, sku = %s, labels = %d, length = %d, pooled = %s }", getClass().getSimpleName(), index, sku, size(), length, isPooled());
+    }
+
+}
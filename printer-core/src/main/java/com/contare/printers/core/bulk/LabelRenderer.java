@@ -0,0 +1,33 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.io.PooledOutputStream;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Render the label content of a single record.
+ * <p>
+ * obs.: renderers are called concurrently by {@link BulkGenerator}, so they must be thread-safe.
+ *
+ * @param <T> - record type
+ */
+@FunctionalInterface
+public interface LabelRenderer<T> {
+
+    String render(final T record);
+
+    /**
+     * Render the label straight into pooled buffers, used by {@link BulkGenerator} when it has a buffer pool.
+     * Renderers that can write their parts directly should override it to skip the intermediate String.
+     *
+     * @param record  - record
+     * @param out     - pooled stream of the chunk
+     * @param charset - printer charset
+     * @throws IOException if the pool cannot provide more buffers.
+     */
+    default void render(final T record, final PooledOutputStream out, final Charset charset) throws IOException {
+        out.write(render(record), charset);
+    }
+
+}
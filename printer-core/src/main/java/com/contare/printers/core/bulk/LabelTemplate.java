@@ -0,0 +1,80 @@
+package com.contare.printers.core.bulk;
+
+import com.contare.printers.core.io.PooledOutputStream;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Label template with '${name}' placeholders, parsed once and rendered for each record.
+ * <p>
+ * e.g. "[ESC]IP0e:h,epc:${epc},fsw:0;" rendered with { epc = 3074257BF7194E4000001A85 }
+ * <p>
+ * obs.: placeholders are plain field names, expressions are not supported.
+ */
+public class LabelTemplate implements LabelRenderer<Map<String, String>> {
+
+    private static final String OPEN = "${";
+    private static final String CLOSE = "}";
+
+    private final List<String> literals = new ArrayList<>();  // text before each placeholder, plus the trailing text
+    private final List<String> fields = new ArrayList<>();    // placeholder names
+    private final int length;
+
+    public LabelTemplate(final String template) {
+        Objects.requireNonNull(template, "Template cannot be null");
+
+        int idx = 0;
+        while (true) {
+            final int start = template.indexOf(OPEN, idx);
+            final int end = (start < 0) ? -1 : template.indexOf(CLOSE, start + OPEN.length());
+            if (start < 0 || end < 0) {
+                literals.add(template.substring(idx));
+                break;
+            }
+            literals.add(template.substring(idx, start));
+            fields.add(template.substring(start + OPEN.length(), end).trim());
+            idx = end + CLOSE.length();
+        }
+
+        this.length = template.length();
+    }
+
+    public List<String> getFields() {
+        return new ArrayList<>(fields);
+    }
+
+    @Override
+    public String render(final Map<String, String> record) {
+        final StringBuilder sb = new StringBuilder(length + 64);
+        for (int i = 0; i < fields.size(); i++) {
+            sb.append(literals.get(i));
+
+            sb.append(value(record, fields.get(i)));
+        }
+        sb.append(literals.get(fields.size()));
+        return sb.toString();
+    }
+
+    @Override
+    public void render(final Map<String, String> record, final PooledOutputStream out, final Charset charset) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            out.write(literals.get(i), charset);
+            out.write(value(record, fields.get(i)), charset);
+        }
+        out.write(literals.get(fields.size()), charset);
+    }
+
+    private static String value(final Map<String, String> record, final String name) {
+        final String value = record.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Missing template field '%s'", name));
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.contare.printers.core.bulk;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Comparison of the EPCs a job should encode with the ones the printers confirmed, see {@link JobResume}.
+ *
+ * @param <T> - record type
+ */
+@Getter
+@RequiredArgsConstructor
+public class ResumeReport<T> {
+
+    private final int expected;             // distinct epcs the job should encode
+    private final int confirmed;            // distinct epcs confirmed by the printers
+    private final List<T> missing;          // records whose epc was never confirmed, in job order
+    private final List<Gap> gaps;           // missing epcs as serial ranges
+    private final Set<String> duplicates;   // epcs confirmed more than once (encoded twice)
+    private final Set<String> unexpected;   // epcs confirmed but not part of the job
+
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    /**
+     * @return true if every epc was encoded exactly once and nothing else was encoded.
+     */
+    public boolean isClean() {
+        return missing.isEmpty() && duplicates.isEmpty() && unexpected.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ expected = %d, confirmed = %d, missing = %d (%d gaps), duplicates = %d, unexpected = %d }",
+            getClass().getSimpleName(), expected, confirmed, missing.size(), gaps.size(), duplicates.size(), unexpected.size());
+    }
+
+    /**
+     * Consecutive missing serials of a product.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Gap {
+
+        private final String prefix;    // epc without serial, see {@link EpcBitmap#prefix(String)}
+        private final long from;        // first missing serial
+        private final long to;          // last missing serial (inclusive)
+
+        public long size() {
+            return to - from + 1;
+        }
+
+        @Override
+        public String toString() {
+            return (from == to) ? String.format("%s[%d]", prefix, from) : String.format("%s[%d..%d]", prefix, from, to);
+        }
+
+    }
+
+}
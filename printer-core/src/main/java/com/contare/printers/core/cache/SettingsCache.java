@@ -0,0 +1,95 @@
+package com.contare.printers.core.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Per-printer cache of configuration settings already applied during the current session.
+ * <p>
+ * Drivers use it to skip setup commands that would not change anything on the printer.
+ * Settings sent with a job are first staged and only become applied once the job completes,
+ * so a job that fails half-way never leaves the cache claiming settings the printer did not receive.
+ * <p>
+ * Invalidation:
+ * - Settings are held by the printer, not by the socket: the socket reconnect drivers do at the start of every job
+ * (PrinterConnection#reconnect) keeps the cache, otherwise no job would ever skip a command.
+ * - The cache is invalidated whenever the printer state becomes unknown: a job fails, or the printer is (re)connected
+ * through {@code Printer#connect} / {@code Printer#reconnect}, the recovery path callers use after an error
+ * (the printer may have been restarted in between).
+ * - A canceled or skipped job is not a failure, only the settings it staged are forgotten (see {@link #discard()}).
+ */
+public class SettingsCache {
+
+    private final Object lock = new Object();
+    private final Map<String, String> applied = new HashMap<>();
+    private final Map<String, String> staged = new HashMap<>();
+
+    /**
+     * Check if a setting would not change the printer state.
+     *
+     * @param key   - setting identifier (e.g. command name)
+     * @param value - setting value
+     * @return true if the same value is already applied or staged for the current job.
+     */
+    public boolean isApplied(final String key, final String value) {
+        synchronized (lock) {
+            final String current = staged.containsKey(key) ? staged.get(key) : applied.get(key);
+            return (current != null) && Objects.equals(current, value);
+        }
+    }
+
+    /**
+     * Record a setting sent to the printer but not yet confirmed.
+     *
+     * @param key   - setting identifier (e.g. command name)
+     * @param value - setting value
+     */
+    public void stage(final String key, final String value) {
+        synchronized (lock) {
+            staged.put(key, value);
+        }
+    }
+
+    /**
+     * Mark every staged setting as applied, called when a job completes successfully.
+     */
+    public void commit() {
+        synchronized (lock) {
+            applied.putAll(staged);
+            staged.clear();
+        }
+    }
+
+    /**
+     * Forget the staged settings, called when a job is canceled on purpose.
+     * <p>
+     * obs.: the printer may or may not have applied them before the cancel, so the same keys are forgotten
+     *       from the applied settings too, the others are kept.
+     */
+    public void discard() {
+        synchronized (lock) {
+            for (String key : staged.keySet()) {
+                applied.remove(key);
+            }
+            staged.clear();
+        }
+    }
+
+    /**
+     * Forget every applied and staged setting.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            applied.clear();
+            staged.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return applied.size();
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.contare.printers.core.cache;
+
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded registry of canceled SKUs, entries expire after a time-to-live so a SKU can be printed again later.
+ * <p>
+ * Behaviour:
+ * - Lookups are lock-free (a single map read), an expired entry found by a lookup is removed on the spot.
+ * - When the registry is full, expired entries are purged first, then the least recently used one among
+ * a small sample is evicted (approximate LRU, no global ordering to maintain). The sample starts at a random
+ * position, so entries early in the map iteration order are not always the candidates.
+ * - Expirations and evictions are counted, so metrics can tell canceled SKUs apart from forgotten ones.
+ */
+public class SkuRegistry {
+
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(30);
+    public static final int DEFAULT_MAX_SIZE = 1_024;
+
+    private static final int SAMPLE_SIZE = 8;           // entries compared when evicting
+    private static final long TOUCH_INTERVAL = 1_000;   // minimum time between access time updates (milliseconds)
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Getter
+    private final long ttl;     // time-to-live of each entry (milliseconds)
+    @Getter
+    private final int maxSize;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public SkuRegistry(final long ttl, final int maxSize) {
+        if (ttl <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid registry limits: ttl = " + ttl + ", maxSize = " + maxSize);
+        }
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    public SkuRegistry() {
+        this(DEFAULT_TTL, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Register a SKU, renewing its time-to-live if already present.
+     *
+     * @param sku - sku to register
+     * @return true if the sku was not registered.
+     */
+    public boolean add(final String sku) {
+        if (sku == null) return false;
+
+        final long now = System.currentTimeMillis();
+        final Entry prev = entries.put(sku, new Entry(now + ttl, now));
+        if (prev == null || prev.isExpired(now)) {
+            if (entries.size() > maxSize) {
+                evict(now, sku);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param sku - sku to check
+     * @return true if the sku is registered and not expired.
+     */
+    public boolean contains(final String sku) {
+        if (sku == null) return false;
+
+        final Entry entry = entries.get(sku);
+        if (entry == null) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (entry.isExpired(now)) {
+            if (entries.remove(sku, entry)) {
+                expired.incrementAndGet();
+            }
+            return false;
+        }
+        entry.touch(now);
+        return true;
+    }
+
+    public boolean remove(final String sku) {
+        return (sku != null) && entries.remove(sku) != null;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of entries, including expired ones not purged yet.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of entries dropped because their time-to-live ended.
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return number of entries dropped because the registry was full.
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    private void evict(final long now, final String added) {
+        // expired entries go first
+        final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().isExpired(now) && entries.remove(e.getKey(), e.getValue())) {
+                expired.incrementAndGet();
+            }
+        }
+
+        while (entries.size() > maxSize) {
+            // sample from a random offset, wrapping around to the first entries
+            final int offset = ThreadLocalRandom.current().nextInt(Math.max(entries.size(), 1));
+            String victim = null;
+            Entry oldest = null;
+            int sampled = 0;
+            for (int pass = 0; pass < 2 && sampled < SAMPLE_SIZE; pass++) {
+                int index = 0;
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    final int position = index++;
+                    if (pass == 0 && position < offset) continue;   // sampled on the second pass
+                    if (pass == 1 && position >= offset) break;     // sampled on the first pass
+                    if (e.getKey().equals(added)) continue;
+                    if (oldest == null || e.getValue().accessedAt < oldest.accessedAt) {
+                        victim = e.getKey();
+                        oldest = e.getValue();
+                    }
+                    if (++sampled >= SAMPLE_SIZE) break;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            if (entries.remove(victim, oldest)) {
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long expiresAt;
+        private volatile long accessedAt;
+
+        private Entry(final long expiresAt, final long accessedAt) {
+            this.expiresAt = expiresAt;
+            this.accessedAt = accessedAt;
+        }
+
+        private boolean isExpired(final long now) {
+            return now >= expiresAt;
+        }
+
+        // avoid a write on every lookup of a hot entry
+        private void touch(final long now) {
+            if (now - accessedAt >= TOUCH_INTERVAL) {
+                accessedAt = now;
+            }
+        }
+    }
+
+}
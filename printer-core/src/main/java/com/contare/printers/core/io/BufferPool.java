@@ -0,0 +1,156 @@
+package com.contare.printers.core.io;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Arena of reusable direct ByteBuffers used to assemble and send large jobs.
+ * <p>
+ * Buffers live outside the Java heap and are recycled, so building a job with thousands of labels
+ * does not create short-lived Strings/byte arrays that end up promoted to the old generation.
+ * Each owner (usually a printer) has a quota of buffers it may hold at the same time.
+ * <p>
+ * obs.: buffers are allocated lazily, up to the pool capacity.
+ */
+public class BufferPool {
+
+    @Getter
+    private final int bufferSize;       // size of each buffer (bytes)
+    @Getter
+    private final int capacity;         // maximum number of buffers
+    @Getter
+    private final int defaultQuota;     // maximum number of buffers held by a single owner
+
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final Map<String, AtomicInteger> owners = new ConcurrentHashMap<>();
+    private final Map<String, Integer> quotas = new ConcurrentHashMap<>();
+
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    public BufferPool(final int bufferSize, final int capacity, final int defaultQuota) {
+        if (bufferSize <= 0 || capacity <= 0 || defaultQuota <= 0) {
+            throw new IllegalArgumentException("Buffer size, capacity and quota must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.defaultQuota = defaultQuota;
+    }
+
+    public BufferPool() {
+        // 64 KB buffers, 32 MB in total, 8 MB per printer
+        this(64 * 1024, 512, 128);
+    }
+
+    public static BufferPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Open a stream that assembles content into pooled buffers.
+     *
+     * @param owner - buffer owner (e.g. printer label)
+     * @return stream, close it to give the buffers back.
+     */
+    public PooledOutputStream open(final String owner) {
+        return new PooledOutputStream(this, owner);
+    }
+
+    /**
+     * Take a cleared buffer from the pool.
+     *
+     * @param owner - buffer owner (e.g. printer label)
+     * @return buffer ready to be written.
+     * @throws IOException if the owner quota or the pool capacity is exhausted.
+     */
+    public ByteBuffer acquire(final String owner) throws IOException {
+        final AtomicInteger used = owners.computeIfAbsent(owner, (k) -> new AtomicInteger());
+        final int quota = getQuota(owner);
+        if (used.incrementAndGet() > quota) {
+            used.decrementAndGet();
+            throw new IOException(String.format("Buffer quota exceeded for '%s' (%d buffers)", owner, quota));
+        }
+
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            if (allocated.incrementAndGet() > capacity) {
+                allocated.decrementAndGet();
+                used.decrementAndGet();
+                throw new IOException(String.format("Buffer pool exhausted (%d buffers)", capacity));
+            }
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        final int current = inUse.incrementAndGet();
+        highWaterMark.accumulateAndGet(current, Math::max);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool.
+     *
+     * @param owner  - buffer owner used to acquire it
+     * @param buffer - buffer, it must not be used afterwards
+     */
+    public void release(final String owner, final ByteBuffer buffer) {
+        if (buffer == null) return;
+        final AtomicInteger used = owners.get(owner);
+        if (used != null) {
+            used.decrementAndGet();
+        }
+        inUse.decrementAndGet();
+        free.offer(buffer);
+    }
+
+    public void setQuota(final String owner, final int buffers) {
+        quotas.put(owner, buffers);
+    }
+
+    public int getQuota(final String owner) {
+        return quotas.getOrDefault(owner, defaultQuota);
+    }
+
+    // METRICS
+
+    public int getAllocated() {
+        return allocated.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public int getInUse(final String owner) {
+        final AtomicInteger used = owners.get(owner);
+        return (used != null) ? used.get() : 0;
+    }
+
+    /**
+     * @return maximum number of buffers in use at the same time since creation (or last reset).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    public void resetHighWaterMark() {
+        highWaterMark.set(inUse.get());
+    }
+
+    // created on first use, class initialization makes it thread-safe
+    private static class Holder {
+
+        private static final BufferPool INSTANCE = new BufferPool();
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.contare.printers.core.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream view over the remaining bytes of a ByteBuffer, it consumes the buffer position.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private static final int EOF = -1;
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? (buffer.get() & 0xFF) : EOF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) return 0;
+        if (!buffer.hasRemaining()) return EOF;
+        final int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) {
+        final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.contare.printers.core.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that normalizes line endings on the fly, every bare LF is replaced by CR + LF.
+ * <p>
+ * obs.: LF already preceded by CR is kept as is, so content with CRLF line endings passes through unchanged.
+ */
+public class NewlineInputStream extends FilterInputStream {
+
+    private static final int EOF = -1;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    private final byte[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean lastCR = false;     // last byte emitted was CR
+    private boolean pendingLF = false;  // CR emitted, LF still to be emitted
+
+    public NewlineInputStream(final InputStream in, final int size) {
+        super(in);
+        this.buffer = new byte[size];
+    }
+
+    public NewlineInputStream(final InputStream in) {
+        this(in, 8_192);
+    }
+
+    /**
+     * Normalize line endings of in-memory content the same way the stream does, so a label gives the same bytes
+     * whether it is printed from a String or a stream.
+     *
+     * @param content - content to normalize
+     * @return content with every bare LF replaced by CR + LF (the same instance if there is none).
+     */
+    public static String normalize(final String content) {
+        int bare = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == LF && (i == 0 || content.charAt(i - 1) != CR)) {
+                bare++;
+            }
+        }
+        if (bare == 0) return content;
+
+        final StringBuilder out = new StringBuilder(content.length() + bare);
+        for (int i = 0; i < content.length(); i++) {
+            final char c = content.charAt(i);
+            if (c == LF && (i == 0 || content.charAt(i - 1) != CR)) {
+                out.append((char) CR);
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        final int n = read(b, 0, 1);
+        return (n == EOF) ? EOF : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) return 0;
+
+        int n = 0;
+        while (n < len) {
+            if (pendingLF) {
+                b[off + n++] = LF;
+                pendingLF = false;
+                lastCR = false;
+                continue;
+            }
+
+            if (position >= limit) {
+                // never block for more data when we already have something to return
+                if (n > 0) break;
+
+                final int read = in.read(buffer, 0, buffer.length);
+                if (read == EOF) return EOF;
+                position = 0;
+                limit = read;
+                continue;
+            }
+
+            final byte c = buffer[position++];
+            if (c == LF && !lastCR) {
+                b[off + n++] = CR;
+                pendingLF = true;
+            } else {
+                b[off + n++] = c;
+                lastCR = (c == CR);
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        throw new IOException("skip not supported");
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - position) + (pendingLF ? 1 : 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
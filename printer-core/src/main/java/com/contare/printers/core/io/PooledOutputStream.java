@@ -0,0 +1,134 @@
+package com.contare.printers.core.io;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OutputStream that writes into buffers taken from a {@link BufferPool}.
+ * Renderers write label content here and the transport sends the resulting segments,
+ * closing the stream gives every buffer back to the pool.
+ */
+public class PooledOutputStream extends OutputStream {
+
+    private final BufferPool pool;
+    @Getter
+    private final String owner;
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private ByteBuffer current;
+    private CharsetEncoder encoder;     // reused across writes with the same charset
+    @Getter
+    private long size = 0;
+    private boolean closed = false;
+
+    PooledOutputStream(final BufferPool pool, final String owner) {
+        this.pool = pool;
+        this.owner = owner;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        writable().put((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final ByteBuffer buffer = writable();
+            final int n = Math.min(remaining, buffer.remaining());
+            buffer.put(b, offset, n);
+            offset += n;
+            remaining -= n;
+            size += n;
+        }
+    }
+
+    /**
+     * Encode text straight into the pooled buffers, without an intermediate byte array.
+     *
+     * @param value   - text
+     * @param charset - text charset
+     * @throws IOException if the pool cannot provide more buffers.
+     */
+    public void write(final CharSequence value, final Charset charset) throws IOException {
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            encoder.reset();
+        }
+        final CharBuffer in = CharBuffer.wrap(value);
+
+        boolean endOfInput = false;
+        while (true) {
+            final ByteBuffer buffer = writable();
+            final int start = buffer.position();
+            final CoderResult result = endOfInput ? encoder.flush(buffer) : encoder.encode(in, buffer, true);
+            size += buffer.position() - start;
+
+            if (result.isOverflow()) {
+                // not enough room for the next character, move to a new buffer
+                current = null;
+                continue;
+            } else if (result.isError()) {
+                result.throwException();
+            }
+
+            if (endOfInput) break;
+            endOfInput = true;
+        }
+    }
+
+    /**
+     * @return written content as read-only segments, ready to be sent with a gathering write.
+     */
+    public ByteBuffer[] segments() {
+        final ByteBuffer[] out = new ByteBuffer[buffers.size()];
+        for (int i = 0; i < out.length; i++) {
+            final ByteBuffer view = buffers.get(i).duplicate();
+            view.flip();
+            out[i] = view.asReadOnlyBuffer();
+        }
+        return out;
+    }
+
+    /**
+     * Give every buffer back to the pool, the content is no longer available.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (ByteBuffer buffer : buffers) {
+            pool.release(owner, buffer);
+        }
+        buffers.clear();
+        current = null;
+    }
+
+    private ByteBuffer writable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (current == null || !current.hasRemaining()) {
+            current = pool.acquire(owner);
+            buffers.add(current);
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,504 @@
+package com.contare.printers.core.io;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of CRC-checked records in memory-mapped segment files, the storage of the durable stores
+ * (EPC journal, durable job queue).
+ * <p>
+ * Behaviour:
+ * - Records are [length][body][crc32], length counts body and crc and is written last, so a record is only visible
+ * once complete; length 0 = end of segment. An append is a few writes into the mapped segment (microseconds).
+ * - Group commit: a flusher thread forces the segment to disk every 'syncInterval' milliseconds, covering every record
+ * appended since the last force; {@link #sync()} waits for the records appended so far to be on disk.
+ * - Segments have a fixed size, a new one is created when the current one is full. {@link #purge} deletes the oldest
+ * segments the owner no longer needs, in order, keeping the last ones as history.
+ * - On open, every segment is read back in order (see {@link RecordReader}), a torn record at the end (crash during an
+ * append) is discarded and appends continue after the last valid one.
+ * - Each segment carries state of the owner (e.g. the jobs with records in it), created by 'state'.
+ * <p>
+ * obs.: the segment state is not guarded by the log, owners update it under their own lock.
+ * <p>
+ * Usage pattern:
+ * SegmentedLog&lt;Set&lt;Long&gt;&gt; log = new SegmentedLog&lt;&gt;("EPC journal", dir, "epc-", ".journal", size, 10, HashSet::new, reader);
+ * log.append(length, (out) -&gt; out.put(type)...);
+ * log.purge(Set::isEmpty, retained);
+ */
+public class SegmentedLog<T> implements AutoCloseable {
+
+    private static final int MAX_STRING = Short.MAX_VALUE;
+
+    private final Logger logger = Logger.getLogger(SegmentedLog.class);
+
+    @Getter
+    private final String name;          // used in errors and the flusher thread name (e.g. "EPC journal")
+    @Getter
+    private final Path directory;
+    @Getter
+    private final int segmentSize;
+    @Getter
+    private final long syncInterval;    // maximum time between forces to disk (milliseconds)
+
+    private final String prefix;
+    private final String suffix;
+    private final Supplier<T> state;
+
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();                              // guarded by 'lock'
+    private final TreeMap<Integer, Segment<T>> segments = new TreeMap<>(); // guarded by 'lock'
+    private FileChannel channel;            // guarded by 'lock'
+    private MappedByteBuffer buffer;        // guarded by 'lock'
+    private Segment<T> segment;             // segment being written, guarded by 'lock'
+    private long appended = 0;              // records appended, guarded by 'lock'
+    private long synced = 0;                // records forced to disk, guarded by 'lock'
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Open a log, every valid record already on disk is given to 'reader' before this returns.
+     *
+     * @param name         - store name, used in errors (e.g. "EPC journal")
+     * @param directory    - segments directory, created if needed
+     * @param prefix       - segment file name prefix
+     * @param suffix       - segment file name suffix
+     * @param segmentSize  - segment file size (bytes)
+     * @param syncInterval - maximum time between forces to disk (milliseconds)
+     * @param state        - creates the owner state of each segment
+     * @param reader       - receives the records found on disk
+     * @throws IOException if the segments cannot be read or created.
+     */
+    public SegmentedLog(final String name, final Path directory, final String prefix, final String suffix,
+                        final int segmentSize, final long syncInterval,
+                        final Supplier<T> state, final RecordReader<T> reader) throws IOException {
+        if (segmentSize < 4_096 || syncInterval <= 0) {
+            throw new IllegalArgumentException("Invalid " + name + " settings: segment = " + segmentSize + ", sync = " + syncInterval);
+        }
+        this.name = name;
+        this.directory = directory;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+        this.state = state;
+
+        Files.createDirectories(directory);
+
+        final List<Path> paths = paths(directory, prefix, suffix);
+        int end = 0;
+        for (Path path : paths) {
+            final Segment<T> s = read(path, index(path, prefix, suffix), state, reader);
+            segments.put(s.index, s);
+            end = s.end;
+        }
+
+        synchronized (lock) {
+            if (paths.isEmpty()) {
+                open(0, 0);
+            } else {
+                open(index(paths.get(paths.size() - 1), prefix, suffix), end);
+            }
+        }
+
+        flusher = new Thread(this::flushLoop, name.toLowerCase().replace(' ', '-') + "-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Read every valid record of a log, without opening it for writing.
+     *
+     * @param directory - segments directory
+     * @param prefix    - segment file name prefix
+     * @param suffix    - segment file name suffix
+     * @param state     - creates the owner state of each segment
+     * @param reader    - receives the records
+     * @throws IOException if the segments cannot be read.
+     */
+    public static <T> void read(final Path directory, final String prefix, final String suffix,
+                                final Supplier<T> state, final RecordReader<T> reader) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (Path path : paths(directory, prefix, suffix)) {
+            read(path, index(path, prefix, suffix), state, reader);
+        }
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param length - body length (bytes), without the length and crc fields
+     * @param writer - writes exactly 'length' bytes from the buffer position
+     * @return position of the body inside the segment it was written to, see {@link #getSegment()}.
+     * @throws PrinterException if the log is closed or a new segment cannot be created.
+     */
+    public int append(final int length, final RecordWriter writer) throws PrinterException {
+        synchronized (lock) {
+            if (!running) {
+                throw new PrinterException("%s is closed", name);
+            }
+            if (buffer.remaining() < 4 + length + 4 + 4) {
+                roll(length);
+            }
+
+            final int start = buffer.position();
+            buffer.position(start + 4);
+            writer.write(buffer);
+            if (buffer.position() != start + 4 + length) {
+                throw new IllegalStateException("Record of " + name + " is " + (buffer.position() - start - 4) + " bytes, expected " + length);
+            }
+
+            final ByteBuffer body = buffer.duplicate();
+            body.position(start + 4);
+            body.limit(buffer.position());
+            crc.reset();
+            crc.update(body);
+            buffer.putInt((int) crc.getValue());
+
+            // length last, a record is only visible once complete
+            buffer.putInt(start, length + 4);
+            appended++;
+            return start + 4;
+        }
+    }
+
+    /**
+     * Delete the oldest segments no longer needed, beyond the last 'retained' of them.
+     * <p>
+     * obs.: in order and never past the first segment still needed (nor the one being written), so a record is never
+     * deleted before the earlier records it refers to.
+     *
+     * @param done     - true if the state of a segment says it is no longer needed
+     * @param retained - segments no longer needed kept as history
+     * @return segments deleted.
+     */
+    public List<Segment<T>> purge(final Predicate<T> done, final int retained) {
+        final List<Segment<T>> deleted = new ArrayList<>();
+        synchronized (lock) {
+            int unused = 0;
+            for (Segment<T> s : segments.values()) {
+                if (s == segment || !done.test(s.state)) break;
+                unused++;
+            }
+
+            final Iterator<Segment<T>> it = segments.values().iterator();
+            while (unused > retained && it.hasNext()) {
+                final Segment<T> s = it.next();
+                try {
+                    Files.deleteIfExists(s.path);
+                } catch (IOException e) {
+                    logger.warnf(e, "Error deleting %s segment %s", name, s.path);
+                    break;
+                }
+                it.remove();
+                deleted.add(s);
+                unused--;
+                logger.debugf("%s segment %s deleted", name, s.path);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @return segment being written, the one of the last {@link #append}.
+     */
+    public Segment<T> getSegment() {
+        synchronized (lock) {
+            return segment;
+        }
+    }
+
+    /**
+     * @return segments on disk, oldest first.
+     */
+    public List<Segment<T>> getSegments() {
+        synchronized (lock) {
+            return new ArrayList<>(segments.values());
+        }
+    }
+
+    /**
+     * @return number of segment files on disk.
+     */
+    public int size() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * Wait until every record appended so far is on disk.
+     *
+     * @throws PrinterException if interrupted or the log is closed.
+     */
+    public void sync() throws PrinterException {
+        synchronized (lock) {
+            final long target = appended;
+            lock.notifyAll();
+            while (synced < target) {
+                if (!flusher.isAlive()) {
+                    throw new PrinterException("%s is closed", name);
+                }
+                try {
+                    lock.wait(syncInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PrinterException(e, "Interrupted while syncing %s", name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Force pending records to disk and close the current segment.
+     */
+    @Override
+    public void close() throws PrinterException {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (lock) {
+            try {
+                buffer.force();
+                synced = appended;
+                channel.close();
+            } catch (IOException e) {
+                throw new PrinterException(e, "Error closing %s '%s'", name, directory);
+            }
+        }
+    }
+
+    // called holding 'lock'
+    private void roll(final int length) throws PrinterException {
+        if (4 + length + 4 + 4 > segmentSize) {
+            throw new PrinterException("Record too big for a %s segment: %d bytes", name, length);
+        }
+        try {
+            buffer.force();
+            channel.close();
+            open(segment.index + 1, 0);
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error creating %s segment %d", name, segment.index + 1);
+        }
+    }
+
+    // called holding 'lock'
+    private void open(final int index, final int position) throws IOException {
+        final Path path = directory.resolve(String.format("%s%08d%s", prefix, index, suffix));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+        segment = segments.get(index);
+        if (segment != null) {
+            // reopened segment: clear what is left of a torn record so it is never read back (up to a segment long)
+            for (int i = position; i < segmentSize; i++) {
+                if (buffer.get(i) != 0) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        } else {
+            segment = new Segment<>(index, path, buffer, state.get());
+            segments.put(index, segment);
+        }
+        buffer.position(position);
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                final long target;
+                final MappedByteBuffer current;
+                synchronized (lock) {
+                    if (appended == synced) {
+                        if (!running) return;
+                        lock.wait(syncInterval);
+                        continue;
+                    }
+                    target = appended;
+                    current = buffer;
+                }
+
+                current.force();
+
+                synchronized (lock) {
+                    synced = Math.max(synced, target);
+                    lock.notifyAll();
+                    if (running) {
+                        // let appends pile up so the next force covers many of them
+                        lock.wait(syncInterval);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // give every valid record of a segment to 'reader', the segment end is the position after the last one
+    private static <T> Segment<T> read(final Path path, final int index, final Supplier<T> state, final RecordReader<T> reader) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            final Segment<T> s = new Segment<>(index, path, in, state.get());
+            final CRC32 check = new CRC32();
+
+            int position = 0;
+            while (position + 4 <= in.limit()) {
+                final int length = in.getInt(position);
+                if (length <= 4 || position + 4 + length > in.limit()) {
+                    break;
+                }
+
+                final ByteBuffer body = in.duplicate();
+                body.position(position + 4);
+                body.limit(position + length);
+                check.reset();
+                check.update(body);
+                if ((int) check.getValue() != in.getInt(position + length)) {
+                    break;
+                }
+
+                body.position(position + 4);
+                reader.read(s, body);
+
+                position += 4 + length;
+            }
+            s.end = position;
+            return s;
+        }
+    }
+
+    private static List<Path> paths(final Path directory, final String prefix, final String suffix) throws IOException {
+        final List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                out.add(path);
+            }
+        }
+        out.sort((x, y) -> Integer.compare(index(x, prefix, suffix), index(y, prefix, suffix)));
+        return out;
+    }
+
+    private static int index(final Path path, final String prefix, final String suffix) {
+        final String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    /**
+     * @return UTF-8 bytes of a string field, null for null.
+     * @throws IllegalArgumentException if the value does not fit a string field.
+     */
+    public static byte[] bytes(final String value) {
+        if (value == null) return null;
+        final byte[] out = value.getBytes(StandardCharsets.UTF_8);
+        if (out.length > MAX_STRING) {
+            throw new IllegalArgumentException("Value too long for a log record: " + out.length + " bytes");
+        }
+        return out;
+    }
+
+    /**
+     * @return bytes taken by a string field (see {@link #putString}).
+     */
+    public static int size(final byte[] value) {
+        return 2 + ((value != null) ? value.length : 0);
+    }
+
+    /**
+     * Write a string field: [short length][bytes], length -1 = null.
+     */
+    public static void putString(final ByteBuffer out, final byte[] value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        out.putShort((short) value.length);
+        out.put(value);
+    }
+
+    /**
+     * Read a string field written by {@link #putString}.
+     */
+    public static String getString(final ByteBuffer in) {
+        final short length = in.getShort();
+        if (length < 0) return null;
+        final byte[] out = new byte[length];
+        in.get(out);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receives the records found on disk when a log is opened, in order.
+     */
+    @FunctionalInterface
+    public interface RecordReader<T> {
+
+        /**
+         * @param segment - segment holding the record
+         * @param record  - view of the segment from the record body to its end (crc excluded), positions are
+         *                the same as in {@link Segment#getBuffer()}
+         */
+        void read(final Segment<T> segment, final ByteBuffer record);
+
+    }
+
+    /**
+     * Writes the body of a record into the mapped segment.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+
+        void write(final ByteBuffer out);
+
+    }
+
+    /**
+     * Segment file of a log.
+     */
+    @Getter
+    public static final class Segment<T> {
+
+        private final int index;
+        private final Path path;
+        private final ByteBuffer buffer;    // mapping of the file, used by owners to read records back
+        private final T state;              // owner state (e.g. jobs with records in this segment)
+        @Getter(AccessLevel.NONE)
+        private int end;                    // position after the last valid record when read
+
+        private Segment(final int index, final Path path, final ByteBuffer buffer, final T state) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+            this.state = state;
+        }
+
+    }
+
+}
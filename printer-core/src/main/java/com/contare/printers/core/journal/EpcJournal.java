@@ -0,0 +1,268 @@
+package com.contare.printers.core.journal;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.SegmentedLog;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.contare.printers.core.io.SegmentedLog.bytes;
+import static com.contare.printers.core.io.SegmentedLog.getString;
+import static com.contare.printers.core.io.SegmentedLog.putString;
+import static com.contare.printers.core.io.SegmentedLog.size;
+
+/**
+ * Append-only journal of the EPCs confirmed by printers, in memory-mapped segment files, so the tags physically
+ * encoded by a job are known after a crash.
+ * <p>
+ * Behaviour:
+ * - Records: job start (job id, sku, printer), epc (job id, epc, tid) and job end (job id, completed), each with a
+ * timestamp and a CRC32. An append is a few writes into the mapped segment (microseconds), so it runs on the
+ * driver thread as tags are confirmed.
+ * - Records are kept in a {@link SegmentedLog}: group commit every 'syncInterval' milliseconds ({@link #sync()} waits
+ * for the records appended so far to be on disk) and fixed size segments. The oldest segments are deleted
+ * once every job with records in them ended, the last 'retainedSegments' of those are kept as recent history.
+ * Interrupted jobs found on open keep their segments until they are ended (see {@link #end}) once handled.
+ * - On open, every segment is read back: {@link #getRecovered()} gives the state of each job, a torn record at the
+ * end (crash during an append) is discarded and appends continue after the last valid one.
+ * - Job ids are assigned by the journal and keep growing across restarts.
+ * <p>
+ * obs.: a crash loses at most the records appended in the last 'syncInterval' milliseconds (power loss); the
+ * operating system still writes them if only the process died.
+ * <p>
+ * Usage pattern:
+ * EpcJournal journal = new EpcJournal(Paths.get("journal"));
+ * for (JournalJob job : journal.getRecovered().values()) { if (job.isInterrupted()) ... }
+ * printer.setJournal(journal);
+ */
+public class EpcJournal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL = 10;
+    public static final int DEFAULT_RETAINED_SEGMENTS = 4;
+
+    private static final String PREFIX = "epc-";
+    private static final String SUFFIX = ".journal";
+
+    private static final byte START = 1;
+    private static final byte EPC = 2;
+    private static final byte END = 3;
+
+    private static final int HEADER = 1 + 8 + 8;    // type, job id, timestamp
+
+    private final Logger logger = Logger.getLogger(EpcJournal.class);
+
+    @Getter
+    private final Path directory;
+    @Getter
+    private final int segmentSize;
+    @Getter
+    private final long syncInterval;    // maximum time between forces to disk (milliseconds)
+    @Getter
+    @Setter
+    private volatile int retainedSegments = DEFAULT_RETAINED_SEGMENTS;
+
+    private final Map<Long, JournalJob> recovered;
+
+    private final Object lock = new Object();
+    private final SegmentedLog<Set<Long>> log;  // segment state: jobs with records in it not ended yet
+    private long nextJobId;                     // guarded by 'lock'
+
+    public EpcJournal(final Path directory) throws PrinterException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL);
+    }
+
+    public EpcJournal(final Path directory, final int segmentSize, final long syncInterval) throws PrinterException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+
+        final Map<Long, JournalJob> jobs = new TreeMap<>();
+        try {
+            log = new SegmentedLog<>("EPC journal", directory, PREFIX, SUFFIX, segmentSize, syncInterval, HashSet::new,
+                (segment, record) -> read(record, jobs, segment.getState()));
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error opening EPC journal '%s'", directory);
+        }
+
+        long maxId = 0;
+        for (Long id : jobs.keySet()) {
+            maxId = Math.max(maxId, id);
+        }
+        this.nextJobId = maxId + 1;
+        this.recovered = Collections.unmodifiableMap(jobs);
+
+        synchronized (lock) {
+            // only jobs not ended keep their segments
+            for (SegmentedLog.Segment<Set<Long>> s : log.getSegments()) {
+                s.getState().removeIf((id) -> !jobs.get(id).isInterrupted());
+            }
+            purge();
+        }
+        logger.infof("Journal %s opened: %d segments, %d jobs recovered", directory, log.size(), jobs.size());
+    }
+
+    /**
+     * Rebuild the state of every job from the segments of a journal, without opening it for writing.
+     *
+     * @param directory - journal directory
+     * @return jobs by id.
+     * @throws PrinterException if the segments cannot be read.
+     */
+    public static Map<Long, JournalJob> read(final Path directory) throws PrinterException {
+        final Map<Long, JournalJob> jobs = new TreeMap<>();
+        try {
+            SegmentedLog.<Set<Long>>read(directory, PREFIX, SUFFIX, HashSet::new, (segment, record) -> read(record, jobs, segment.getState()));
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error reading EPC journal '%s'", directory);
+        }
+        return jobs;
+    }
+
+    /**
+     * @return state of the jobs found in the journal when it was opened, by id.
+     */
+    public Map<Long, JournalJob> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Record the start of a job.
+     *
+     * @param sku     - job sku
+     * @param printer - printer label
+     * @return journal job id.
+     * @throws PrinterException if a new segment cannot be created.
+     */
+    public long begin(final String sku, final String printer) throws PrinterException {
+        synchronized (lock) {
+            final long id = nextJobId++;
+            write(START, id, bytes(sku), bytes(printer));
+            return id;
+        }
+    }
+
+    /**
+     * Record an epc confirmed by the printer.
+     *
+     * @param jobId - journal job id (see {@link #begin})
+     * @param epc   - rfid hexadecimal string
+     * @param tid   - tag id, may be null
+     * @throws PrinterException if a new segment cannot be created.
+     */
+    public void append(final long jobId, final String epc, final String tid) throws PrinterException {
+        final byte[] e = bytes(epc);
+        final byte[] t = bytes(tid);
+        synchronized (lock) {
+            write(EPC, jobId, e, t);
+        }
+    }
+
+    /**
+     * Record the end of a job.
+     *
+     * @param jobId     - journal job id (see {@link #begin})
+     * @param completed - true if the printer finished the job without errors
+     * @throws PrinterException if a new segment cannot be created.
+     */
+    public void end(final long jobId, final boolean completed) throws PrinterException {
+        synchronized (lock) {
+            write(END, jobId, bytes(completed ? "1" : "0"), null);
+        }
+    }
+
+    /**
+     * @return number of segment files kept on disk.
+     */
+    public int getSegments() {
+        return log.size();
+    }
+
+    /**
+     * Wait until every record appended so far is on disk.
+     *
+     * @throws PrinterException if interrupted or the journal is closed.
+     */
+    public void sync() throws PrinterException {
+        log.sync();
+    }
+
+    /**
+     * Force pending records to disk and close the current segment.
+     */
+    @Override
+    public void close() throws PrinterException {
+        log.close();
+    }
+
+    // called holding 'lock': [type][job id][timestamp][string a][string b]
+    private void write(final byte type, final long jobId, final byte[] a, final byte[] b) throws PrinterException {
+        log.append(HEADER + size(a) + size(b), (out) -> {
+            out.put(type);
+            out.putLong(jobId);
+            out.putLong(System.currentTimeMillis());
+            putString(out, a);
+            putString(out, b);
+        });
+
+        if (type == END) {
+            for (SegmentedLog.Segment<Set<Long>> s : log.getSegments()) {
+                s.getState().remove(jobId);
+            }
+            purge();
+        } else {
+            log.getSegment().getState().add(jobId);
+        }
+    }
+
+    // called holding 'lock': delete the oldest segments whose jobs all ended, beyond the retained ones
+    // (in order, so the start of a job is never deleted before its later records)
+    private void purge() {
+        log.purge(Set::isEmpty, retainedSegments);
+    }
+
+    // apply a record to 'jobs' and add the ids of the jobs started/appended to 'seen'
+    private static void read(final ByteBuffer record, final Map<Long, JournalJob> jobs, final Set<Long> seen) {
+        final byte type = record.get();
+        final long jobId = record.getLong();
+        final long timestamp = record.getLong();
+        final String a = getString(record);
+        final String b = getString(record);
+        apply(jobs, type, jobId, timestamp, a, b);
+        if (type == START || type == EPC) {
+            seen.add(jobId);
+        }
+    }
+
+    private static void apply(final Map<Long, JournalJob> jobs, final byte type, final long jobId, final long timestamp, final String a, final String b) {
+        switch (type) {
+            case START:
+                jobs.put(jobId, new JournalJob(jobId, a, b, timestamp));
+                break;
+            case EPC: {
+                final JournalJob job = jobs.computeIfAbsent(jobId, (k) -> new JournalJob(jobId, null, null, timestamp));
+                job.add(a, b);
+                break;
+            }
+            case END: {
+                final JournalJob job = jobs.get(jobId);
+                if (job != null) {
+                    job.end(timestamp, "1".equals(a));
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+}
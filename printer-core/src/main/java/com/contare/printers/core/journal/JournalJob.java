@@ -0,0 +1,62 @@
+package com.contare.printers.core.journal;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State of a job rebuilt from an {@link EpcJournal}.
+ */
+@Getter
+public class JournalJob {
+
+    private final long jobId;
+    private final String sku;
+    private final String printer;
+    private final long startedAt;           // epoch milliseconds
+    private long endedAt = 0;               // epoch milliseconds, 0 if the job never ended (crash)
+    private boolean completed = false;      // printer finished the job without errors
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, String> epcs = new LinkedHashMap<>();    // epc -> tid, in encoding order
+
+    JournalJob(final long jobId, final String sku, final String printer, final long startedAt) {
+        this.jobId = jobId;
+        this.sku = sku;
+        this.printer = printer;
+        this.startedAt = startedAt;
+    }
+
+    void add(final String epc, final String tid) {
+        epcs.put(epc, tid);
+    }
+
+    void end(final long endedAt, final boolean completed) {
+        this.endedAt = endedAt;
+        this.completed = completed;
+    }
+
+    /**
+     * @return epcs confirmed by the printer (epc -> tid, tid may be null), in encoding order.
+     */
+    public Map<String, String> getEpcs() {
+        return Collections.unmodifiableMap(epcs);
+    }
+
+    /**
+     * @return true if the job was interrupted (no end record).
+     */
+    public boolean isInterrupted() {
+        return endedAt == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ jobId = %d, sku = %s, printer = %s, epcs = %d, interrupted = %s, completed = %s }",
+            getClass().getSimpleName(), jobId, sku, printer, epcs.size(), isInterrupted(), completed);
+    }
+
+}
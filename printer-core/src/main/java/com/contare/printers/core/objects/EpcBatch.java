@@ -0,0 +1,33 @@
+package com.contare.printers.core.objects;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * EPCs of a single printer and sku delivered at once, sized for bulk writes (one insert / message per batch).
+ */
+@Getter
+@RequiredArgsConstructor
+public class EpcBatch {
+
+    private final String printer;           // printer label (vendor@ip:port)
+    private final String sku;
+    private final List<EpcEvent> epcs;      // in the order the printer returned them
+    private final long firstAt;             // time the first epc was returned (epoch milliseconds)
+    private final long lastAt;              // time the last epc was returned (epoch milliseconds)
+    private final long flushedAt;           // time the batch was closed (epoch milliseconds)
+    private final boolean jobEnd;           // last batch of the job
+
+    public int size() {
+        return epcs.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ printer = %s, sku = %s, epcs = %d, span = %d ms, delay = %d ms, jobEnd = %s }",
+            getClass().getSimpleName(), printer, sku, epcs.size(), lastAt - firstAt, flushedAt - firstAt, jobEnd);
+    }
+
+}
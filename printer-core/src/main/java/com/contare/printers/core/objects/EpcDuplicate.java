@@ -0,0 +1,26 @@
+package com.contare.printers.core.objects;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * EPC confirmed again after it was already encoded, by the same or another printer.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EpcDuplicate {
+
+    private final String epc;
+    private final String firstPrinter;      // printer label that encoded the epc first (vendor@ip:port), null if unknown
+    private final String firstSku;
+    private final String printer;           // printer label that encoded it again
+    private final String sku;
+    private final long timestamp;           // time the duplicate was detected (epoch milliseconds)
+
+    @Override
+    public String toString() {
+        return String.format("%s{ epc = %s, first = %s/%s, again = %s/%s, timestamp = %d }",
+            getClass().getSimpleName(), epc, firstPrinter, firstSku, printer, sku, timestamp);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.contare.printers.core.objects;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * EPC confirmed by a printer, as published on its EPC stream.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EpcEvent {
+
+    private final String epc;
+    private final String tid;               // null if the printer does not return it
+    private final String sku;
+    private final String printer;           // printer label (vendor@ip:port)
+    private final long timestamp;           // time the printer returned the epc (epoch milliseconds)
+
+    @Override
+    public String toString() {
+        return String.format("%s{ epc = %s, tid = %s, sku = %s, printer = %s, timestamp = %d }",
+            getClass().getSimpleName(), epc, tid, sku, printer, timestamp);
+    }
+
+}
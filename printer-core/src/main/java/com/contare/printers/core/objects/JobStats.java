@@ -0,0 +1,39 @@
+package com.contare.printers.core.objects;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Statistics of a finished print job, recorded by the printer driver.
+ */
+@Getter
+@RequiredArgsConstructor
+public class JobStats {
+
+    private final String sku;
+    private final int labels;               // number of labels sent
+    private final int printed;              // number of epcs returned by the printer
+    private final long elapsed;             // time between sending the job and its end (milliseconds)
+    private final boolean bufferPressure;   // printer reported receive buffer near full / full during the job
+    private final boolean completed;        // printer finished the job without errors
+    private final boolean canceled;         // stopped on purpose (sku ignored or cancel requested), not a printer failure
+    private final long timestamp = System.currentTimeMillis();
+
+    public JobStats(final String sku, final int labels, final int printed, final long elapsed, final boolean bufferPressure, final boolean completed) {
+        this(sku, labels, printed, elapsed, bufferPressure, completed, false);
+    }
+
+    /**
+     * @return printed labels per second, 0 if unknown.
+     */
+    public double getLabelsPerSecond() {
+        return (elapsed > 0) ? (printed * 1_000.0) / elapsed : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ sku = %s, labels = %d, printed = %d, elapsed = %d ms, pressure = %s, completed = %s, canceled = %s }",
+            getClass().getSimpleName(), sku, labels, printed, elapsed, bufferPressure, completed, canceled);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.contare.printers.core.objects;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Snapshot of the jobs of a source held by a scheduler, used to tune source weights.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SourceStats {
+
+    private final String source;
+    private final double weight;
+    private final int queuedJobs;           // jobs waiting in the scheduler
+    private final long queuedLabels;        // labels waiting in the scheduler
+    private final long oldestWait;          // time the oldest waiting job has been waiting (milliseconds)
+    private final long dispatchedJobs;
+    private final long dispatchedLabels;
+    private final long averageWait;         // time between submit and dispatch (milliseconds)
+    private final long maxWait;             // milliseconds
+
+    @Override
+    public String toString() {
+        return String.format("%s{ source = %s, weight = %.1f, queued = %d jobs / %d labels, oldest = %d ms, dispatched = %d jobs / %d labels, wait = %d ms (max %d ms) }",
+            getClass().getSimpleName(), source, weight, queuedJobs, queuedLabels, oldestWait, dispatchedJobs, dispatchedLabels, averageWait, maxWait);
+    }
+
+}
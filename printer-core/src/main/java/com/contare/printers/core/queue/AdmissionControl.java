@@ -0,0 +1,260 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.PrinterConsumer;
+import com.contare.printers.core.exceptions.PrinterException;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded admission in front of the print pipeline (a {@link PrinterQueue} or a {@link JobScheduler}).
+ * <p>
+ * Behaviour:
+ * - Jobs are admitted while the labels and bytes of unfinished admitted jobs stay within the limits,
+ * capacity is given back when the job future completes (printed, failed or canceled).
+ * - Producers choose how to react to a full pipeline:
+ * {@link #trySubmit(PrintJob)} never blocks and sheds the job,
+ * {@link #submit(PrintJob, long, TimeUnit)} blocks up to a timeout,
+ * {@link #demand(int, long)} returns a future completed when there is room (reactive producers).
+ * - A job bigger than the limits is only admitted when the pipeline is empty, so it can never get stuck.
+ * - Queued and shed load are reported for metrics.
+ * <p>
+ * obs.: bytes are the ones held by the job until it is rendered ({@link PrintJob#getSize()}), lazy jobs hold none.
+ * <p>
+ * Usage pattern:
+ * AdmissionControl admission = new AdmissionControl(queue::submit, 50_000, 64L * 1024 * 1024);
+ * if (!admission.trySubmit(job)) { // shed, retry later }
+ */
+public class AdmissionControl {
+
+    private final Logger logger = Logger.getLogger(AdmissionControl.class);
+
+    private final PrinterConsumer<PrintJob> target;
+
+    @Getter
+    private final long maxLabels;
+    @Getter
+    private final long maxBytes;
+
+    private final Object lock = new Object();
+    private final List<Demand> waiting = new ArrayList<>();
+
+    private long queuedJobs = 0;
+    private long queuedLabels = 0;
+    private long queuedBytes = 0;
+    private long admittedJobs = 0;
+    private long shedJobs = 0;
+    private long shedLabels = 0;
+    private long shedBytes = 0;
+
+    public AdmissionControl(final PrinterConsumer<PrintJob> target, final long maxLabels, final long maxBytes) {
+        if (maxLabels <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid admission limits: labels = " + maxLabels + ", bytes = " + maxBytes);
+        }
+        this.target = Objects.requireNonNull(target, "Target is required");
+        this.maxLabels = maxLabels;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Submit a job if there is room, never blocks.
+     *
+     * @param job - print job
+     * @return true if admitted, false if shed.
+     * @throws PrinterException if the target rejects the job.
+     */
+    public boolean trySubmit(final PrintJob job) throws PrinterException {
+        synchronized (lock) {
+            if (!fits(job.getLabels(), job.getSize())) {
+                shed(job);
+                return false;
+            }
+            reserve(job);
+        }
+        forward(job);
+        return true;
+    }
+
+    /**
+     * Submit a job, waiting up to 'timeout' for room.
+     *
+     * @param job     - print job
+     * @param timeout - maximum time to wait
+     * @param unit    - timeout unit
+     * @return true if admitted, false if shed after the timeout.
+     * @throws PrinterException     if the target rejects the job.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean submit(final PrintJob job, final long timeout, final TimeUnit unit) throws PrinterException, InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!fits(job.getLabels(), job.getSize())) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    shed(job);
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            reserve(job);
+        }
+        forward(job);
+        return true;
+    }
+
+    /**
+     * Demand signal for reactive producers, nothing is reserved: the producer should then call {@link #trySubmit}.
+     *
+     * @param labels - labels the producer wants to submit
+     * @param bytes  - bytes the producer wants to submit
+     * @return future completed when there is room for them.
+     */
+    public CompletableFuture<Void> demand(final int labels, final long bytes) {
+        final Demand demand = new Demand(labels, bytes);
+        synchronized (lock) {
+            if (fits(labels, bytes)) {
+                demand.future.complete(null);
+            } else {
+                waiting.add(demand);
+            }
+        }
+        return demand.future;
+    }
+
+    /**
+     * @return labels that can still be admitted.
+     */
+    public long getAvailableLabels() {
+        synchronized (lock) {
+            return Math.max(0, maxLabels - queuedLabels);
+        }
+    }
+
+    public long getQueuedJobs() {
+        synchronized (lock) {
+            return queuedJobs;
+        }
+    }
+
+    public long getQueuedLabels() {
+        synchronized (lock) {
+            return queuedLabels;
+        }
+    }
+
+    public long getQueuedBytes() {
+        synchronized (lock) {
+            return queuedBytes;
+        }
+    }
+
+    public long getAdmittedJobs() {
+        synchronized (lock) {
+            return admittedJobs;
+        }
+    }
+
+    public long getShedJobs() {
+        synchronized (lock) {
+            return shedJobs;
+        }
+    }
+
+    public long getShedLabels() {
+        synchronized (lock) {
+            return shedLabels;
+        }
+    }
+
+    public long getShedBytes() {
+        synchronized (lock) {
+            return shedBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return String.format("%s{ queued = %d jobs / %d labels / %d bytes, admitted = %d, shed = %d jobs / %d labels / %d bytes }",
+                getClass().getSimpleName(), queuedJobs, queuedLabels, queuedBytes, admittedJobs, shedJobs, shedLabels, shedBytes);
+        }
+    }
+
+    // called holding 'lock'
+    private boolean fits(final long labels, final long bytes) {
+        if (queuedJobs == 0) {
+            return true;
+        }
+        return (queuedLabels + labels <= maxLabels) && (queuedBytes + bytes <= maxBytes);
+    }
+
+    // called holding 'lock'
+    private void reserve(final PrintJob job) {
+        queuedJobs++;
+        queuedLabels += job.getLabels();
+        queuedBytes += job.getSize();
+        admittedJobs++;
+    }
+
+    // called holding 'lock'
+    private void shed(final PrintJob job) {
+        shedJobs++;
+        shedLabels += job.getLabels();
+        shedBytes += job.getSize();
+        logger.debugf("Job shed: %s, %s", job, this);
+    }
+
+    private void forward(final PrintJob job) throws PrinterException {
+        job.getResult().whenComplete((r, e) -> release(job));
+        try {
+            target.accept(job);
+        } catch (PrinterException | RuntimeException e) {
+            job.getResult().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void release(final PrintJob job) {
+        final List<Demand> ready = new ArrayList<>();
+        synchronized (lock) {
+            queuedJobs--;
+            queuedLabels -= job.getLabels();
+            queuedBytes -= job.getSize();
+            lock.notifyAll();
+
+            final Iterator<Demand> it = waiting.iterator();
+            while (it.hasNext()) {
+                final Demand demand = it.next();
+                if (demand.future.isDone()) {
+                    it.remove();
+                } else if (fits(demand.labels, demand.bytes)) {
+                    it.remove();
+                    ready.add(demand);
+                }
+            }
+        }
+
+        // complete outside the lock, producers usually submit right away
+        for (Demand demand : ready) {
+            demand.future.complete(null);
+        }
+    }
+
+    private static class Demand {
+        private final int labels;
+        private final long bytes;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Demand(final int labels, final long bytes) {
+            this.labels = labels;
+            this.bytes = bytes;
+        }
+    }
+
+}
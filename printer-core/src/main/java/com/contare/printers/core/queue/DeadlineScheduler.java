@@ -0,0 +1,196 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.JobStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Earliest-deadline-first scheduling of jobs over printer queues, with admission control on deadlines.
+ * <p>
+ * Behaviour:
+ * - Jobs with a deadline are dispatched by earliest deadline, jobs without one go after them in arrival order.
+ * - Each job goes to the printer queue expected to be free first (queued labels / measured speed).
+ * - At submit time, completion times are estimated from label counts and printer speeds (last job labels/sec,
+ * or a default speed): a job that would finish after its deadline, or would make an already admitted job miss
+ * its deadline, is rejected right away so the caller can send it somewhere else.
+ * <p>
+ * obs.: estimates treat the printers as one pool of capacity, a job is never split between printers.
+ * <p>
+ * Usage pattern:
+ * PrintJob job = new PrintJob(content, sku, 200);
+ * job.setDeadline(truckDeparture);
+ * scheduler.submit(job); // throws PrinterException if the deadline cannot be met
+ */
+public class DeadlineScheduler extends JobScheduler {
+
+    public static final double DEFAULT_LABELS_PER_SECOND = 2.0;
+
+    private final PriorityQueue<Entry> pending = new PriorityQueue<>(
+        Comparator.comparingLong((Entry e) -> e.deadline).thenComparingLong((e) -> e.sequence));
+    private long sequence = 0;
+    private long pendingLabels = 0;
+
+    public DeadlineScheduler(final Collection<PrinterQueue> targets, final int depth) {
+        super(targets, depth);
+    }
+
+    /**
+     * Enqueue a job if its deadline (and the ones already admitted) can be met.
+     *
+     * @param job - print job
+     * @return future completed with the epcs printed by printer.
+     * @throws PrinterException if the job cannot be finished before its deadline or the scheduler is closed.
+     */
+    public CompletableFuture<Set<String>> submit(final PrintJob job) throws PrinterException {
+        synchronized (lock) {
+            if (!isRunning()) {
+                throw new PrinterException("Scheduler is closed");
+            }
+
+            final Entry entry = new Entry(job, job.hasDeadline() ? job.getDeadline() : Long.MAX_VALUE, sequence++);
+            admit(entry);
+
+            pending.add(entry);
+            pendingLabels += job.getLabels();
+            signal();
+        }
+        return job.getResult();
+    }
+
+    /**
+     * Expected completion time of a new job, if it was submitted now.
+     *
+     * @param labels   - labels of the job
+     * @param deadline - deadline of the job (epoch milliseconds), 0 = none
+     * @return epoch milliseconds.
+     */
+    public long estimate(final int labels, final long deadline) {
+        synchronized (lock) {
+            long ahead = 0;
+            for (Entry e : pending) {
+                if (deadline <= 0 || e.deadline <= deadline) {
+                    ahead += e.job.getLabels();
+                }
+            }
+            return finish(ahead + labels, labels);
+        }
+    }
+
+    /**
+     * Printer speed used in estimates, override to use a better measure (e.g. live status).
+     *
+     * @return labels per second.
+     */
+    protected double getLabelsPerSecond(final PrinterQueue queue) {
+        final JobStats last = queue.getPrinter().getLastJob();
+        return (last != null && last.getLabelsPerSecond() > 0) ? last.getLabelsPerSecond() : DEFAULT_LABELS_PER_SECOND;
+    }
+
+    public long getPendingLabels() {
+        synchronized (lock) {
+            return pendingLabels;
+        }
+    }
+
+    @Override
+    protected PrintJob poll(final PrinterQueue target) {
+        final Entry entry = pending.poll();
+        if (entry == null) {
+            return null;
+        }
+
+        pendingLabels -= entry.job.getLabels();
+        if (entry.job.hasDeadline() && System.currentTimeMillis() > entry.deadline) {
+            logger.warnf("Job %s dispatched after its deadline", entry.job);
+        }
+        return entry.job;
+    }
+
+    @Override
+    protected List<PrintJob> drain() {
+        final List<PrintJob> out = new ArrayList<>(pending.size());
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            out.add(entry.job);
+        }
+        pendingLabels = 0;
+        return out;
+    }
+
+    // printer queue with room expected to be free first
+    @Override
+    protected PrinterQueue available() {
+        PrinterQueue best = null;
+        double bestFree = Double.MAX_VALUE;
+        for (PrinterQueue queue : getTargets()) {
+            if (queue.size() >= getDepth()) continue;
+
+            final double free = queue.getQueuedLabels() / getLabelsPerSecond(queue);
+            if (free < bestFree) {
+                best = queue;
+                bestFree = free;
+            }
+        }
+        return best;
+    }
+
+    // EDF feasibility: with the new job in deadline order, every job with a deadline must finish in time
+    private void admit(final Entry entry) throws PrinterException {
+        final List<Entry> order = new ArrayList<>(pending);
+        order.add(entry);
+        order.sort(pending.comparator());
+
+        long cumulative = 0;
+        for (Entry e : order) {
+            cumulative += e.job.getLabels();
+            if (!e.job.hasDeadline()) continue;
+
+            final long finish = finish(cumulative, e.job.getLabels());
+            if (finish > e.deadline) {
+                if (e == entry) {
+                    throw new PrinterException("Job %s cannot meet its deadline: expected %d ms late", entry.job, finish - e.deadline);
+                }
+                throw new PrinterException("Job %s would make job %s miss its deadline", entry.job, e.job);
+            }
+        }
+    }
+
+    /**
+     * Expected finish time of a job once 'labels' labels (including its own) went through the scheduler.
+     * The whole backlog is drained by every printer at once, but the job itself prints on a single printer.
+     */
+    private long finish(final long labels, final int own) {
+        double speed = 0.0;
+        double queued = 0.0;
+        double single = Double.MAX_VALUE;
+        for (PrinterQueue queue : getTargets()) {
+            final double s = getLabelsPerSecond(queue);
+            speed += s;
+            queued += queue.getQueuedLabels();
+            single = Math.min(single, (queue.getQueuedLabels() + own) / s);
+        }
+
+        final double seconds = Math.max((queued + labels) / speed, single);
+        return System.currentTimeMillis() + (long) (seconds * 1_000);
+    }
+
+    private static class Entry {
+        private final PrintJob job;
+        private final long deadline;    // Long.MAX_VALUE when the job has none
+        private final long sequence;    // arrival order
+
+        private Entry(final PrintJob job, final long deadline, final long sequence) {
+            this.job = job;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+    }
+
+}
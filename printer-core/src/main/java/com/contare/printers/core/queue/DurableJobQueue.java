@@ -0,0 +1,370 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.SegmentedLog;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.contare.printers.core.io.SegmentedLog.bytes;
+import static com.contare.printers.core.io.SegmentedLog.getString;
+import static com.contare.printers.core.io.SegmentedLog.putString;
+import static com.contare.printers.core.io.SegmentedLog.size;
+
+/**
+ * Job queue persisted in memory-mapped segment files, so jobs not printed yet survive a restart of the application.
+ * <p>
+ * Behaviour:
+ * - Records: enqueue (key, sku, epcs, content) and ack (key), each with a timestamp and a CRC32. An enqueue is a copy
+ * into the mapped segment, content is not kept on the heap and is read back from the segment when the job is printed.
+ * - Jobs are identified by a key given by the caller: enqueueing a key the queue already knows (pending, taken or
+ * acknowledged) is ignored, so jobs resubmitted after a restart are not printed twice.
+ * - {@link #poll} takes the oldest pending job, {@link #ack} marks it done (printed, or dropped on purpose) and
+ * {@link #release} gives it back. Taken jobs are not recorded: after a restart every job not acknowledged is pending.
+ * - Records are kept in a {@link SegmentedLog}: group commit every 'syncInterval' milliseconds ({@link #sync()} waits
+ * for the records written so far to be on disk) and fixed size segments. The oldest segments are deleted
+ * once every job in them is acknowledged, the last 'retainedSegments' of those are kept to remember their keys.
+ * - On open, every segment is read back, a torn record at the end (crash during a write) is discarded.
+ * <p>
+ * obs.: keys are deduplicated while their segment is on disk, a job resubmitted after its segment was deleted is
+ * accepted again.
+ * <p>
+ * Usage pattern:
+ * try (DurableJobQueue jobs = new DurableJobQueue(Paths.get("jobs"))) {
+ * jobs.enqueue(orderId, sku, epcs, content);
+ * StoredJob job = jobs.poll();
+ * queue.submit(job.toPrintJob()).whenComplete((r, e) -> jobs.ack(job.getKey()));
+ * }
+ */
+public class DurableJobQueue implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL = 10;
+    public static final int DEFAULT_RETAINED_SEGMENTS = 4;
+
+    private static final String PREFIX = "jobs-";
+    private static final String SUFFIX = ".queue";
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+
+    private static final int HEADER = 1 + 8;        // type, timestamp
+
+    private final Logger logger = Logger.getLogger(DurableJobQueue.class);
+
+    @Getter
+    private final Path directory;
+    @Getter
+    private final int segmentSize;
+    @Getter
+    private final long syncInterval;                // maximum time between forces to disk (milliseconds)
+    @Getter
+    @Setter
+    private volatile int retainedSegments = DEFAULT_RETAINED_SEGMENTS;
+
+    private final Object lock = new Object();
+    private final Map<String, Entry> jobs = new HashMap<>();        // every key on disk, guarded by 'lock'
+    private final Deque<Entry> pending = new ArrayDeque<>();        // guarded by 'lock'
+    private final SegmentedLog<Keys> log;                           // segment state: jobs enqueued in it
+    private int taken = 0;                                          // guarded by 'lock'
+
+    private volatile boolean running = true;
+
+    public DurableJobQueue(final Path directory) throws PrinterException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL);
+    }
+
+    public DurableJobQueue(final Path directory, final int segmentSize, final long syncInterval) throws PrinterException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+
+        try {
+            log = new SegmentedLog<>("Job queue", directory, PREFIX, SUFFIX, segmentSize, syncInterval, Keys::new, this::read);
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error opening job queue '%s'", directory);
+        }
+        synchronized (lock) {
+            purge();
+        }
+        logger.infof("Job queue %s opened: %d segments, %d jobs pending", directory, log.size(), pending.size());
+    }
+
+    /**
+     * Add a job to the queue.
+     *
+     * @param key     - idempotent job id (e.g. order id)
+     * @param sku     - job sku
+     * @param epcs    - number of labels inside content
+     * @param content - label content
+     * @return false if the key is already known (job not added).
+     * @throws PrinterException if the queue is closed or the job does not fit in a segment.
+     */
+    public boolean enqueue(final String key, final String sku, final Integer epcs, final String content) throws PrinterException {
+        final byte[] k = bytes(Objects.requireNonNull(key, "Key is required"));
+        final byte[] s = bytes(sku);
+        final byte[] c = Objects.requireNonNull(content, "Content is required").getBytes(StandardCharsets.UTF_8);
+        synchronized (lock) {
+            if (jobs.containsKey(key)) {
+                logger.debugf("Job %s already queued, ignored", key);
+                return false;
+            }
+
+            // [type][timestamp][key][sku][epcs][content length][content]
+            final int prefix = HEADER + size(k) + size(s) + 4 + 4;
+            final long now = System.currentTimeMillis();
+            final int position = log.append(prefix + c.length, (out) -> {
+                out.put(ENQUEUE);
+                out.putLong(now);
+                putString(out, k);
+                putString(out, s);
+                out.putInt((epcs != null) ? epcs : -1);
+                out.putInt(c.length);
+                out.put(c);
+            });
+
+            add(new Entry(key, sku, epcs, now, log.getSegment(), position + prefix, c.length));
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * @return oldest pending job (now taken), null if there is none.
+     */
+    public StoredJob poll() {
+        synchronized (lock) {
+            return take();
+        }
+    }
+
+    /**
+     * Wait for a pending job.
+     *
+     * @param timeout - maximum time to wait
+     * @param unit    - timeout unit
+     * @return oldest pending job (now taken), null if none arrived in time or the queue was closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public StoredJob poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (running && pending.isEmpty()) {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                TimeUnit.NANOSECONDS.timedWait(lock, left);
+            }
+            return take();
+        }
+    }
+
+    /**
+     * Mark a job as done, it is never given again. A pending job can be acknowledged to drop it.
+     *
+     * @param key - job key
+     * @return false if the job is unknown or already acknowledged.
+     * @throws PrinterException if the queue is closed.
+     */
+    public boolean ack(final String key) throws PrinterException {
+        final byte[] k = bytes(key);
+        synchronized (lock) {
+            final Entry entry = jobs.get(key);
+            if (entry == null || entry.state == State.DONE) {
+                return false;
+            }
+
+            // [type][timestamp][key]
+            log.append(HEADER + size(k), (out) -> {
+                out.put(ACK);
+                out.putLong(System.currentTimeMillis());
+                putString(out, k);
+            });
+
+            done(entry);
+            purge();
+            return true;
+        }
+    }
+
+    /**
+     * Give a taken job back (e.g. the printer is unavailable), it is the next one to be polled.
+     *
+     * @param key - job key
+     * @return false if the job is not taken.
+     */
+    public boolean release(final String key) {
+        synchronized (lock) {
+            final Entry entry = jobs.get(key);
+            if (entry == null || entry.state != State.TAKEN) {
+                return false;
+            }
+            entry.state = State.PENDING;
+            taken--;
+            pending.addFirst(entry);
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * @param key - job key
+     * @return true if the key is known (pending, taken or acknowledged), an enqueue with it would be ignored.
+     */
+    public boolean contains(final String key) {
+        synchronized (lock) {
+            return jobs.containsKey(key);
+        }
+    }
+
+    /**
+     * @return number of jobs waiting to be polled.
+     */
+    public int getPending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return number of jobs polled and not acknowledged yet.
+     */
+    public int getTaken() {
+        synchronized (lock) {
+            return taken;
+        }
+    }
+
+    /**
+     * @return number of segment files on disk.
+     */
+    public int getSegments() {
+        return log.size();
+    }
+
+    /**
+     * Wait until every record written so far is on disk.
+     *
+     * @throws PrinterException if interrupted or the queue is closed.
+     */
+    public void sync() throws PrinterException {
+        log.sync();
+    }
+
+    /**
+     * Force pending records to disk and close the current segment, jobs not acknowledged are pending on next open.
+     */
+    @Override
+    public void close() throws PrinterException {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        log.close();
+    }
+
+    // called holding 'lock'
+    private StoredJob take() {
+        final Entry entry = pending.poll();
+        if (entry == null) {
+            return null;
+        }
+        entry.state = State.TAKEN;
+        taken++;
+        return new StoredJob(entry.key, entry.sku, entry.epcs, entry.enqueuedAt, entry.segment.getBuffer(), entry.offset, entry.length);
+    }
+
+    // called holding 'lock' (or from the constructor)
+    private void add(final Entry entry) {
+        jobs.put(entry.key, entry);
+        entry.segment.getState().keys.add(entry.key);
+        entry.segment.getState().live++;
+        pending.add(entry);
+    }
+
+    // called holding 'lock' (or from the constructor)
+    private void done(final Entry entry) {
+        if (entry.state == State.PENDING) {
+            pending.remove(entry);
+        } else if (entry.state == State.TAKEN) {
+            taken--;
+        }
+        entry.state = State.DONE;
+        entry.segment.getState().live--;
+    }
+
+    // called holding 'lock': delete the oldest fully acknowledged segments beyond the retained ones
+    // (in order, so an ack record is never deleted before the enqueue it refers to)
+    private void purge() {
+        for (SegmentedLog.Segment<Keys> s : log.purge((keys) -> keys.live == 0, retainedSegments)) {
+            for (String key : s.getState().keys) {
+                jobs.remove(key);
+            }
+        }
+    }
+
+    // called from the constructor: apply a record read back from a segment
+    private void read(final SegmentedLog.Segment<Keys> segment, final ByteBuffer record) {
+        final byte type = record.get();
+        final long timestamp = record.getLong();
+        final String key = getString(record);
+        if (type == ENQUEUE) {
+            final String sku = getString(record);
+            final int epcs = record.getInt();
+            final int size = record.getInt();
+            if (!jobs.containsKey(key)) {
+                add(new Entry(key, sku, (epcs >= 0) ? epcs : null, timestamp, segment, record.position(), size));
+            }
+        } else if (type == ACK) {
+            final Entry entry = jobs.get(key);
+            if (entry != null && entry.state != State.DONE) {
+                done(entry);
+            }
+        }
+    }
+
+    private enum State {
+        PENDING, TAKEN, DONE
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String sku;
+        private final Integer epcs;
+        private final long enqueuedAt;
+        private final SegmentedLog.Segment<Keys> segment;
+        private final int offset;       // content position inside the segment
+        private final int length;       // content length (bytes)
+        private State state = State.PENDING;
+
+        private Entry(final String key, final String sku, final Integer epcs, final long enqueuedAt,
+                      final SegmentedLog.Segment<Keys> segment, final int offset, final int length) {
+            this.key = key;
+            this.sku = sku;
+            this.epcs = epcs;
+            this.enqueuedAt = enqueuedAt;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // state of a segment, guarded by 'lock'
+    private static class Keys {
+        private final List<String> keys = new ArrayList<>();  // jobs enqueued in this segment
+        private int live = 0;                               // jobs not acknowledged
+    }
+
+}
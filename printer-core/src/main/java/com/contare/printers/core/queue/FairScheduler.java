@@ -0,0 +1,178 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.SourceStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Weighted fair queuing of jobs from several sources (e.g. order streams, customers), counted in labels.
+ * <p>
+ * Behaviour:
+ * - Each source has its own FIFO and a weight (default 1).
+ * - A job gets a virtual finish tag = max(virtual time, last tag of its source) + labels / weight,
+ * the job with the smallest tag is dispatched first and the virtual time moves to its tag (self-clocked fair queuing).
+ * - So over any busy period each source gets printer time proportional to its weight, in labels:
+ * a 10.000 labels import does not delay a single-label order from another source by more than one job.
+ * - Per-source queue depth and wait time (submit to dispatch) are tracked, see {@link #getStats(String)}.
+ * <p>
+ * Usage pattern:
+ * FairScheduler scheduler = new FairScheduler(Collections.singletonList(queue), 2);
+ * scheduler.setWeight("urgent", 4);
+ * scheduler.submit("urgent", new PrintJob(content, sku, 1));
+ */
+public class FairScheduler extends JobScheduler {
+
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+    private double virtualTime = 0.0;
+
+    public FairScheduler(final Collection<PrinterQueue> targets, final int depth) {
+        super(targets, depth);
+    }
+
+    /**
+     * Set the share of a source, applied to jobs submitted from now on.
+     *
+     * @param source - source name
+     * @param weight - relative share (> 0)
+     */
+    public void setWeight(final String source, final double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Invalid weight: " + weight);
+        }
+        synchronized (lock) {
+            source(source).weight = weight;
+        }
+    }
+
+    /**
+     * Enqueue a job from a source.
+     *
+     * @param source - source name
+     * @param job    - print job
+     * @return future completed with the epcs printed by printer.
+     */
+    public CompletableFuture<Set<String>> submit(final String source, final PrintJob job) {
+        synchronized (lock) {
+            if (!isRunning()) {
+                job.getResult().completeExceptionally(new PrinterException("Scheduler is closed"));
+                return job.getResult();
+            }
+
+            final Source s = source(source);
+            final double start = Math.max(virtualTime, s.lastFinish);
+            final Entry entry = new Entry(job, start + Math.max(1, job.getLabels()) / s.weight, System.currentTimeMillis());
+            s.lastFinish = entry.finish;
+            s.pending.addLast(entry);
+            s.queuedLabels += job.getLabels();
+            signal();
+        }
+        return job.getResult();
+    }
+
+    /**
+     * @param source - source name
+     * @return queue depth and wait time of a source, null if it never submitted jobs.
+     */
+    public SourceStats getStats(final String source) {
+        synchronized (lock) {
+            final Source s = sources.get(source);
+            return (s != null) ? s.stats(source) : null;
+        }
+    }
+
+    /**
+     * @return statistics of every source.
+     */
+    public List<SourceStats> getStats() {
+        synchronized (lock) {
+            final List<SourceStats> out = new ArrayList<>(sources.size());
+            for (Map.Entry<String, Source> e : sources.entrySet()) {
+                out.add(e.getValue().stats(e.getKey()));
+            }
+            return out;
+        }
+    }
+
+    @Override
+    protected PrintJob poll(final PrinterQueue target) {
+        Source next = null;
+        for (Source s : sources.values()) {
+            final Entry head = s.pending.peekFirst();
+            if (head != null && (next == null || head.finish < next.pending.peekFirst().finish)) {
+                next = s;
+            }
+        }
+        if (next == null) {
+            return null;
+        }
+
+        final Entry entry = next.pending.pollFirst();
+        virtualTime = Math.max(virtualTime, entry.finish);
+
+        final long wait = System.currentTimeMillis() - entry.submittedAt;
+        next.queuedLabels -= entry.job.getLabels();
+        next.dispatchedJobs++;
+        next.dispatchedLabels += entry.job.getLabels();
+        next.totalWait += wait;
+        next.maxWait = Math.max(next.maxWait, wait);
+        return entry.job;
+    }
+
+    @Override
+    protected List<PrintJob> drain() {
+        final List<PrintJob> out = new ArrayList<>();
+        for (Source s : sources.values()) {
+            for (Entry entry : s.pending) {
+                out.add(entry.job);
+            }
+            s.pending.clear();
+            s.queuedLabels = 0;
+        }
+        return out;
+    }
+
+    private Source source(final String name) {
+        return sources.computeIfAbsent(name, (k) -> new Source());
+    }
+
+    private static class Source {
+        private final Deque<Entry> pending = new ArrayDeque<>();
+        private double weight = DEFAULT_WEIGHT;
+        private double lastFinish = 0.0;    // virtual finish tag of the last job submitted
+        private long queuedLabels = 0;
+        private long dispatchedJobs = 0;
+        private long dispatchedLabels = 0;
+        private long totalWait = 0;         // milliseconds
+        private long maxWait = 0;           // milliseconds
+
+        private SourceStats stats(final String name) {
+            final long oldest = pending.isEmpty() ? 0 : System.currentTimeMillis() - pending.peekFirst().submittedAt;
+            return new SourceStats(name, weight, pending.size(), queuedLabels, oldest, dispatchedJobs, dispatchedLabels,
+                (dispatchedJobs > 0) ? totalWait / dispatchedJobs : 0, maxWait);
+        }
+    }
+
+    private static class Entry {
+        private final PrintJob job;
+        private final double finish;        // virtual finish tag
+        private final long submittedAt;
+
+        private Entry(final PrintJob job, final double finish, final long submittedAt) {
+            this.job = job;
+            this.finish = finish;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+}
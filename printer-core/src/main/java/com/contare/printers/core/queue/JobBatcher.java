@@ -0,0 +1,318 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.utils.CmdUtils;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces small jobs into a single printer transmission (Nagle-style), in front of a {@link PrinterQueue}.
+ * <p>
+ * Behaviour:
+ * - Jobs are collected until 'window' milliseconds passed since the first one, or until 'budget' bytes are pending.
+ * - Collected jobs are concatenated (in arrival order) and submitted as one job, so the printer goes through
+ * a single connect/send/poll cycle for all of them.
+ * - Printed epcs are attributed back to each job by value, so every job must list the epcs inside its content.
+ * - A job bigger than the budget is not batched, pending jobs are flushed and it is submitted alone.
+ * - Jobs of different skus are batched together, each one keeps its sku: a batch is rendered when the queue gets
+ * to it, jobs whose future is done (canceled) or whose sku is ignored by the printer are left out.
+ * - A batch mixing skus is submitted under their joined skus (e.g. "A,B"), so printer events and statistics
+ * show every sku but no single sku matches it on the printer.
+ * - {@link #cancelSku(String)} cancels the jobs of a sku wherever they are: still collected, inside a batch waiting
+ * in the queue (the batch is submitted again without them, at the back of the queue) or in the queue itself
+ * ({@link PrinterQueue#cancelSku(String)}).
+ * <p>
+ * obs.: a batch mixing skus is a single transmission: once it is printing, a canceled sku only has its job futures
+ * canceled (labels are printed anyway), unless no other job is left in it, then the transmission is canceled.
+ * <p>
+ * obs.: sizes are UTF-8 bytes (see {@link CmdUtils#utf8Length(CharSequence)}).
+ */
+public class JobBatcher implements AutoCloseable {
+
+    private final Logger logger = Logger.getLogger(JobBatcher.class);
+
+    @Getter
+    private final PrinterQueue queue;
+    @Getter
+    private final long window;  // maximum time a job waits for others (milliseconds)
+    @Getter
+    private final int budget;   // maximum size of a batch (bytes)
+
+    private final ScheduledExecutorService timer;
+
+    private final Object lock = new Object();
+    private List<Entry> batch = new ArrayList<>();
+    private long batchSize = 0;
+    private ScheduledFuture<?> deadline;
+    private final Set<Batch> dispatched = new LinkedHashSet<>();    // batches mixing skus not finished yet
+
+    public JobBatcher(final PrinterQueue queue, final long window, final int budget) {
+        if (window < 0 || budget <= 0) {
+            throw new IllegalArgumentException("Invalid batch limits: window = " + window + ", budget = " + budget);
+        }
+        this.queue = Objects.requireNonNull(queue, "Queue is required");
+        this.window = window;
+        this.budget = budget;
+        this.timer = Executors.newSingleThreadScheduledExecutor((r) -> {
+            final Thread t = new Thread(r, "printer-batcher-" + queue.getPrinter());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Enqueue label content, it may be printed together with other jobs.
+     *
+     * @param content - label content
+     * @param sku     - current sku
+     * @param epcs    - epcs inside content, used to attribute printed epcs to this job
+     * @return future completed with the epcs of this job printed by printer.
+     */
+    public CompletableFuture<Set<String>> submit(final String content, final String sku, final Collection<String> epcs) {
+        Objects.requireNonNull(content, "Content is required");
+        Objects.requireNonNull(epcs, "EPC list is required");
+
+        final Entry entry = new Entry(content, sku, CmdUtils.utf8Length(content), new LinkedHashSet<>(epcs), new CompletableFuture<>());
+
+        List<Entry> full = null;
+        synchronized (lock) {
+            if (entry.size >= budget) {
+                // too big to batch, keep arrival order by flushing the pending ones first
+                dispatch(drain());
+                dispatch(Collections.singletonList(entry));
+                return entry.result;
+            }
+
+            if (batchSize + entry.size > budget) {
+                full = drain();
+            }
+
+            batch.add(entry);
+            batchSize += entry.size;
+            if (deadline == null) {
+                deadline = timer.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+
+            // dispatch under lock so batches reach the queue in order
+            if (full != null) {
+                dispatch(full);
+            }
+        }
+        return entry.result;
+    }
+
+    /**
+     * Cancel every job of a SKU: collected jobs are dropped, jobs inside a batch mixing skus are left out of it and
+     * the queue cancels the rest (jobs submitted alone, batches of that sku only, printer).
+     * <p>
+     * obs.: use it instead of {@link PrinterQueue#cancelSku(String)}, the queue does not see inside batches mixing skus.
+     *
+     * @param sku - sku to cancel
+     * @return number of jobs and batches canceled.
+     */
+    public int cancelSku(final String sku) {
+        int canceled = 0;
+        synchronized (lock) {
+            // still collected
+            final Iterator<Entry> it = batch.iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (Objects.equals(entry.sku, sku)) {
+                    it.remove();
+                    batchSize -= entry.size;
+                    entry.result.cancel(false);
+                    canceled++;
+                }
+            }
+            if (batch.isEmpty()) {
+                drain();
+            }
+
+            // inside batches mixing skus
+            for (Batch queued : new ArrayList<>(dispatched)) {
+                boolean found = false;
+                for (Entry entry : queued.entries) {
+                    if (Objects.equals(entry.sku, sku) && entry.result.cancel(false)) {
+                        found = true;
+                        canceled++;
+                    }
+                }
+                if (!found) continue;
+
+                final List<Entry> live = queued.live();
+                queued.moved = true;
+                if (queued.job.revoke()) {
+                    // not printing yet, the rest goes in a new batch
+                    dispatch(live);
+                } else {
+                    queued.moved = false;
+                    if (live.isEmpty()) {
+                        // printing with nothing left in it
+                        queue.cancel(queued.job);
+                    }
+                }
+            }
+        }
+        return canceled + queue.cancelSku(sku);
+    }
+
+    /**
+     * Submit every pending job now.
+     */
+    public void flush() {
+        synchronized (lock) {
+            dispatch(drain());
+        }
+    }
+
+    /**
+     * Flush pending jobs and stop the batch timer, the queue is not closed.
+     */
+    @Override
+    public void close() {
+        flush();
+        timer.shutdownNow();
+    }
+
+    private List<Entry> drain() {
+        final List<Entry> out = batch;
+        batch = new ArrayList<>();
+        batchSize = 0;
+        if (deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+        return out;
+    }
+
+    // called holding 'lock', so batches reach the queue in order
+    private void dispatch(final List<Entry> entries) {
+        if (entries.isEmpty()) return;
+
+        if (entries.size() == 1) {
+            final Entry entry = entries.get(0);
+            forward(queue.submit(entry.content, entry.sku, entry.epcs.size()), entry.result);
+            return;
+        }
+
+        final Set<String> skus = new LinkedHashSet<>();
+        final Map<String, Entry> owners = new HashMap<>();
+        int labels = 0;
+        for (Entry entry : entries) {
+            skus.add(String.valueOf(entry.sku));
+            labels += entry.epcs.size();
+            for (String epc : entry.epcs) {
+                owners.put(epc, entry);
+            }
+        }
+
+        final Batch batch = new Batch(new ArrayList<>(entries));
+        final String sku = (skus.size() == 1) ? entries.get(0).sku : String.join(",", skus);
+        batch.job = new PrintJob(sku, labels, batch::render);
+        if (skus.size() > 1) {
+            dispatched.add(batch);
+        }
+
+        logger.debugf("Batching %d jobs into one transmission (%d labels, skus %s)", entries.size(), labels, sku);
+
+        queue.submit(batch.job).whenComplete((printed, error) -> {
+            synchronized (lock) {
+                dispatched.remove(batch);
+                if (batch.moved) return;    // its jobs went in another batch
+            }
+
+            // jobs already done (canceled, ignored) keep their result
+            if (error != null) {
+                for (Entry entry : batch.entries) {
+                    entry.result.completeExceptionally(error);
+                }
+                return;
+            }
+
+            final Map<Entry, Set<String>> results = new HashMap<>();
+            for (String epc : printed) {
+                final Entry owner = owners.get(epc);
+                if (owner == null) {
+                    logger.warnf("Printed EPC '%s' does not belong to any batched job", epc);
+                    continue;
+                }
+                results.computeIfAbsent(owner, (k) -> new TreeSet<>()).add(epc);
+            }
+            for (Entry entry : batch.entries) {
+                entry.result.complete(results.getOrDefault(entry, new TreeSet<>()));
+            }
+        });
+    }
+
+    private static void forward(final CompletableFuture<Set<String>> from, final CompletableFuture<Set<String>> to) {
+        from.whenComplete((printed, error) -> {
+            if (error != null) {
+                to.completeExceptionally(error);
+            } else {
+                to.complete(printed);
+            }
+        });
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final String content;
+        private final String sku;
+        private final long size;        // content bytes (UTF-8)
+        private final Set<String> epcs;
+        private final CompletableFuture<Set<String>> result;
+    }
+
+    // jobs submitted as one print job, rendered by the queue right before printing
+    @RequiredArgsConstructor
+    private class Batch {
+        private final List<Entry> entries;
+        private PrintJob job;
+        private boolean moved = false;  // revoked and its jobs submitted again, guarded by 'lock'
+
+        private List<Entry> live() {
+            final List<Entry> out = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (!entry.result.isDone()) {
+                    out.add(entry);
+                }
+            }
+            return out;
+        }
+
+        private String render() {
+            final StringBuilder content = new StringBuilder();
+            for (Entry entry : live()) {
+                if (queue.getPrinter().isIgnoredSku(entry.sku)) {
+                    // same result the printer gives to a job of an ignored sku
+                    entry.result.complete(new TreeSet<>());
+                    continue;
+                }
+                content.append(entry.content);
+            }
+            if (content.length() == 0) {
+                // nothing left to print, skipped by the queue
+                job.getResult().cancel(false);
+            }
+            return content.toString();
+        }
+    }
+
+}
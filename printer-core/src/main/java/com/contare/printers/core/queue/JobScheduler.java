@@ -0,0 +1,152 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds jobs in front of printer queues and decides which one goes next, printer queues are kept shallow
+ * (at most 'depth' jobs each) so the scheduling order is the printing order.
+ * <p>
+ * Behaviour:
+ * - A dispatcher thread waits for a printer queue with room, then asks the subclass for the next job.
+ * - Among printer queues with room, the one with the fewest queued labels gets the job.
+ * - Jobs whose future is already done (canceled by the caller) are dropped.
+ * <p>
+ * obs.: subclasses keep their own pending jobs and must only touch them while holding 'lock'.
+ * The dispatcher starts with the first {@link #signal()}, after subclass fields are initialized.
+ */
+public abstract class JobScheduler implements AutoCloseable {
+
+    private static final long POLL_INTERVAL = 50; // milliseconds between checks of printer queues with room
+
+    protected final Logger logger = Logger.getLogger(getClass());
+    protected final Object lock = new Object();
+
+    @Getter
+    private final List<PrinterQueue> targets;
+    @Getter
+    private final int depth;    // jobs per printer queue before the scheduler holds the next ones
+
+    private Thread dispatcher;  // guarded by 'lock'
+    private volatile boolean running = true;
+
+    protected JobScheduler(final Collection<PrinterQueue> targets, final int depth) {
+        if (targets == null || targets.isEmpty()) {
+            throw new IllegalArgumentException("At least one printer queue is required");
+        }
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Invalid queue depth: " + depth);
+        }
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        this.depth = depth;
+    }
+
+    /**
+     * Next job to send to a printer queue, called while holding 'lock'.
+     *
+     * @param target - printer queue with room
+     * @return job removed from the pending ones, null if there is nothing to send to this queue.
+     */
+    protected abstract PrintJob poll(final PrinterQueue target);
+
+    /**
+     * Remove every pending job, called while holding 'lock' when the scheduler is closed.
+     *
+     * @return jobs removed.
+     */
+    protected abstract List<PrintJob> drain();
+
+    /**
+     * Hook called when a job leaves the scheduler, called while holding 'lock'.
+     */
+    protected void onDispatch(final PrintJob job, final PrinterQueue target) {
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Wake up the dispatcher, subclasses call it (holding 'lock') after adding jobs.
+     */
+    protected void signal() {
+        if (dispatcher == null && running) {
+            dispatcher = new Thread(this::dispatchLoop, getClass().getSimpleName() + "-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Stop dispatching, jobs still held by the scheduler fail. Printer queues are not closed.
+     */
+    @Override
+    public void close() {
+        final List<PrintJob> dropped;
+        final Thread thread;
+        synchronized (lock) {
+            if (!running) return;
+            running = false;
+            dropped = drain();
+            thread = dispatcher;
+            lock.notifyAll();
+        }
+
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (PrintJob job : dropped) {
+            job.getResult().completeExceptionally(new PrinterException("Scheduler closed before job %d was dispatched", job.getId()));
+        }
+    }
+
+    // printer queue with room and the fewest queued labels
+    protected PrinterQueue available() {
+        PrinterQueue best = null;
+        for (PrinterQueue queue : targets) {
+            if (queue.size() < depth && (best == null || queue.getQueuedLabels() < best.getQueuedLabels())) {
+                best = queue;
+            }
+        }
+        return best;
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (running) {
+                final PrinterQueue target = available();
+
+                final PrintJob job;
+                synchronized (lock) {
+                    job = (running && target != null) ? poll(target) : null;
+                    if (job == null) {
+                        lock.wait(POLL_INTERVAL);
+                        continue;
+                    }
+                    onDispatch(job, target);
+                }
+
+                if (job.getResult().isDone()) {
+                    continue;
+                }
+                logger.debugf("Dispatching %s to %s", job, target.getPrinter());
+                target.submit(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
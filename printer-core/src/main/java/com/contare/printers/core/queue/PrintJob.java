@@ -0,0 +1,145 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.stream.EpcPublisher;
+import com.contare.printers.core.utils.CmdUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Print job waiting in a {@link PrinterQueue}.
+ * <p>
+ * Content is rendered by the queue right before the job is printed (while the previous job is still printing),
+ * so jobs waiting in the queue do not hold their labels in memory.
+ */
+@Getter
+public class PrintJob {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long id = SEQUENCE.incrementAndGet();
+    private final String sku;
+    private final Integer epcs;                                 // number of labels inside content
+    private final Supplier<String> content;
+    private final long size;                                    // content bytes (UTF-8) held until it is rendered, 0 if lazy
+    private final CompletableFuture<Set<String>> result = new CompletableFuture<>();
+    private final long submittedAt = System.currentTimeMillis();
+
+    @Setter
+    private long deadline = 0;                                  // time the job must be finished (epoch milliseconds), 0 = none
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    @Getter(AccessLevel.NONE)
+    private EpcPublisher epcStream;                             // created on first use, guarded by 'this'
+    @Getter(AccessLevel.NONE)
+    private boolean relayed = false;                            // a printer feeds 'epcStream', guarded by 'this'
+
+    private PrintJob(final String sku, final Integer epcs, final Supplier<String> content, final long size) {
+        this.sku = sku;
+        this.epcs = epcs;
+        this.content = Objects.requireNonNull(content, "Content is required");
+        this.size = size;
+    }
+
+    public PrintJob(final String sku, final Integer epcs, final Supplier<String> content) {
+        this(sku, epcs, content, 0);
+    }
+
+    public PrintJob(final String content, final String sku, final Integer epcs) {
+        this(sku, epcs, () -> content, CmdUtils.utf8Length(Objects.requireNonNull(content, "Content is required")));
+    }
+
+    /**
+     * Mark the job as started, called by the queue right before sending it to the printer.
+     *
+     * @return false if the job was already started or revoked.
+     */
+    public boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * @return true if the job was sent to the printer (or revoked).
+     */
+    public boolean isClaimed() {
+        return claimed.get();
+    }
+
+    /**
+     * Cancel the job only if the printer did not start it, so its labels can be safely sent somewhere else.
+     *
+     * @return true if the job was revoked, false if it is already printing or finished.
+     */
+    public boolean revoke() {
+        return claim() && result.cancel(false);
+    }
+
+    /**
+     * Stream of the epcs of this job only, subscribe before submitting the job so no epc is missed.
+     * It completes when the job ends (or fails with the job error), after every epc was delivered.
+     *
+     * @return job EPC stream.
+     */
+    public synchronized EpcPublisher getEpcStream() {
+        if (epcStream == null) {
+            final EpcPublisher stream = new EpcPublisher();
+            epcStream = stream;
+            // jobs that never reach a printer end their stream with their result
+            result.whenComplete((r, e) -> {
+                synchronized (this) {
+                    if (relayed) return;
+                }
+                if (e != null) {
+                    stream.closeExceptionally(e);
+                } else {
+                    stream.close();
+                }
+            });
+        }
+        return epcStream;
+    }
+
+    public synchronized boolean hasEpcStream() {
+        return epcStream != null;
+    }
+
+    /**
+     * Feed the job stream from the printer stream while the job prints, called by the queue.
+     *
+     * @param source - printer EPC stream
+     * @return relay to close when the job ends, null if nobody asked for the job stream.
+     */
+    synchronized EpcPublisher.Relay relayFrom(final EpcPublisher source) {
+        if (epcStream == null || epcStream.isClosed()) {
+            return null;
+        }
+        relayed = true;
+        return source.relay(epcStream);
+    }
+
+    public boolean hasDeadline() {
+        return deadline > 0;
+    }
+
+    /**
+     * @return number of labels inside content, 0 if unknown.
+     */
+    public int getLabels() {
+        return (epcs != null) ? epcs : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ id = %d, sku = %s, epcs = %d }", getClass().getSimpleName(), id, sku, epcs);
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.contare.printers.core.queue;
+
+import com.contare.printers.core.Printer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.stream.EpcPublisher;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-printer job queue, a dedicated worker thread owns the printer (and its connection) and prints jobs in order.
+ * <p>
+ * Behaviour:
+ * - Callers submit jobs and get a future completed with the printed epcs (or the printer error).
+ * - Jobs are pipelined: while the current job is printing and its last tags are being collected,
+ * the next job is already rendered, so it is sent as soon as the printer is done with the current one.
+ * - Jobs whose future was canceled by the caller are skipped.
+ * - Jobs with an EPC stream ({@link PrintJob#getEpcStream()}) get the printer epcs while they print.
+ * - Canceling a SKU drops all of its pending jobs at once (see {@link SkuJobQueue}) and cancels it on the printer
+ * if it is printing, the cancel is posted to the printer and sent by the worker (see {@link Printer#requestCancelSku(long)}).
+ * Printers that cannot cancel while printing refuse the cancel, the job then runs to the end.
+ * <p>
+ * obs.: the printer must not be used directly while a queue owns it, drivers keep per-job state (sku, printing, ...).
+ * <p>
+ * Usage pattern:
+ * try (PrinterQueue queue = new PrinterQueue(printer)) {
+ * CompletableFuture&lt;Set&lt;String&gt;&gt; result = queue.submit(content, sku, epcs);
+ * }
+ */
+public class PrinterQueue implements AutoCloseable {
+
+    private static final long POLL_INTERVAL = 200; // milliseconds between checks of the running flag
+
+    private final Logger logger = Logger.getLogger(PrinterQueue.class);
+
+    @Getter
+    private final Printer printer;
+
+    private final Object lock = new Object();
+    private final SkuJobQueue pending = new SkuJobQueue();
+    private final BlockingQueue<Prepared> ready = new ArrayBlockingQueue<>(1); // jobs rendered ahead of the printer
+
+    private final Thread preparer;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+    private volatile PrintJob preparing;    // job being rendered
+    @Getter
+    private volatile PrintJob current;      // job being printed
+
+    private final AtomicLong queuedLabels = new AtomicLong();   // labels of every job not finished yet
+
+    public PrinterQueue(final Printer printer) {
+        this.printer = Objects.requireNonNull(printer, "Printer is required");
+
+        preparer = new Thread(this::prepareLoop, "printer-queue-prepare-" + printer);
+        preparer.setDaemon(true);
+        worker = new Thread(this::printLoop, "printer-queue-worker-" + printer);
+        worker.setDaemon(true);
+
+        preparer.start();
+        worker.start();
+    }
+
+    /**
+     * Enqueue label content.
+     *
+     * @param content - label content
+     * @param sku     - current sku
+     * @param epcs    - number of epcs inside content
+     * @return future completed with the epcs printed by printer.
+     */
+    public CompletableFuture<Set<String>> submit(final String content, final String sku, final Integer epcs) {
+        return submit(new PrintJob(content, sku, epcs));
+    }
+
+    /**
+     * Enqueue a job, its future fails with {@link PrinterException} if the queue is closed.
+     *
+     * @param job - print job
+     * @return future completed with the epcs printed by printer.
+     */
+    public CompletableFuture<Set<String>> submit(final PrintJob job) {
+        Objects.requireNonNull(job, "Job is required");
+        synchronized (lock) {
+            if (!running) {
+                job.getResult().completeExceptionally(new PrinterException("Printer queue is closed"));
+                return job.getResult();
+            }
+            pending.add(job);
+            lock.notifyAll();
+        }
+
+        final int labels = job.getLabels();
+        queuedLabels.addAndGet(labels);
+        job.getResult().whenComplete((r, e) -> queuedLabels.addAndGet(-labels));
+        logger.debugf("Job queued: %s", job);
+        return job.getResult();
+    }
+
+    /**
+     * @return number of jobs not finished yet (waiting, rendered and printing).
+     */
+    public int size() {
+        synchronized (lock) {
+            return pending.size() + ready.size() + ((preparing != null) ? 1 : 0) + ((current != null) ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return number of labels of every job not finished yet, used to estimate when the queue is drained.
+     */
+    public long getQueuedLabels() {
+        return queuedLabels.get();
+    }
+
+    /**
+     * Cancel a single job: dropped if it did not start, canceled on the printer if it is printing.
+     * <p>
+     * obs.: does not wait for the printer, the worker sends the cancel on its next status poll and the job future
+     * completes with the epcs printed until then.
+     *
+     * @param job - job submitted to this queue
+     * @return true if the job was dropped or its cancel posted, false if it already finished
+ * or the printer cannot cancel while printing.
+     */
+    public boolean cancel(final PrintJob job) {
+        if (job.revoke()) {
+            // not started, skipped by the threads
+            return true;
+        }
+        // 'current' is set before the worker claims a job
+        if (current == job && !job.getResult().isDone()) {
+            if (!printer.requestCancel(job.getId())) {
+                return false;
+            }
+            logger.infof("Job %d canceled while printing", job.getId());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancel every job of a SKU: pending jobs are dropped and their futures canceled,
+     * the printer job is canceled if the SKU is printing.
+     * <p>
+     * obs.: does not wait for the printer, the worker sends the cancel on its next status poll.
+     *       The job printing is not counted if the printer cannot cancel while printing.
+     *
+     * @param sku - sku to cancel
+     * @return number of jobs canceled.
+     */
+    public int cancelSku(final String sku) {
+        // a job may be seen both rendering and rendered while it is handed to the worker
+        final Set<PrintJob> canceled;
+        synchronized (lock) {
+            canceled = new LinkedHashSet<>(pending.cancel(sku));
+            final PrintJob rendering = preparing;
+            if (rendering != null && Objects.equals(rendering.getSku(), sku)) {
+                canceled.add(rendering);
+            }
+        }
+        for (Prepared p : ready) {
+            if (Objects.equals(p.job.getSku(), sku)) {
+                canceled.add(p.job);
+            }
+        }
+
+        // skipped by the threads once their future is done
+        for (PrintJob job : canceled) {
+            job.getResult().cancel(false);
+        }
+
+        final PrintJob printing = current;
+        if (printing != null && Objects.equals(printing.getSku(), sku)) {
+            if (printer.requestCancelSku(printing.getId())) {
+                canceled.add(printing);
+            } else {
+                logger.warnf("SKU %s is printing (job %d), it cannot be canceled", sku, printing.getId());
+            }
+        }
+
+        logger.infof("SKU %s canceled, %d jobs dropped", sku, canceled.size());
+        return canceled.size();
+    }
+
+    /**
+     * Stop accepting jobs, fail the ones not started yet, wait for the current job and close the printer.
+     */
+    @Override
+    public void close() throws PrinterException {
+        final List<PrintJob> dropped = new ArrayList<>();
+        synchronized (lock) {
+            if (!running) return;
+            running = false;
+            dropped.addAll(pending.clear());
+            lock.notifyAll();
+        }
+
+        try {
+            preparer.join();
+            for (Prepared p : ready) {
+                dropped.add(p.job);
+            }
+            ready.clear();
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (PrintJob job : dropped) {
+            job.getResult().completeExceptionally(new PrinterException("Printer queue closed before job %d was printed", job.getId()));
+        }
+
+        try {
+            printer.close();
+        } catch (PrinterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new PrinterException(e, "Error closing printer");
+        }
+    }
+
+    private PrintJob take() throws InterruptedException {
+        synchronized (lock) {
+            while (running && pending.isEmpty()) {
+                lock.wait();
+            }
+            final PrintJob job = running ? pending.poll() : null;
+            preparing = job;
+            return job;
+        }
+    }
+
+    // render the next job while the worker is printing the current one
+    private void prepareLoop() {
+        try {
+            PrintJob job;
+            while ((job = take()) != null) {
+                try {
+                    if (job.getResult().isDone()) {
+                        continue;
+                    }
+
+                    final String content;
+                    try {
+                        content = job.getContent().get();
+                    } catch (RuntimeException e) {
+                        job.getResult().completeExceptionally(new PrinterException(e, "Error rendering job %d", job.getId()));
+                        continue;
+                    }
+
+                    final Prepared prepared = new Prepared(job, content);
+                    while (!ready.offer(prepared, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            job.getResult().completeExceptionally(new PrinterException("Printer queue closed before job %d was printed", job.getId()));
+                            break;
+                        }
+                    }
+                } finally {
+                    preparing = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // print rendered jobs, never interrupted while printing so the connection is not torn down mid-job
+    private void printLoop() {
+        try {
+            while (running || !ready.isEmpty() || preparer.isAlive()) {
+                final Prepared next = ready.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    continue;
+                }
+                if (!running) {
+                    next.job.getResult().completeExceptionally(new PrinterException("Printer queue closed before job %d was printed", next.job.getId()));
+                    continue;
+                }
+
+                final PrintJob job = next.job;
+                // cancel requests are tied to the job id, stale ones are dropped here
+                printer.setJobId(job.getId());
+                current = job;
+                if (job.getResult().isDone() || !job.claim()) {
+                    current = null;
+                    printer.setJobId(0);
+                    continue;
+                }
+
+                final EpcPublisher.Relay relay = job.relayFrom(printer.getEpcStream());
+                try {
+                    logger.debugf("Printing job: %s", job);
+                    job.getResult().complete(printer.print(next.content, job.getSku(), job.getEpcs()));
+                } catch (PrinterException | RuntimeException e) {
+                    logger.warnf(e, "Job %d failed", job.getId());
+                    if (relay != null) {
+                        relay.fail(e);
+                    }
+                    job.getResult().completeExceptionally(e);
+                } finally {
+                    current = null;
+                    printer.setJobId(0);
+                    if (relay != null) {
+                        relay.close();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Prepared {
+        private final PrintJob job;
+        private final String content;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.contare.printers.core.queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FIFO of print jobs indexed by SKU, canceling a SKU drops all of its pending jobs in constant time.
+ * <p>
+ * Behaviour:
+ * - Each SKU has a bucket holding its jobs in arrival order, the global FIFO only keeps one bucket reference per job.
+ * - Polling takes the head bucket and its oldest job, so the global arrival order is kept.
+ * - Canceling a SKU detaches its bucket from the index and marks it canceled, the references left in the FIFO
+ * are skipped when they reach the head (and compacted away once they outnumber the live jobs).
+ * <p>
+ * obs.: not thread-safe, callers must synchronize.
+ */
+public class SkuJobQueue {
+
+    private static final int MIN_COMPACTION = 64; // do not compact tiny queues
+
+    private final Deque<Bucket> fifo = new ArrayDeque<>();
+    private final Map<String, Bucket> index = new HashMap<>();
+    private int size = 0;   // live jobs
+    private int dead = 0;   // fifo references of canceled buckets
+
+    public void add(final PrintJob job) {
+        final Bucket bucket = index.computeIfAbsent(job.getSku(), (k) -> new Bucket());
+        bucket.jobs.addLast(job);
+        fifo.addLast(bucket);
+        size++;
+    }
+
+    /**
+     * @return oldest pending job, null if empty.
+     */
+    public PrintJob poll() {
+        Bucket bucket;
+        while ((bucket = fifo.pollFirst()) != null) {
+            if (bucket.canceled) {
+                dead--;
+                continue;
+            }
+
+            final PrintJob job = bucket.jobs.pollFirst();
+            if (bucket.jobs.isEmpty()) {
+                index.remove(job.getSku(), bucket);
+            }
+            size--;
+            return job;
+        }
+        return null;
+    }
+
+    /**
+     * Drop every pending job of a SKU.
+     *
+     * @param sku - sku to cancel
+     * @return jobs removed, in arrival order.
+     */
+    public List<PrintJob> cancel(final String sku) {
+        final Bucket bucket = index.remove(sku);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+
+        bucket.canceled = true;
+        final int count = bucket.jobs.size();
+        size -= count;
+        dead += count;
+        compact();
+
+        return new ArrayList<>(bucket.jobs);
+    }
+
+    /**
+     * Drop every pending job.
+     *
+     * @return jobs removed, in arrival order.
+     */
+    public List<PrintJob> clear() {
+        final List<PrintJob> out = new ArrayList<>(size);
+        PrintJob job;
+        while ((job = poll()) != null) {
+            out.add(job);
+        }
+        fifo.clear();
+        dead = 0;
+        return out;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of pending jobs of a SKU.
+     */
+    public int size(final String sku) {
+        final Bucket bucket = index.get(sku);
+        return (bucket != null) ? bucket.jobs.size() : 0;
+    }
+
+    // amortized: only runs once canceled references outnumber live jobs
+    private void compact() {
+        if (dead < MIN_COMPACTION || dead <= size) return;
+
+        fifo.removeIf((b) -> b.canceled);
+        dead = 0;
+    }
+
+    private static class Bucket {
+        private final Deque<PrintJob> jobs = new ArrayDeque<>();
+        private boolean canceled = false;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.contare.printers.core.queue;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Job kept by a {@link DurableJobQueue}, its content stays in the mapped segment until it is read.
+ */
+@Getter
+public class StoredJob {
+
+    private final String key;               // idempotent job id, given by the caller
+    private final String sku;
+    private final Integer epcs;             // number of labels inside content
+    private final long enqueuedAt;          // epoch milliseconds
+
+    @Getter(AccessLevel.NONE)
+    private final ByteBuffer segment;       // mapped segment holding the content
+    @Getter(AccessLevel.NONE)
+    private final int offset;               // content position inside the segment
+    @Getter(AccessLevel.NONE)
+    private final int length;               // content length (bytes)
+
+    StoredJob(final String key, final String sku, final Integer epcs, final long enqueuedAt,
+              final ByteBuffer segment, final int offset, final int length) {
+        this.key = key;
+        this.sku = sku;
+        this.epcs = epcs;
+        this.enqueuedAt = enqueuedAt;
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return label content, read from the segment on each call.
+     */
+    public String getContent() {
+        final ByteBuffer in = segment.duplicate();
+        in.position(offset);
+        in.limit(offset + length);
+        return StandardCharsets.UTF_8.decode(in).toString();
+    }
+
+    /**
+     * @return content size (bytes).
+     */
+    public int getSize() {
+        return length;
+    }
+
+    /**
+     * @return print job rendering its content from the segment when the printer queue gets to it.
+     */
+    public PrintJob toPrintJob() {
+        return new PrintJob(sku, epcs, this::getContent);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ key = %s, sku = %s, epcs = %s, size = %d }", getClass().getSimpleName(), key, sku, epcs, length);
+    }
+
+}
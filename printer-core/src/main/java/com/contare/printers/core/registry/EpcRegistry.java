@@ -0,0 +1,376 @@
+package com.contare.printers.core.registry;
+
+import com.contare.printers.core.PrinterConsumer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.EpcDuplicate;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of every EPC confirmed by the printers, to detect the same EPC encoded twice (e.g. two printers
+ * given overlapping serial ranges) as soon as it happens.
+ * <p>
+ * Behaviour:
+ * - EPCs of up to 96 bits (24 hexadecimal characters) are kept off-heap, 16 bytes each, in open-addressing tables
+ * split in shards, each one with its own lock; longer or non-hexadecimal EPCs are kept in a map.
+ * - A full shard grows by adding a table twice as large, older tables are kept as they are (never copied), so no
+ * direct buffer is left for the garbage collector to free.
+ * - Each shard has an off-heap Bloom filter in front of its table: an EPC never seen is inserted without comparing it
+ * with the table entries and {@link #contains} answers it without taking a lock.
+ * - Each entry keeps the source (printer and sku) that registered it, so a duplicate names both sources. Sources are
+ * bounded ('maxSources' printer/sku pairs), past that new pairs are registered without a source (logged once).
+ * - Duplicates are returned by {@link #register} and delivered to the listeners on the calling (driver) thread.
+ * <p>
+ * obs.: the Bloom filters are sized for 'expected' EPCs, past that they only lose their speed-up (never accuracy);
+ * {@link #contains} may miss an EPC being registered by another thread at the same time.
+ * <p>
+ * obs.: tables and filters are allocated up front for 'expected' EPCs, about 23 bytes per EPC rounded up to powers
+ * of two (see {@link #getOffHeapBytes()}), and count against -XX:MaxDirectMemorySize (defaults to the maximum heap):
+ * size 'expected' for the whole run and leave room for growth in that limit.
+ * <p>
+ * Usage pattern:
+ * EpcRegistry registry = new EpcRegistry(20_000_000);
+ * registry.addListener((duplicate) -> alert(duplicate));
+ * printers.forEach((printer) -> printer.setEpcRegistry(registry));
+ */
+public class EpcRegistry {
+
+    public static final long DEFAULT_EXPECTED = 1_000_000;
+    public static final int DEFAULT_MAX_SOURCES = 65_536;
+
+    private static final int SHARDS = 64;                   // picked by the top 6 bits of the hash
+    private static final int SLOT = 16;                     // bytes: epc high 64 bits, epc low 32 bits, meta
+    private static final int MAX_CHARS = 24;                // 96 bits
+    private static final int SOURCE_MASK = (1 << 24) - 1;   // meta: [length 8 bits][source + 1, 24 bits]
+    private static final int MAX_TABLE = 1 << 26;           // slots of the largest table (1 GB)
+    private static final int BLOOM_BITS_PER_EPC = 10;
+    private static final int BLOOM_HASHES = 7;              // ~1% false positives at 'expected' epcs
+
+    private final Logger logger = Logger.getLogger(EpcRegistry.class);
+
+    private final Shard[] shards = new Shard[SHARDS];
+
+    private final Map<String, Integer> others = new ConcurrentHashMap<>(); // epcs the tables cannot hold -> source
+    private final Map<String, Map<String, Integer>> sourceIds = new ConcurrentHashMap<>();    // printer -> sku -> id
+    private final List<String[]> sources = new ArrayList<>();              // id -> {printer, sku}, guarded by itself
+    private final int maxSources;
+    private volatile boolean sourcesFull = false;
+    private final List<PrinterConsumer<EpcDuplicate>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public EpcRegistry() {
+        this(DEFAULT_EXPECTED);
+    }
+
+    public EpcRegistry(final long expected) {
+        this(expected, DEFAULT_MAX_SOURCES);
+    }
+
+    /**
+     * @param expected   - number of epcs expected, sizes the Bloom filter and the initial tables
+     * @param maxSources - number of printer/sku pairs remembered
+     */
+    public EpcRegistry(final long expected, final int maxSources) {
+        if (expected <= 0 || maxSources <= 0 || maxSources >= SOURCE_MASK) {
+            throw new IllegalArgumentException("Invalid registry limits: expected = " + expected + ", sources = " + maxSources);
+        }
+        this.maxSources = maxSources;
+        sources.add(new String[]{null, null}); // id 0: unknown source, used once 'maxSources' is reached
+
+        final long perShard = expected / SHARDS + 1;
+        final int capacity = (int) Math.max(1_024, Math.min(MAX_TABLE, Long.highestOneBit((long) (perShard / 0.75)) << 1));
+        final int bloomBytes = (int) Math.max(64, Math.min(1 << 30, Long.highestOneBit(perShard * BLOOM_BITS_PER_EPC / 8) << 1));
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(capacity, bloomBytes);
+        }
+    }
+
+    /**
+     * Be notified of every duplicate, on the thread that registered it (keep it short).
+     *
+     * @param listener - duplicate consumer
+     */
+    public void addListener(final PrinterConsumer<EpcDuplicate> listener) {
+        listeners.add(Objects.requireNonNull(listener, "Listener is required"));
+    }
+
+    public void removeListener(final PrinterConsumer<EpcDuplicate> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Register an epc confirmed by a printer.
+     *
+     * @param epc     - rfid hexadecimal string
+     * @param printer - printer label
+     * @param sku     - job sku
+     * @return null if the epc is new, the duplicate (already delivered to the listeners) otherwise.
+     */
+    public EpcDuplicate register(final String epc, final String printer, final String sku) {
+        final int source = source(printer, sku);
+
+        final int first;
+        if (!isHex(epc)) {
+            final Integer previous = others.putIfAbsent(epc, source);
+            if (previous == null) return null;
+            first = previous;
+        } else {
+            final long high = high(epc);
+            final long low = low(epc);
+            final long hash = hash(high, low, epc.length());
+            final Shard shard = shards[(int) (hash >>> 58)];
+            synchronized (shard) {
+                final int previous = shard.insert(high, low, (epc.length() << 24) | (source + 1), hash);
+                if (previous == 0) return null;
+                first = (previous & SOURCE_MASK) - 1;
+            }
+        }
+
+        duplicates.incrementAndGet();
+        final String[] a = source(first);
+        final EpcDuplicate duplicate = new EpcDuplicate(epc, a[0], a[1], printer, sku, System.currentTimeMillis());
+        logger.warnf("Duplicate EPC: %s", duplicate);
+        for (PrinterConsumer<EpcDuplicate> listener : listeners) {
+            try {
+                listener.accept(duplicate);
+            } catch (PrinterException | RuntimeException e) {
+                logger.errorf(e, "Duplicate listener failed for EPC %s", epc);
+            }
+        }
+        return duplicate;
+    }
+
+    /**
+     * @param epc - rfid hexadecimal string
+     * @return true if the epc was registered.
+     */
+    public boolean contains(final String epc) {
+        if (!isHex(epc)) {
+            return others.containsKey(epc);
+        }
+        final long high = high(epc);
+        final long low = low(epc);
+        final long hash = hash(high, low, epc.length());
+        final Shard shard = shards[(int) (hash >>> 58)];
+        if (!shard.mightContain(hash)) {
+            return false;
+        }
+        synchronized (shard) {
+            return shard.find(high, low, epc.length(), hash) != 0;
+        }
+    }
+
+    /**
+     * @return number of epcs registered.
+     */
+    public long size() {
+        long out = others.size();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                out += shard.size;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return number of duplicates detected.
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return memory held outside the heap by the tables (bytes).
+     */
+    public long getOffHeapBytes() {
+        long out = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                out += shard.bytes + shard.bloom.capacity();
+            }
+        }
+        return out;
+    }
+
+    // SOURCES
+
+    private int source(final String printer, final String sku) {
+        Map<String, Integer> skus = sourceIds.get(String.valueOf(printer));
+        if (skus == null) {
+            if (sourcesFull) return 0;
+            skus = sourceIds.computeIfAbsent(String.valueOf(printer), (k) -> new ConcurrentHashMap<>());
+        }
+        final String key = (sku != null) ? sku : "";
+        final Integer id = skus.get(key);
+        if (id != null) return id;
+        synchronized (sources) {
+            final Integer known = skus.get(key);
+            if (known != null) return known;
+            if (sources.size() > maxSources) {
+                // not remembered, so the maps stop growing
+                if (!sourcesFull) {
+                    sourcesFull = true;
+                    logger.warnf("EPC registry holds %d sources, new printer/sku pairs are registered without one", maxSources);
+                }
+                return 0;
+            }
+            sources.add(new String[]{printer, sku});
+            skus.put(key, sources.size() - 1);
+            return sources.size() - 1;
+        }
+    }
+
+    private String[] source(final int id) {
+        synchronized (sources) {
+            return sources.get(id);
+        }
+    }
+
+    // EPC ENCODING: up to 24 hexadecimal characters as a 96-bit number, the length tells "0A" from "000A" apart
+
+    // bits 95..32, call only when the epc fits (see 'isHex')
+    private static long high(final String epc) {
+        long high = 0;
+        for (int i = 0; i < epc.length() - 8; i++) {
+            high = (high << 4) | Character.digit(epc.charAt(i), 16);
+        }
+        return high;
+    }
+
+    // bits 31..0, call only when the epc fits
+    private static long low(final String epc) {
+        final int length = epc.length();
+        long low = 0;
+        for (int i = Math.max(0, length - 8); i < length; i++) {
+            low = (low << 4) | Character.digit(epc.charAt(i), 16);
+        }
+        return low;
+    }
+
+    // true if the epc fits in a table entry
+    private static boolean isHex(final String epc) {
+        final int length = epc.length();
+        if (length == 0 || length > MAX_CHARS) return false;
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(epc.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private static long hash(final long high, final long low, final int length) {
+        long h = high * 0x9E3779B97F4A7C15L + low * 0xC2B2AE3D27D4EB4FL + length;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // open-addressing tables (linear probing) and Bloom filter in direct buffers, written holding its own monitor
+    private static class Shard {
+
+        private final List<ByteBuffer> tables = new ArrayList<>();  // oldest first, each twice as large as the previous
+        private ByteBuffer table;   // newest table, receives inserts
+        private int used = 0;       // entries in the newest table
+        private int size = 0;
+        private long bytes = 0;     // off-heap bytes of every table
+
+        private final ByteBuffer bloom;
+        private final long bloomMask;
+
+        private Shard(final int capacity, final int bloomBytes) {
+            addTable(capacity);
+            this.bloom = ByteBuffer.allocateDirect(bloomBytes);
+            this.bloomMask = (long) bloomBytes * 8 - 1;
+        }
+
+        // double hashing, read without the monitor
+        private boolean mightContain(final long hash) {
+            final long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                final long bit = (hash + i * h2) & bloomMask;
+                if ((bloom.get((int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addToBloom(final long hash) {
+            final long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                final long bit = (hash + i * h2) & bloomMask;
+                final int at = (int) (bit >>> 3);
+                bloom.put(at, (byte) (bloom.get(at) | (1 << (bit & 7))));
+            }
+        }
+
+        // meta of the entry holding the epc, 0 if absent (newest table first)
+        private int find(final long high, final long low, final int length, final long hash) {
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                final int meta = find(tables.get(i), high, low, length, hash);
+                if (meta != 0) return meta;
+            }
+            return 0;
+        }
+
+        // meta of the existing entry, or 0 if inserted
+        private int insert(final long high, final long low, final int meta, final long hash) {
+            // if the filter never saw it, no entry can match: only look for a free slot
+            if (mightContain(hash)) {
+                final int current = find(high, low, meta >>> 24, hash);
+                if (current != 0) return current;
+            }
+
+            final int mask = table.capacity() / SLOT - 1;
+            int slot = (int) hash & mask;
+            while (table.getInt(slot * SLOT + 12) != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            final int at = slot * SLOT;
+            table.putLong(at, high);
+            table.putInt(at + 8, (int) low);
+            table.putInt(at + 12, meta);
+            addToBloom(hash);
+            size++;
+            if (++used > (mask + 1) / 4 * 3) {
+                addTable(Math.min(MAX_TABLE, (mask + 1) * 2));
+            }
+            return 0;
+        }
+
+        private void addTable(final int capacity) {
+            table = ByteBuffer.allocateDirect(capacity * SLOT);
+            tables.add(table);
+            used = 0;
+            bytes += (long) capacity * SLOT;
+        }
+
+        private static int find(final ByteBuffer table, final long high, final long low, final int length, final long hash) {
+            final int mask = table.capacity() / SLOT - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                final int at = slot * SLOT;
+                final int meta = table.getInt(at + 12);
+                if (meta == 0) return 0;
+                if ((meta >>> 24) == length && table.getLong(at) == high && (table.getInt(at + 8) & 0xFFFFFFFFL) == low) {
+                    return meta;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.contare.printers.core.stream;
+
+import com.contare.printers.core.PrinterConsumer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.EpcBatch;
+import com.contare.printers.core.objects.EpcEvent;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects EPC/TID pairs per printer and job and delivers them in bulk, instead of one callback per tag.
+ * <p>
+ * Behaviour:
+ * - A batch holds the epcs of one printer and one sku, it is delivered when it reaches 'maxItems' epcs,
+ * when 'maxDelay' milliseconds passed since its first epc, when the sku changes, and always when the job ends.
+ * - Every job ends with a 'jobEnd' batch, an empty one when nothing is pending (no epc returned, or the last batch
+ * was already delivered because it was full).
+ * - Batches are delivered in order on a single thread, so the consumer (e.g. a database writer) never slows down
+ * the printer drivers and never sees two batches at once.
+ * - Consumer errors are logged, the batch is dropped.
+ * <p>
+ * Usage pattern:
+ * EpcBatcher batcher = new EpcBatcher((batch) -> repository.insert(batch), 500, 1_000);
+ * printer.setEpcBatcher(batcher);
+ */
+public class EpcBatcher implements AutoCloseable {
+
+    private final Logger logger = Logger.getLogger(EpcBatcher.class);
+
+    private final PrinterConsumer<EpcBatch> consumer;
+    @Getter
+    private final int maxItems;     // epcs per batch
+    @Getter
+    private final long maxDelay;    // maximum time an epc waits for others (milliseconds)
+
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    private final Map<String, Pending> pending = new HashMap<>();   // by printer
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong epcs = new AtomicLong();
+
+    public EpcBatcher(final PrinterConsumer<EpcBatch> consumer, final int maxItems, final long maxDelay) {
+        if (maxItems <= 0 || maxDelay <= 0) {
+            throw new IllegalArgumentException("Invalid batch limits: items = " + maxItems + ", delay = " + maxDelay);
+        }
+        this.consumer = Objects.requireNonNull(consumer, "Consumer is required");
+        this.maxItems = maxItems;
+        this.maxDelay = maxDelay;
+        this.executor = Executors.newSingleThreadScheduledExecutor((r) -> {
+            final Thread t = new Thread(r, "epc-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Add an epc returned by a printer.
+     *
+     * @param printer - printer label
+     * @param sku     - sku being printed
+     * @param epc     - rfid hexadecimal string
+     * @param tid     - tag id, may be null
+     */
+    public void add(final String printer, final String sku, final String epc, final String tid) {
+        final long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Pending current = pending.get(printer);
+            if (current != null && !Objects.equals(current.sku, sku)) {
+                seal(current, false);
+                current = null;
+            }
+            if (current == null) {
+                current = new Pending(printer, sku, now);
+                final Pending scheduled = current;
+                current.timer = executor.schedule(() -> expire(scheduled), maxDelay, TimeUnit.MILLISECONDS);
+                pending.put(printer, current);
+            }
+
+            current.epcs.add(new EpcEvent(epc, tid, sku, printer, now));
+            current.lastAt = now;
+            if (current.epcs.size() >= maxItems) {
+                seal(current, false);
+            }
+        }
+    }
+
+    /**
+     * Deliver the epcs still pending for a printer, called when its job ends.
+     *
+     * @param printer - printer label
+     * @param sku     - sku of the job
+     */
+    public void endJob(final String printer, final String sku) {
+        synchronized (lock) {
+            Pending current = pending.get(printer);
+            if (current == null) {
+                // nothing pending, consumers still get the end of the job
+                current = new Pending(printer, sku, System.currentTimeMillis());
+            }
+            seal(current, true);
+        }
+    }
+
+    /**
+     * Deliver every pending batch now.
+     */
+    public void flush() {
+        synchronized (lock) {
+            for (Pending current : new ArrayList<>(pending.values())) {
+                seal(current, false);
+            }
+        }
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getEpcs() {
+        return epcs.get();
+    }
+
+    /**
+     * Flush pending batches, wait for their delivery and stop the delivery thread.
+     */
+    @Override
+    public void close() {
+        flush();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Timeout waiting for EPC batches delivery");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expire(final Pending scheduled) {
+        synchronized (lock) {
+            if (pending.get(scheduled.printer) == scheduled) {
+                seal(scheduled, false);
+            }
+        }
+    }
+
+    // called holding 'lock', delivery is queued in order on the executor
+    private void seal(final Pending current, final boolean jobEnd) {
+        pending.remove(current.printer, current);
+        if (current.timer != null) {
+            current.timer.cancel(false);
+        }
+
+        final EpcBatch batch = new EpcBatch(current.printer, current.sku, current.epcs, current.firstAt, current.lastAt,
+            System.currentTimeMillis(), jobEnd);
+        executor.execute(() -> deliver(batch));
+    }
+
+    private void deliver(final EpcBatch batch) {
+        try {
+            consumer.accept(batch);
+            batches.incrementAndGet();
+            epcs.addAndGet(batch.size());
+        } catch (PrinterException | RuntimeException e) {
+            logger.errorf(e, "Failed to deliver %s", batch);
+        }
+    }
+
+    private static class Pending {
+        private final String printer;
+        private final String sku;
+        private final long firstAt;
+        private final List<EpcEvent> epcs = new ArrayList<>();
+        private long lastAt;
+        private ScheduledFuture<?> timer;
+
+        private Pending(final String printer, final String sku, final long firstAt) {
+            this.printer = printer;
+            this.sku = sku;
+            this.firstAt = firstAt;
+            this.lastAt = firstAt;
+        }
+    }
+
+}
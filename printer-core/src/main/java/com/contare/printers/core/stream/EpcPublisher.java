@@ -0,0 +1,395 @@
+package com.contare.printers.core.stream;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.EpcEvent;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Stream of EPCs returned by a printer (or by a single job), with demand-based backpressure and batched delivery.
+ * Java 8 counterpart of java.util.concurrent.SubmissionPublisher.
+ * <p>
+ * Behaviour:
+ * - Each subscriber has its own bounded buffer, events are delivered on 'executor' in batches of at most
+ * 'maxBatch' events and never more than the subscriber requested.
+ * - When a subscriber buffer is full, {@link #publish} blocks: the printer driver stops reading tags until the
+ * subscriber requests more, so a slow consumer (e.g. a database writer) slows the producer down instead of
+ * growing memory.
+ * - A subscriber that keeps the producer blocked longer than 'maxBlock' is dropped with an error, the producer is
+ * the driver socket-read thread so a subscriber that stops requesting must never hang the printer.
+ * - {@link #close()} ends every subscription after its buffered events are delivered.
+ * <p>
+ * obs.: with 'maxBlock' = 0 a subscriber that stops requesting stalls the printer until it cancels,
+ *       the default ({@link #DEFAULT_MAX_BLOCK}) stays below the driver read timeout.
+ * <p>
+ * Usage pattern:
+ * printer.getEpcStream().subscribe(new EpcSubscriber() {
+ * public void onSubscribe(EpcSubscription s) { this.s = s; s.request(500); }
+ * public void onNext(List&lt;EpcEvent&gt; batch) { insert(batch); s.request(batch.size()); }
+ * ...
+ * });
+ */
+public class EpcPublisher implements AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1_024;
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_MAX_BLOCK = 5_000;
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool((r) -> {
+        final Thread thread = new Thread(r, "epc-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Logger logger = Logger.getLogger(EpcPublisher.class);
+
+    private final Executor executor;
+    @Getter
+    private final int bufferSize;   // events buffered per subscriber before the producer blocks
+    @Getter
+    private final int maxBatch;     // events per 'onNext' call
+
+    @Getter
+    @Setter
+    private volatile long maxBlock = DEFAULT_MAX_BLOCK; // milliseconds a subscriber may block the producer, 0 = forever
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    public EpcPublisher() {
+        this(DEFAULT_EXECUTOR, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BATCH);
+    }
+
+    public EpcPublisher(final Executor executor, final int bufferSize, final int maxBatch) {
+        if (bufferSize <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size / batch: " + bufferSize + " / " + maxBatch);
+        }
+        this.executor = Objects.requireNonNull(executor, "Executor is required");
+        this.bufferSize = bufferSize;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Add a subscriber, it receives the events published from now on.
+     * If the publisher is already closed, the subscriber is completed right away.
+     *
+     * @param subscriber - events receiver
+     */
+    public void subscribe(final EpcSubscriber subscriber) {
+        attach(subscriber);
+    }
+
+    /**
+     * Deliver an event to every subscriber, blocking while a subscriber buffer is full.
+     *
+     * @param event - epc event
+     * @throws InterruptedException if interrupted while waiting for a subscriber.
+     */
+    public void publish(final EpcEvent event) throws InterruptedException {
+        Objects.requireNonNull(event, "Event is required");
+        if (closed) {
+            throw new IllegalStateException("EPC stream is closed");
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Forward every event of this stream to 'target' until the returned relay is closed, used to derive a job
+     * stream from the printer stream. Backpressure of 'target' subscribers propagates to this stream producer.
+     *
+     * @param target - stream receiving the events
+     * @return relay, closing it completes 'target' once the events already published here are forwarded.
+     */
+    public Relay relay(final EpcPublisher target) {
+        final Relay relay = new Relay(Objects.requireNonNull(target, "Target is required"));
+        attach(relay.forwarder);
+        return relay;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return events buffered by the slowest subscriber.
+     */
+    public int getMaxBuffered() {
+        int max = 0;
+        for (Subscription subscription : subscriptions) {
+            max = Math.max(max, subscription.buffered());
+        }
+        return max;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Complete every subscriber once its buffered events are delivered, further events are rejected.
+     */
+    @Override
+    public void close() {
+        finish(null);
+    }
+
+    /**
+     * Fail every subscriber once its buffered events are delivered, further events are rejected.
+     *
+     * @param cause - error delivered to subscribers
+     */
+    public void closeExceptionally(final Throwable cause) {
+        finish(Objects.requireNonNull(cause, "Cause is required"));
+    }
+
+    private void finish(final Throwable cause) {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.finish(cause);
+        }
+    }
+
+    private void attach(final EpcSubscriber subscriber) {
+        final Subscription subscription = new Subscription(Objects.requireNonNull(subscriber, "Subscriber is required"));
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.finish(null);
+        }
+    }
+
+    /**
+     * Forwarding from a stream to another one, see {@link #relay(EpcPublisher)}.
+     */
+    public final class Relay {
+
+        private final EpcSubscriber forwarder;
+        private Subscription subscription;
+
+        private Relay(final EpcPublisher target) {
+            this.forwarder = new EpcSubscriber() {
+                @Override
+                public void onSubscribe(final EpcSubscription s) {
+                    subscription = (Subscription) s;
+                    s.request(bufferSize);
+                }
+
+                @Override
+                public void onNext(final List<EpcEvent> batch) {
+                    try {
+                        for (EpcEvent event : batch) {
+                            target.publish(event);
+                        }
+                        subscription.request(batch.size());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        subscription.cancel();
+                        target.closeExceptionally(e);
+                    } catch (IllegalStateException e) {
+                        // target closed on its own, stop forwarding
+                        subscription.cancel();
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    target.closeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    target.close();
+                }
+            };
+        }
+
+        /**
+         * Stop forwarding and complete the target once pending events are forwarded.
+         */
+        public void close() {
+            subscription.finish(null);
+        }
+
+        /**
+         * Stop forwarding and fail the target once pending events are forwarded.
+         *
+         * @param cause - error delivered to the target subscribers
+         */
+        public void fail(final Throwable cause) {
+            subscription.finish(Objects.requireNonNull(cause, "Cause is required"));
+        }
+
+    }
+
+    private final class Subscription implements EpcSubscription {
+
+        private final EpcSubscriber subscriber;
+
+        // guarded by 'this'
+        private final ArrayDeque<EpcEvent> buffer = new ArrayDeque<>();
+        private long demand = 0;
+        private boolean finished = false;       // no more events are accepted, terminal signal after the buffer
+        private Throwable failure;
+        private boolean draining = false;       // a drain task is scheduled or running
+        private volatile boolean cancelled = false;
+
+        private Subscription(final EpcSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            synchronized (this) {
+                if (cancelled) return;
+                if (n <= 0) {
+                    buffer.clear();
+                    notifyAll();
+                    finished = true;
+                    failure = new IllegalArgumentException("Invalid request: " + n);
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                }
+                schedule();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                buffer.clear();
+                notifyAll();
+            }
+            subscriptions.remove(this);
+        }
+
+        private void offer(final EpcEvent event) throws InterruptedException {
+            synchronized (this) {
+                final long limit = maxBlock;
+                final long deadline = System.currentTimeMillis() + limit;
+                while (buffer.size() >= bufferSize && !cancelled && !finished) {
+                    if (limit <= 0) {
+                        wait();
+                        continue;
+                    }
+
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        logger.warnf("EPC subscriber %s blocked the printer for more than %d ms, dropping it", subscriber, limit);
+                        buffer.clear();
+                        finished = true;
+                        failure = new PrinterException("Subscriber did not keep up with the printer (blocked %d ms)", limit);
+                        schedule();
+                        return;
+                    }
+                    wait(remaining);
+                }
+                if (cancelled || finished) return;
+
+                buffer.addLast(event);
+                schedule();
+            }
+        }
+
+        private void finish(final Throwable cause) {
+            synchronized (this) {
+                if (finished) return;
+                finished = true;
+                failure = cause;
+                notifyAll();
+                schedule();
+            }
+        }
+
+        private synchronized int buffered() {
+            return buffer.size();
+        }
+
+        // called holding 'this'
+        private void schedule() {
+            if (draining || cancelled) return;
+            if ((demand > 0 && !buffer.isEmpty()) || (finished && buffer.isEmpty())) {
+                draining = true;
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining = false;
+                    logger.errorf(e, "EPC stream executor rejected delivery to %s", subscriber);
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                final List<EpcEvent> batch;
+                synchronized (this) {
+                    if (cancelled) {
+                        draining = false;
+                        return;
+                    }
+
+                    if (demand > 0 && !buffer.isEmpty()) {
+                        final int n = (int) Math.min(Math.min(demand, maxBatch), buffer.size());
+                        batch = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            batch.add(buffer.pollFirst());
+                        }
+                        demand -= n;
+                        notifyAll(); // room for the producer
+                    } else if (finished && buffer.isEmpty()) {
+                        cancelled = true;
+                        batch = null;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+
+                if (batch == null) {
+                    subscriptions.remove(this);
+                    terminate();
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(batch);
+                } catch (RuntimeException e) {
+                    logger.errorf(e, "EPC subscriber %s failed, canceling its subscription", subscriber);
+                    cancel();
+                    return;
+                }
+            }
+        }
+
+        private void terminate() {
+            try {
+                if (failure != null) {
+                    subscriber.onError(failure);
+                } else {
+                    subscriber.onComplete();
+                }
+            } catch (RuntimeException e) {
+                logger.errorf(e, "EPC subscriber %s failed on termination", subscriber);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.contare.printers.core.stream;
+
+import com.contare.printers.core.objects.EpcEvent;
+
+import java.util.List;
+
+/**
+ * Receiver of an {@link EpcPublisher} stream, same contract as java.util.concurrent.Flow.Subscriber (Java 9)
+ * except that items are delivered in batches.
+ * <p>
+ * Behaviour:
+ * - {@link #onSubscribe} is called first, nothing is delivered until {@link EpcSubscription#request(long)} is called.
+ * - {@link #onNext} receives at most the requested number of events, in the order the printer returned them.
+ * - {@link #onComplete} or {@link #onError} is called once, after every buffered event was delivered.
+ * - Calls are never concurrent for the same subscriber, but may come from different threads.
+ */
+public interface EpcSubscriber {
+
+    void onSubscribe(final EpcSubscription subscription);
+
+    void onNext(final List<EpcEvent> batch);
+
+    void onError(final Throwable throwable);
+
+    void onComplete();
+
+}
@@ -0,0 +1,21 @@
+package com.contare.printers.core.stream;
+
+/**
+ * Link between an {@link EpcPublisher} and one {@link EpcSubscriber}, same contract as
+ * java.util.concurrent.Flow.Subscription (Java 9).
+ */
+public interface EpcSubscription {
+
+    /**
+     * Allow the publisher to deliver 'n' more events, demand is cumulative.
+     *
+     * @param n - number of events (> 0)
+     */
+    void request(final long n);
+
+    /**
+     * Stop receiving events, buffered events are dropped.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,314 @@
+package com.contare.printers.core.stream;
+
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated ring of printer events shared by many printers (Disruptor style), so consumers see the EPC,
+ * status and error events of every driver as one ordered stream without locks on the hot path.
+ * <p>
+ * Behaviour:
+ * - Producers (printer drivers) claim a sequence with a CAS, fill the pre-allocated slot and mark it published,
+ * no object is allocated per event.
+ * - Each consumer has its own thread and sequence and sees every event; it handles all the events available at once
+ * (a batch) and 'endOfBatch' tells it when to flush.
+ * - A producer never overwrites a slot a consumer did not handle yet: when the ring is full it waits for the slowest
+ * consumer (see {@link #getProducerWaits()}). With no consumer, old events are simply overwritten.
+ * - Consumers wait for new events with a {@link WaitStrategy}.
+ * <p>
+ * obs.: consumers added later only see the events published after them.
+ * <p>
+ * Usage pattern:
+ * EventRing ring = new EventRing(65_536);
+ * ring.addConsumer("db", (event, sequence, endOfBatch) -> { ... }, WaitStrategy.SLEEPING);
+ * printer.setEventRing(ring);
+ */
+public class EventRing implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000;    // park time of the SLEEPING strategy
+    private static final long BLOCK_MILLIS = 10;        // maximum wait of the BLOCKING strategy, guards missed signals
+
+    private final Logger logger = Logger.getLogger(EventRing.class);
+
+    private final PrinterEvent[] entries;
+    private final int mask;
+    private final int shift;
+    private final AtomicIntegerArray published;         // round (sequence / capacity) of the last event published in each slot
+
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long gatingCache = -1;             // last known slowest consumer sequence
+    private final List<Processor> processors = new CopyOnWriteArrayList<>();
+
+    private final Object signal = new Object();
+    private volatile boolean blocking = false;          // some consumer uses BLOCKING, producers must wake it up
+
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    public EventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventRing(final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        entries = new PrinterEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new PrinterEvent();
+        }
+        mask = capacity - 1;
+        shift = Integer.numberOfTrailingZeros(capacity);
+        published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Start a consumer thread.
+     *
+     * @param name     - consumer name (thread name and logs)
+     * @param handler  - called for every event
+     * @param strategy - how the consumer waits for events
+     * @return consumer, close it to stop.
+     */
+    public Processor addConsumer(final String name, final PrinterEventHandler handler, final WaitStrategy strategy) {
+        final Processor processor = new Processor(name, Objects.requireNonNull(handler, "Handler is required"),
+            Objects.requireNonNull(strategy, "Wait strategy is required"));
+        if (strategy == WaitStrategy.BLOCKING) {
+            blocking = true;
+        }
+
+        processor.sequence.set(claimed.get());
+        processors.add(processor);
+        processor.thread.start();
+        return processor;
+    }
+
+    public void publishEpc(final String printer, final String sku, final String epc, final String tid) {
+        publish(PrinterEvent.Type.EPC, printer, sku, epc, tid, null, null, null);
+    }
+
+    public void publishStatus(final String printer, final String sku, final Object status) {
+        publish(PrinterEvent.Type.STATUS, printer, sku, null, null, status, null, null);
+    }
+
+    public void publishError(final String printer, final String sku, final String message, final Throwable error) {
+        publish(PrinterEvent.Type.ERROR, printer, sku, null, null, null, message, error);
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * @return last sequence claimed by a producer, -1 if nothing was published.
+     */
+    public long getCursor() {
+        return claimed.get();
+    }
+
+    /**
+     * @return number of publishes that had to wait for a slow consumer.
+     */
+    public long getProducerWaits() {
+        return producerWaits.get();
+    }
+
+    /**
+     * Stop every consumer once it handled the events already published.
+     */
+    @Override
+    public void close() {
+        for (Processor processor : processors) {
+            processor.close();
+        }
+    }
+
+    private void publish(final PrinterEvent.Type type, final String printer, final String sku, final String epc, final String tid,
+                         final Object status, final String message, final Throwable error) {
+        final long sequence = next();
+        final int index = (int) sequence & mask;
+        try {
+            entries[index].set(type, printer, sku, epc, tid, status, message, error);
+        } finally {
+            published.lazySet(index, (int) (sequence >>> shift));
+        }
+
+        if (blocking) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    // claim the next sequence, waiting while it would overwrite an event the slowest consumer did not handle yet
+    private long next() {
+        boolean waited = false;
+        while (true) {
+            final long current = claimed.get();
+            final long next = current + 1;
+            final long wrap = next - entries.length;
+
+            if (wrap > gatingCache) {
+                final long min = minimumSequence(current);
+                if (wrap > min) {
+                    if (!waited) {
+                        producerWaits.incrementAndGet();
+                        waited = true;
+                    }
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                gatingCache = min;
+            }
+
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long minimumSequence(final long fallback) {
+        long min = fallback;
+        for (Processor processor : processors) {
+            min = Math.min(min, processor.sequence.get());
+        }
+        return min;
+    }
+
+    // highest sequence in [low, high] published without gaps (producers may finish out of order)
+    private long highestPublished(final long low, final long high) {
+        for (long sequence = low; sequence <= high; sequence++) {
+            if (published.get((int) sequence & mask) != (int) (sequence >>> shift)) {
+                return sequence - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Consumer thread of the ring.
+     */
+    public final class Processor implements AutoCloseable {
+
+        @Getter
+        private final String name;
+        private final PrinterEventHandler handler;
+        private final WaitStrategy strategy;
+        private final AtomicLong sequence = new AtomicLong(-1);    // last event handled
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Processor(final String name, final PrinterEventHandler handler, final WaitStrategy strategy) {
+            this.name = name;
+            this.handler = handler;
+            this.strategy = strategy;
+            this.thread = new Thread(this::run, "event-ring-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * @return events published but not handled yet by this consumer.
+         */
+        public long getLag() {
+            return Math.max(0, claimed.get() - sequence.get());
+        }
+
+        /**
+         * Stop once the events already published are handled, producers stop waiting for this consumer.
+         */
+        @Override
+        public void close() {
+            running = false;
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            processors.remove(this);
+        }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            try {
+                while (true) {
+                    long available = claimed.get();
+                    if (available >= next) {
+                        available = highestPublished(next, available);
+                    }
+
+                    if (available >= next) {
+                        for (long s = next; s <= available; s++) {
+                            try {
+                                handler.onEvent(entries[(int) s & mask], s, s == available);
+                            } catch (Exception e) {
+                                logger.errorf(e, "Consumer %s failed on event %d", name, s);
+                            }
+                        }
+                        sequence.lazySet(available);
+                        next = available + 1;
+                        idle = 0;
+                        continue;
+                    }
+
+                    if (!running) {
+                        return;
+                    }
+                    idle = idle(idle, next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private int idle(final int counter, final long next) throws InterruptedException {
+            switch (strategy) {
+                case BUSY_SPIN:
+                    return counter;
+                case YIELDING:
+                    if (counter >= SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    return counter + 1;
+                case SLEEPING:
+                    if (counter >= SPIN_TRIES + YIELD_TRIES) {
+                        LockSupport.parkNanos(SLEEP_NANOS);
+                    } else if (counter >= SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    return counter + 1;
+                default:
+                    synchronized (signal) {
+                        if (running && claimed.get() < next) {
+                            signal.wait(BLOCK_MILLIS);
+                        }
+                    }
+                    return counter + 1;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.contare.printers.core.stream;
+
+import lombok.Getter;
+
+/**
+ * Slot of an {@link EventRing}, allocated once with the ring and overwritten by every event published in it.
+ * <p>
+ * obs.: handlers must copy what they need inside 'onEvent', the slot is reused once every handler moved past it.
+ */
+@Getter
+public final class PrinterEvent {
+
+    public enum Type {
+        EPC,        // epc (and tid) confirmed by the printer
+        STATUS,     // printer status changed, see 'status'
+        ERROR       // communication error or job not completed, see 'message' and 'error'
+    }
+
+    private Type type;
+    private String printer;     // printer label (vendor@ip:port)
+    private String sku;
+    private String epc;
+    private String tid;
+    private Object status;      // vendor status message
+    private String message;
+    private Throwable error;
+    private long timestamp;     // epoch milliseconds
+
+    PrinterEvent() {
+    }
+
+    void set(final Type type, final String printer, final String sku, final String epc, final String tid,
+             final Object status, final String message, final Throwable error) {
+        this.type = type;
+        this.printer = printer;
+        this.sku = sku;
+        this.epc = epc;
+        this.tid = tid;
+        this.status = status;
+        this.message = message;
+        this.error = error;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case EPC:
+                return String.format("%s{ type = %s, printer = %s, sku = %s, epc = %s, tid = %s }", getClass().getSimpleName(), type, printer, sku, epc, tid);
+            case STATUS:
+                return String.format("%s{ type = %s, printer = %s, sku = %s, status = %s }", getClass().getSimpleName(), type, printer, sku, status);
+            default:
+                return String.format("%s{ type = %s, printer = %s, sku = %s, message = %s, error = %s }", getClass().getSimpleName(), type, printer, sku, message, error);
+        }
+    }
+
+}
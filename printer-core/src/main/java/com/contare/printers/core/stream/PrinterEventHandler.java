@@ -0,0 +1,15 @@
+package com.contare.printers.core.stream;
+
+/**
+ * Consumer of an {@link EventRing}, called from its own thread for every event in sequence order.
+ */
+public interface PrinterEventHandler {
+
+    /**
+     * @param event      - ring slot, only valid during the call
+     * @param sequence   - event sequence in the ring
+     * @param endOfBatch - true for the last event available right now, a good point to flush batched writes
+     */
+    void onEvent(final PrinterEvent event, final long sequence, final boolean endOfBatch) throws Exception;
+
+}
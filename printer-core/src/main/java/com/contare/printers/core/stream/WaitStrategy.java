@@ -0,0 +1,13 @@
+package com.contare.printers.core.stream;
+
+/**
+ * How an {@link EventRing} consumer waits for new events.
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN,      // lowest latency, keeps a core busy per consumer
+    YIELDING,       // spin for a while then yield the cpu
+    SLEEPING,       // spin, yield, then park for short periods - low cpu with sub-millisecond latency
+    BLOCKING        // wait on a lock woken by producers - lowest cpu, producers pay for the wake up
+
+}
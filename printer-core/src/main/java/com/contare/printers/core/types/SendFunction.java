@@ -0,0 +1,13 @@
+package com.contare.printers.core.types;
+
+import com.contare.printers.core.PrinterConnection;
+import com.contare.printers.core.exceptions.PrinterException;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface SendFunction {
+
+    void send(final PrinterConnection connection) throws IOException, PrinterException;
+
+}
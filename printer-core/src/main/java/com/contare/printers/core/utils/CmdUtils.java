@@ -9,6 +9,32 @@ public class CmdUtils {
         return toHex(bytes);
     }
 
+    /**
+     * Number of bytes of the text encoded as UTF-8, without encoding it.
+     *
+     * @param text - text to measure
+     * @return encoded length (bytes), unpaired surrogates count as the '?' they are replaced with.
+     */
+    public static long utf8Length(final CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     public static String toHex(final byte[] bytes) {
         final StringBuilder sb = new StringBuilder(bytes.length * 6); // "<0xHH>" has 6 characters
         for (byte b : bytes) {
@@ -0,0 +1,42 @@
+package com.contare.printers.core.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileUtils {
+
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    private static final long REGION_SIZE = 64L * 1024 * 1024; // mapped region size (64 MB)
+
+    /**
+     * Check if the file contains a LF not preceded by CR, scanning a memory-mapped view (file bytes never reach the heap).
+     *
+     * @param path - file path
+     * @return true if at least one bare LF was found.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean hasBareLineFeed(final Path path) throws IOException {
+        try (final FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = file.size();
+            byte prev = 0;
+            for (long offset = 0; offset < size; offset += REGION_SIZE) {
+                final long length = Math.min(REGION_SIZE, size - offset);
+                final MappedByteBuffer region = file.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                while (region.hasRemaining()) {
+                    final byte b = region.get();
+                    if (b == LF && prev != CR) {
+                        return true;
+                    }
+                    prev = b;
+                }
+            }
+            return false;
+        }
+    }
+
+}
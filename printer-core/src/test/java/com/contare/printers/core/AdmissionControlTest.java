@@ -0,0 +1,55 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.queue.AdmissionControl;
+import com.contare.printers.core.queue.PrintJob;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.utils.FakePrinter;
+import com.contare.printers.utils.Labels;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    @Test
+    @DisplayName("Shed or hold producers while the pipeline is over its label budget")
+    public void admissionControl() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(20);
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final AdmissionControl admission = new AdmissionControl(queue::submit, 10, 1_024);
+
+            final PrintJob first = new PrintJob("epc:1;epc:2;epc:3;epc:4;epc:5;epc:6;epc:7;epc:8;", "A", 8);
+            assertTrue(admission.trySubmit(first));
+            assertEquals(8, admission.getQueuedLabels());
+            assertEquals(first.getSize(), admission.getQueuedBytes());
+            assertEquals(4, new PrintJob("\u00E7\u00E3", "A", 0).getSize());
+            assertEquals(5, new PrintJob("a\uD83D\uDE00", "A", 0).getSize());
+
+            // over budget: shed right away, demand completes once the first job is done
+            assertFalse(admission.trySubmit(new PrintJob("epc:9;epc:10;epc:11;", "B", 3)));
+            assertEquals(1, admission.getShedJobs());
+            assertEquals(3, admission.getShedLabels());
+            final CompletableFuture<Void> demand = admission.demand(3, 0);
+            assertFalse(demand.isDone());
+
+            // blocking producer waits for room
+            final PrintJob second = new PrintJob("epc:9;epc:10;epc:11;", "B", 3);
+            assertTrue(admission.submit(second, 5, TimeUnit.SECONDS));
+            assertTrue(first.getResult().isDone());
+            demand.get(1, TimeUnit.SECONDS);
+
+            assertEquals(3, second.getResult().get(5, TimeUnit.SECONDS).size());
+            assertEquals(0, admission.getQueuedLabels());
+            assertEquals(0, admission.getQueuedBytes());
+            assertEquals(2, admission.getAdmittedJobs());
+
+            // a job bigger than the budget still goes through on an empty pipeline
+            assertTrue(admission.trySubmit(new PrintJob(Labels.of(12), "C", 12)));
+        }
+    }
+}
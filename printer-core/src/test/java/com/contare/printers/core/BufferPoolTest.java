@@ -0,0 +1,89 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.io.BufferPool;
+import com.contare.printers.core.io.PooledOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+
+    private static final Charset charset = StandardCharsets.UTF_8;
+
+    @Test
+    @DisplayName("Assemble content across pooled buffers")
+    public void assembleAcrossBuffers() throws IOException {
+        final BufferPool pool = new BufferPool(8, 16, 16);
+        final String label = "\u001BA\r\n\u001BH0157V00021ÇÃ\r\n\u001BQ1\r\n\u001BZ\r\n";
+
+        try (final PooledOutputStream out = pool.open("sato")) {
+            out.write(label, charset);
+            out.write(0x03);
+
+            final ByteBuffer[] segments = out.segments();
+            assertTrue(segments.length > 1);
+            assertEquals(label + "\u0003", text(segments));
+            assertEquals(label.getBytes(charset).length + 1, out.getSize());
+            assertEquals(segments.length, pool.getInUse("sato"));
+        }
+
+        assertEquals(0, pool.getInUse());
+        assertEquals(0, pool.getInUse("sato"));
+    }
+
+    @Test
+    @DisplayName("Recycle buffers and track the high-water mark")
+    public void recycleBuffers() throws IOException {
+        final BufferPool pool = new BufferPool(8, 16, 16);
+
+        final ByteBuffer a = pool.acquire("sato");
+        final ByteBuffer b = pool.acquire("sato");
+        pool.release("sato", a);
+        pool.release("sato", b);
+
+        final ByteBuffer c = pool.acquire("zebra");
+        assertTrue(c == a || c == b);
+        assertEquals(2, pool.getAllocated());
+        assertEquals(1, pool.getInUse());
+        assertEquals(2, pool.getHighWaterMark());
+    }
+
+    @Test
+    @DisplayName("Enforce per-owner quota")
+    public void enforceQuota() throws IOException {
+        final BufferPool pool = new BufferPool(8, 16, 2);
+        pool.setQuota("zebra", 4);
+
+        pool.acquire("sato");
+        pool.acquire("sato");
+        assertThrows(IOException.class, () -> pool.acquire("sato"));
+
+        // other owners are not affected
+        for (int i = 0; i < 4; i++) {
+            pool.acquire("zebra");
+        }
+        assertEquals(6, pool.getInUse());
+    }
+
+    private static String text(final ByteBuffer[] segments) {
+        int size = 0;
+        for (ByteBuffer segment : segments) {
+            size += segment.remaining();
+        }
+        final byte[] bytes = new byte[size];
+        int offset = 0;
+        for (ByteBuffer segment : segments) {
+            final int n = segment.remaining();
+            segment.get(bytes, offset, n);
+            offset += n;
+        }
+        return new String(bytes, charset);
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.bulk.BulkGenerator;
+import com.contare.printers.core.bulk.CsvReader;
+import com.contare.printers.core.bulk.EpcBitmap;
+import com.contare.printers.core.bulk.JobResume;
+import com.contare.printers.core.bulk.LabelChunk;
+import com.contare.printers.core.bulk.LabelTemplate;
+import com.contare.printers.core.bulk.ResumeReport;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.BufferPool;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkGeneratorTest {
+
+    private final LabelTemplate template = new LabelTemplate("[${sku}:${epc}]");
+
+    @Test
+    @DisplayName("Generate ordered chunks that never mix SKUs")
+    public void generateOrderedChunks() throws PrinterException {
+        final List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 1_050; i++) {
+            final Map<String, String> record = new HashMap<>();
+            record.put("sku", (i < 700) ? "A" : "B");
+            record.put("epc", String.format("%024X", i));
+            records.add(record);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final BulkGenerator<Map<String, String>> generator = new BulkGenerator<>(pool, template, (r) -> r.get("sku"), (r) -> r.get("epc"), 100, 3);
+            generator.setHeader("<");
+            generator.setFooter(">");
+
+            final List<LabelChunk> chunks = new ArrayList<>();
+            final long count = generator.generate(records.iterator(), chunks::add);
+
+            // 7 chunks of A, then 3 full chunks and 1 partial chunk of B
+            assertEquals(11, count);
+            assertEquals(11, chunks.size());
+
+            int label = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                final LabelChunk chunk = chunks.get(i);
+                assertEquals(i, chunk.getIndex());
+                assertTrue(chunk.getContent().startsWith("<") && chunk.getContent().endsWith(">"));
+                for (String epc : chunk.getEpcs()) {
+                    final Map<String, String> record = records.get(label++);
+                    assertEquals(record.get("epc"), epc);
+                    assertEquals(record.get("sku"), chunk.getSku());
+                }
+            }
+            assertEquals(records.size(), label);
+            assertEquals(50, chunks.get(10).size());
+            assertEquals("<[B:" + String.format("%024X", 1_000) + "]", chunks.get(10).getContent().substring(0, 29));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Render records read from CSV")
+    public void renderCsvRecords() throws IOException, PrinterException {
+        final String csv = "sku;epc\n812345;\"3074257BF7194E4000001A85\"\n\n812345;3074257BF7194E4000001A86\n";
+
+        final List<LabelChunk> chunks = new ArrayList<>();
+        try (final CsvReader reader = new CsvReader(new StringReader(csv), ';')) {
+            final BulkGenerator<Map<String, String>> generator = new BulkGenerator<>(template, (r) -> r.get("sku"), (r) -> r.get("epc"), 10);
+            generator.generate(reader, chunks::add);
+        }
+
+        assertEquals(1, chunks.size());
+        assertEquals("[812345:3074257BF7194E4000001A85][812345:3074257BF7194E4000001A86]", chunks.get(0).getContent());
+    }
+
+    @Test
+    @DisplayName("Render chunks into pooled buffers and print them from the pool")
+    public void renderPooledChunks() throws PrinterException {
+        final List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            final Map<String, String> record = new HashMap<>();
+            record.put("sku", "A");
+            record.put("epc", String.format("%024X", i));
+            records.add(record);
+        }
+
+        // small buffers so a chunk spans many of them
+        final BufferPool buffers = new BufferPool(256, 256, 128);
+        final BulkGenerator<Map<String, String>> generator = new BulkGenerator<>(new LabelTemplate("epc:${epc};"), (r) -> r.get("sku"), (r) -> r.get("epc"), 100);
+        generator.setHeader("ç");
+        generator.setBufferPool(buffers, "fake", StandardCharsets.UTF_8);
+
+        final FakePrinter printer = new FakePrinter("fake", 1_000);
+        final List<Set<String>> printed = new ArrayList<>();
+        generator.generate(records.iterator(), (chunk) -> {
+            try (LabelChunk c = chunk) {
+                assertTrue(c.isPooled());
+                assertTrue(buffers.getInUse("fake") > 0);
+                assertTrue(c.getContent().startsWith("çepc:"));
+                printed.add(printer.print(c.getStream(), c.getSku(), c.size()));
+            }
+        });
+
+        assertEquals(3, printed.size());
+        assertEquals(100, printed.get(2).size());
+        assertTrue(printed.get(2).contains(String.format("%024X", 299)));
+        assertEquals(0, buffers.getInUse());
+    }
+
+    @Test
+    @DisplayName("Fail on missing template field")
+    public void failOnMissingField() {
+        final List<Map<String, String>> records = new ArrayList<>();
+        records.add(new HashMap<>());
+
+        final BulkGenerator<Map<String, String>> generator = new BulkGenerator<>(template, (r) -> "A", (r) -> "", 10);
+        assertThrows(PrinterException.class, () -> generator.generate(records.iterator(), (chunk) -> { }));
+    }
+
+    @Test
+    @DisplayName("Resume a job reprinting only the missing epcs")
+    public void resumeMissingEpcs() throws PrinterException {
+        final List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            final Map<String, String> record = new HashMap<>();
+            record.put("sku", "A");
+            record.put("epc", String.format("30340242201D8840%08X", i));
+            records.add(record);
+        }
+
+        // first attempt dropped after 6000 labels and lost [7000..7099], then one label encoded twice and one stray tag
+        final List<String> confirmed = new ArrayList<>();
+        for (int i = 0; i < 6_000; i++) {
+            if (i == 3_000) continue;
+            confirmed.add(records.get(i).get("epc"));
+        }
+        for (int i = 6_000; i < 10_000; i++) {
+            if (i >= 7_000 && i < 7_100) continue;
+            confirmed.add(records.get(i).get("epc"));
+        }
+        confirmed.add(records.get(42).get("epc"));
+        confirmed.add("30340242201D8841FFFFFFFF");
+
+        final JobResume<Map<String, String>> resume = new JobResume<>((r) -> r.get("epc"));
+        final BulkGenerator<Map<String, String>> generator = new BulkGenerator<>(template, (r) -> r.get("sku"), (r) -> r.get("epc"), 64);
+        final List<LabelChunk> chunks = new ArrayList<>();
+        final ResumeReport<Map<String, String>> report = resume.resume(records, confirmed, generator, chunks::add);
+
+        assertEquals(10_000, report.getExpected());
+        assertEquals(101, report.getMissing().size());
+        assertEquals(2, report.getGaps().size());
+        assertEquals(3_000, report.getGaps().get(0).getFrom());
+        assertEquals(7_000, report.getGaps().get(1).getFrom());
+        assertEquals(7_099, report.getGaps().get(1).getTo());
+        assertEquals(1, report.getDuplicates().size());
+        assertEquals(Arrays.asList("30340242201D8841FFFFFFFF"), new ArrayList<>(report.getUnexpected()));
+
+        final List<String> reprinted = new ArrayList<>();
+        for (LabelChunk chunk : chunks) {
+            reprinted.addAll(chunk.getEpcs());
+        }
+        assertEquals(101, reprinted.size());
+        assertEquals(records.get(3_000).get("epc"), reprinted.get(0));
+
+        confirmed.addAll(reprinted);
+        assertTrue(resume.verify(records, confirmed).isComplete());
+
+        final EpcBitmap bitmap = new EpcBitmap();
+        assertEquals(7_000, bitmap.serial(records.get(7_000).get("epc")));
+        assertEquals(bitmap.prefix(records.get(0).get("epc")), bitmap.prefix(records.get(9_999).get("epc")));
+    }
+
+}
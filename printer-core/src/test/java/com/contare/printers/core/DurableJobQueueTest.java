@@ -0,0 +1,62 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.queue.DurableJobQueue;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.core.queue.StoredJob;
+import com.contare.printers.utils.FakePrinter;
+import com.contare.printers.utils.Labels;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DurableJobQueueTest {
+
+    @Test
+    @DisplayName("Keep jobs not acknowledged across restarts and ignore resubmitted ones")
+    public void durableQueue(@TempDir final Path dir) throws Exception {
+        try (DurableJobQueue jobs = new DurableJobQueue(dir, 4_096, 5)) {
+            jobs.setRetainedSegments(1);
+            for (int i = 0; i < 200; i++) {
+                assertTrue(jobs.enqueue("order-" + i, "A", 12, Labels.of(12)));
+            }
+            assertFalse(jobs.enqueue("order-0", "A", 12, Labels.of(12)));
+            assertTrue(jobs.getSegments() > 2);
+
+            // first 150 printed, one taken when the application stops
+            for (int i = 0; i < 150; i++) {
+                final StoredJob job = jobs.poll();
+                assertEquals("order-" + i, job.getKey());
+                assertTrue(jobs.ack(job.getKey()));
+            }
+            assertEquals("order-150", jobs.poll().getKey());
+            assertEquals(49, jobs.getPending());
+            jobs.sync();
+        }
+
+        try (DurableJobQueue jobs = new DurableJobQueue(dir, 4_096, 5)) {
+            assertEquals(50, jobs.getPending());
+            assertFalse(jobs.enqueue("order-199", "A", 12, Labels.of(12)));
+            assertFalse(jobs.enqueue("order-149", "A", 12, Labels.of(12)));
+            assertFalse(jobs.contains("order-0"));   // segment deleted, key forgotten
+
+            final StoredJob job = jobs.poll(1, TimeUnit.SECONDS);
+            assertEquals("order-150", job.getKey());
+            assertEquals(Labels.of(12), job.getContent());
+            assertTrue(jobs.release(job.getKey()));
+
+            try (PrinterQueue queue = new PrinterQueue(new FakePrinter("fake", 100))) {
+                final StoredJob next = jobs.poll();
+                assertEquals("order-150", next.getKey());
+                assertEquals(12, queue.submit(next.toPrintJob()).get(5, TimeUnit.SECONDS).size());
+                assertTrue(jobs.ack(next.getKey()));
+            }
+            assertEquals(49, jobs.getPending());
+            assertEquals(0, jobs.getTaken());
+        }
+    }
+}
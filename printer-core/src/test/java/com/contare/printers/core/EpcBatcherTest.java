@@ -0,0 +1,86 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.objects.EpcBatch;
+import com.contare.printers.core.stream.EpcBatcher;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EpcBatcherTest {
+
+    @Test
+    @DisplayName("Deliver epcs in bulk by size, the last batch of a job marks its end")
+    public void batchBySize() throws Exception {
+        final List<EpcBatch> batches = new CopyOnWriteArrayList<>();
+        final FakePrinter printer = new FakePrinter("fake", 100);
+
+        try (EpcBatcher batcher = new EpcBatcher(batches::add, 4, 200)) {
+            printer.setEpcBatcher(batcher);
+            printer.print("epc:1;epc:2;epc:3;epc:4;epc:5;epc:6;epc:7;epc:8;epc:9;epc:10;", "A", 10);
+
+            Thread.sleep(50);
+            assertEquals(3, batches.size());
+            assertEquals(4, batches.get(0).size());
+            assertEquals(4, batches.get(1).size());
+            assertEquals(2, batches.get(2).size());
+            assertFalse(batches.get(1).isJobEnd());
+            assertTrue(batches.get(2).isJobEnd());
+            assertEquals("A", batches.get(2).getSku());
+            assertEquals("Fake@127.0.0.1:0", batches.get(2).getPrinter());
+            assertEquals("1", batches.get(0).getEpcs().get(0).getEpc());
+            assertEquals(10, batcher.getEpcs());
+        }
+    }
+
+    @Test
+    @DisplayName("Deliver a lone epc once 'maxDelay' expires")
+    public void batchByTime() throws Exception {
+        final List<EpcBatch> batches = new CopyOnWriteArrayList<>();
+
+        try (EpcBatcher batcher = new EpcBatcher(batches::add, 4, 200)) {
+            batcher.add("other", "B", "X1", "T1");
+            Thread.sleep(50);
+            assertTrue(batches.isEmpty());
+
+            Thread.sleep(400);
+            assertEquals(1, batches.size());
+            assertEquals("X1", batches.get(0).getEpcs().get(0).getEpc());
+            assertEquals("T1", batches.get(0).getEpcs().get(0).getTid());
+        }
+    }
+
+    @Test
+    @DisplayName("End every job with a jobEnd batch, empty when its epcs were already delivered")
+    public void batchJobEnd() throws Exception {
+        final List<EpcBatch> batches = new CopyOnWriteArrayList<>();
+        final FakePrinter printer = new FakePrinter("fake", 100);
+
+        try (EpcBatcher batcher = new EpcBatcher(batches::add, 4, 200)) {
+            printer.setEpcBatcher(batcher);
+
+            // epcs multiple of 'maxItems'
+            printer.print("epc:1;epc:2;epc:3;epc:4;epc:5;epc:6;epc:7;epc:8;", "C", 8);
+            Thread.sleep(50);
+            assertEquals(3, batches.size());
+            assertEquals(4, batches.get(1).size());
+            assertFalse(batches.get(1).isJobEnd());
+            assertEquals(0, batches.get(2).size());
+            assertTrue(batches.get(2).isJobEnd());
+            assertEquals("C", batches.get(2).getSku());
+
+            // no epcs at all
+            batches.clear();
+            printer.print("", "D", 0);
+            Thread.sleep(50);
+            assertEquals(1, batches.size());
+            assertTrue(batches.get(0).isJobEnd());
+            assertEquals(0, batches.get(0).size());
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.journal.EpcJournal;
+import com.contare.printers.core.journal.JournalJob;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EpcJournalTest {
+
+    @Test
+    @DisplayName("Rebuild jobs after a crash, across segments and with a torn last record")
+    public void recoverJobs(@TempDir final Path dir) throws Exception {
+        final long interrupted;
+        final EpcJournal journal = new EpcJournal(dir, 4_096, 5);
+        try {
+            final FakePrinter printer = new FakePrinter("fake", 100);
+            printer.setJournal(journal);
+            printer.print("epc:A1;epc:A2;epc:A3;", "A", 3);
+
+            // crash in the middle of a job: started, many epcs, never ended (forces new segments)
+            interrupted = journal.begin("B", "Fake@10.0.0.1:9100");
+            for (int i = 0; i < 500; i++) {
+                journal.append(interrupted, String.format("3034%020d", i), (i % 2 == 0) ? "E280" + i : null);
+            }
+            journal.sync();
+        } finally {
+            journal.close();
+        }
+
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "epc-*.journal")) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        assertTrue(segments.size() > 1);
+
+        // torn record after the last valid one: a length but garbage content
+        final Path last = segments.get(segments.size() - 1);
+        final int end;
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int position = 0;
+            while (in.getInt(position) != 0) {
+                position += 4 + in.getInt(position);
+            }
+            end = position;
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 2, 9, 9, 9, 9}), end);
+        }
+
+        try (EpcJournal reopened = new EpcJournal(dir, 4_096, 5)) {
+            final Map<Long, JournalJob> jobs = reopened.getRecovered();
+            assertEquals(2, jobs.size());
+
+            final JournalJob a = jobs.get(1L);
+            assertEquals("A", a.getSku());
+            assertEquals("Fake@127.0.0.1:0", a.getPrinter());
+            assertEquals(3, a.getEpcs().size());
+            assertTrue(a.getEpcs().containsKey("A1"));
+            assertFalse(a.isInterrupted());
+            assertTrue(a.isCompleted());
+
+            final JournalJob b = jobs.get(interrupted);
+            assertTrue(b.isInterrupted());
+            assertEquals(500, b.getEpcs().size());
+            assertEquals("E2800", b.getEpcs().get(String.format("3034%020d", 0)));
+            assertNull(b.getEpcs().get(String.format("3034%020d", 1)));
+
+            // appends continue after the last valid record, job ids keep growing
+            final long next = reopened.begin("C", "printer");
+            assertTrue(next > interrupted);
+            reopened.append(next, "C1", null);
+            reopened.end(next, false);
+        }
+
+        final Map<Long, JournalJob> jobs = EpcJournal.read(dir);
+        assertEquals(3, jobs.size());
+        assertEquals(500, jobs.get(interrupted).getEpcs().size());
+        assertEquals(Collections.singleton("C1"), jobs.get(interrupted + 1).getEpcs().keySet());
+        assertFalse(jobs.get(interrupted + 1).isCompleted());
+    }
+
+    @Test
+    @DisplayName("Delete segments once their jobs ended, keeping the ones of interrupted jobs")
+    public void deleteEndedSegments(@TempDir final Path dir) throws Exception {
+        final long interrupted;
+        try (EpcJournal journal = new EpcJournal(dir, 4_096, 5)) {
+            journal.setRetainedSegments(1);
+
+            interrupted = journal.begin("B", "printer");
+            journal.append(interrupted, "B1", null);
+
+            final FakePrinter printer = new FakePrinter("fake", 100);
+            printer.setJournal(journal);
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                content.append(String.format("epc:3034%020d;", i));
+            }
+            for (int i = 0; i < 50; i++) {
+                printer.print(content.toString(), "A", 20);
+            }
+            journal.sync();
+
+            // the first segment holds the interrupted job, so nothing after it can go yet
+            final int kept = journal.getSegments();
+            assertTrue(kept > 10);
+
+            journal.end(interrupted, false);
+            assertEquals(2, journal.getSegments());
+        }
+
+        // ended jobs of the deleted segments are gone, appends continue in the last segment
+        try (EpcJournal reopened = new EpcJournal(dir, 4_096, 5)) {
+            assertFalse(reopened.getRecovered().containsKey(interrupted));
+            for (JournalJob job : reopened.getRecovered().values()) {
+                assertFalse(job.isInterrupted());
+            }
+            assertTrue(reopened.getSegments() <= EpcJournal.DEFAULT_RETAINED_SEGMENTS + 1);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.objects.EpcDuplicate;
+import com.contare.printers.core.registry.EpcRegistry;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EpcRegistryTest {
+
+    @Test
+    @DisplayName("Detect an EPC encoded twice, by any printer, naming both sources")
+    public void duplicatesAcrossPrinters() throws Exception {
+        final EpcRegistry registry = new EpcRegistry(1_000);
+        final List<EpcDuplicate> duplicates = new ArrayList<>();
+        registry.addListener(duplicates::add);
+
+        final FakePrinter a = new FakePrinter("a", 100);
+        final FakePrinter b = new FakePrinter("b", 100);
+        a.setEpcRegistry(registry);
+        b.setEpcRegistry(registry);
+
+        a.print("epc:303402422000000000000001;epc:303402422000000000000002;epc:303402422000000000000003;", "A", 3);
+        b.print("epc:303402422000000000000003;epc:303402422000000000000004;", "B", 2);
+
+        assertEquals(1, duplicates.size());
+        final EpcDuplicate duplicate = duplicates.get(0);
+        assertEquals("303402422000000000000003", duplicate.getEpc());
+        assertEquals("A", duplicate.getFirstSku());
+        assertEquals("B", duplicate.getSku());
+        assertEquals("Fake@127.0.0.1:0", duplicate.getFirstPrinter());
+        assertEquals(4, registry.size());
+
+        // length, case and epcs that do not fit a table entry
+        assertNull(registry.register("0A", "p", "C"));
+        assertNull(registry.register("000A", "p", "C"));
+        assertNotNull(registry.register("0a", "p", "D"));
+        assertNull(registry.register("E28011606000020000000000000000FF", "p", "C"));
+        assertNotNull(registry.register("E28011606000020000000000000000FF", "p", "D"));
+        assertNull(registry.register("not-an-epc", "p", "C"));
+        assertTrue(registry.contains("not-an-epc"));
+        assertFalse(registry.contains("303402422000000000000005"));
+        assertEquals(3, registry.getDuplicates());
+    }
+
+    @Test
+    @DisplayName("Register millions of EPCs from concurrent printers, growing past the expected size")
+    public void concurrentRegistrations() throws Exception {
+        final EpcRegistry registry = new EpcRegistry(10_000);
+        final int count = 500_000;
+        final int threads = 4;
+        final int overlap = 100;
+
+        // each printer gets a serial range overlapping the next one
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String printer = "printer-" + t;
+            final int index = t;
+            final Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = index * count; i < (index + 1) * count + overlap; i++) {
+                    registry.register(String.format("30340242201D8840%08X", i), printer, "A");
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        final long total = (long) count * threads + overlap;
+        assertEquals(total, registry.size());
+        assertEquals((long) overlap * (threads - 1), registry.getDuplicates());
+        assertTrue(registry.contains("30340242201D884000000000"));
+        assertTrue(registry.contains(String.format("30340242201D8840%08X", total - 1)));
+        assertFalse(registry.contains(String.format("30340242201D8840%08X", total)));
+        assertTrue(registry.getOffHeapBytes() >= total * 16);
+    }
+
+    @Test
+    @DisplayName("Keep registering past the source limit, reporting duplicates without the first source")
+    public void sourceLimit() throws Exception {
+        final EpcRegistry registry = new EpcRegistry(1_000, 2);
+        final List<EpcDuplicate> duplicates = new ArrayList<>();
+        registry.addListener(duplicates::add);
+
+        assertNull(registry.register("303402422000000000000001", "a", "A"));
+        assertNull(registry.register("303402422000000000000002", "a", "B"));
+        assertNull(registry.register("303402422000000000000003", "b", "A"));  // third source, not remembered
+        assertNotNull(registry.register("303402422000000000000001", "b", "A"));
+        assertNotNull(registry.register("303402422000000000000003", "a", "A"));
+
+        assertEquals(2, duplicates.size());
+        assertEquals("a", duplicates.get(0).getFirstPrinter());
+        assertEquals("A", duplicates.get(0).getFirstSku());
+        assertNull(duplicates.get(1).getFirstPrinter());
+        assertNull(duplicates.get(1).getFirstSku());
+        assertEquals(3, registry.size());
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.objects.EpcEvent;
+import com.contare.printers.core.queue.PrintJob;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.core.stream.EpcPublisher;
+import com.contare.printers.core.stream.EpcSubscriber;
+import com.contare.printers.core.stream.EpcSubscription;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EpcStreamTest {
+
+    private static class Collector implements EpcSubscriber {
+        private final long initial;
+        private final List<EpcEvent> events = new CopyOnWriteArrayList<>();
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile EpcSubscription subscription;
+
+        private Collector(final long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(final EpcSubscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initial);
+        }
+
+        @Override
+        public void onNext(final List<EpcEvent> batch) {
+            batches.add(batch.size());
+            events.addAll(batch);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Slow subscriber blocks the producer and receives bounded batches")
+    public void backpressure() throws Exception {
+        final EpcPublisher stream = new EpcPublisher(Executors.newSingleThreadExecutor(), 4, 3);
+        final Collector collector = new Collector(5);
+        stream.subscribe(collector);
+
+        final Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    stream.publish(new EpcEvent("E" + i, null, "sku", "test", System.currentTimeMillis()));
+                }
+                stream.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        // 5 delivered + 4 buffered, the producer waits for demand
+        producer.join(500);
+        assertTrue(producer.isAlive());
+        assertEquals(5, collector.events.size());
+        assertEquals(4, stream.getMaxBuffered());
+
+        collector.subscription.request(Long.MAX_VALUE);
+        collector.done.get(5, TimeUnit.SECONDS);
+        producer.join(1_000);
+
+        assertEquals(20, collector.events.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("E" + i, collector.events.get(i).getEpc());
+        }
+        for (int size : collector.batches) {
+            assertTrue(size <= 3);
+        }
+        assertFalse(stream.hasSubscribers());
+    }
+
+    @Test
+    @DisplayName("Drop a subscriber that stops requesting instead of hanging the printer")
+    public void dropStalledSubscriber() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        final EpcPublisher stream = printer.getEpcStream();
+        assertEquals(EpcPublisher.DEFAULT_MAX_BLOCK, stream.getMaxBlock());
+        assertTrue(EpcPublisher.DEFAULT_MAX_BLOCK < printer.READ_TIMEOUT);
+        stream.setMaxBlock(100);
+
+        // requests one epc and never more, the printer keeps encoding once it is dropped
+        final Collector stalled = new Collector(1);
+        final Collector all = new Collector(Long.MAX_VALUE);
+        stream.subscribe(stalled);
+        stream.subscribe(all);
+
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2 * EpcPublisher.DEFAULT_BUFFER_SIZE; i++) {
+            content.append("epc:E").append(i).append(';');
+        }
+        final CompletableFuture<Set<String>> printed = CompletableFuture.supplyAsync(() -> {
+            try {
+                return printer.print(content.toString(), "sku", 2 * EpcPublisher.DEFAULT_BUFFER_SIZE);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(2 * EpcPublisher.DEFAULT_BUFFER_SIZE, printed.get(5, TimeUnit.SECONDS).size());
+        assertThrows(Exception.class, () -> stalled.done.get(5, TimeUnit.SECONDS));
+        assertEquals(1, stalled.events.size());
+
+        stream.close();
+        all.done.get(5, TimeUnit.SECONDS);
+        assertEquals(2 * EpcPublisher.DEFAULT_BUFFER_SIZE, all.events.size());
+        assertFalse(stream.hasSubscribers());
+    }
+
+    @Test
+    @DisplayName("Job stream receives only the epcs of its job and completes with it")
+    public void jobStream() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        final Collector all = new Collector(Long.MAX_VALUE);
+        printer.getEpcStream().subscribe(all);
+
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final PrintJob first = new PrintJob("epc:A1;epc:A2;epc:A3;", "A", 3);
+            final Collector collector = new Collector(1);
+            first.getEpcStream().subscribe(collector);
+            collector.subscription.request(Long.MAX_VALUE);
+
+            final PrintJob canceled = new PrintJob("epc:C1;", "C", 1);
+            final Collector none = new Collector(Long.MAX_VALUE);
+            canceled.getEpcStream().subscribe(none);
+            canceled.getResult().cancel(false);
+
+            queue.submit(first);
+            queue.submit(canceled);
+            final Set<String> second = queue.submit("epc:B1;epc:B2;", "B", 2).get(5, TimeUnit.SECONDS);
+            assertEquals(2, second.size());
+
+            collector.done.get(5, TimeUnit.SECONDS);
+            assertEquals(3, collector.events.size());
+            for (EpcEvent event : collector.events) {
+                assertEquals("A", event.getSku());
+                assertEquals("Fake@127.0.0.1:0", event.getPrinter());
+            }
+
+            assertThrows(Exception.class, () -> none.done.get(5, TimeUnit.SECONDS));
+            assertTrue(none.events.isEmpty());
+        }
+
+        Thread.sleep(100);
+        assertEquals(5, all.events.size());
+    }
+
+}
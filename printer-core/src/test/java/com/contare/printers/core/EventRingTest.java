@@ -0,0 +1,110 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.stream.EventRing;
+import com.contare.printers.core.stream.PrinterEvent;
+import com.contare.printers.core.stream.WaitStrategy;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventRingTest {
+
+    @Test
+    @DisplayName("Every consumer sees every event of every producer in order")
+    public void multiProducer() throws Exception {
+        final int producers = 4;
+        final int events = 20_000;
+
+        try (EventRing ring = new EventRing(256)) {
+            final List<int[]> last = new ArrayList<>();
+            final List<AtomicInteger> counts = new ArrayList<>();
+            final AtomicInteger batches = new AtomicInteger();
+            final AtomicInteger outOfOrder = new AtomicInteger();
+
+            for (WaitStrategy strategy : new WaitStrategy[]{WaitStrategy.SLEEPING, WaitStrategy.BLOCKING}) {
+                final int[] seen = new int[producers];
+                final AtomicInteger count = new AtomicInteger();
+                last.add(seen);
+                counts.add(count);
+                ring.addConsumer(strategy.name(), (event, sequence, endOfBatch) -> {
+                    final int producer = Integer.parseInt(event.getPrinter());
+                    final int value = Integer.parseInt(event.getEpc());
+                    if (value != seen[producer]) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    seen[producer] = value + 1;
+                    count.incrementAndGet();
+                    if (endOfBatch) {
+                        batches.incrementAndGet();
+                    }
+                }, strategy);
+            }
+
+            final String[] epcs = new String[events];
+            for (int i = 0; i < events; i++) {
+                epcs[i] = String.valueOf(i);
+            }
+
+            final List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final String name = String.valueOf(p);
+                final Thread thread = new Thread(() -> {
+                    for (int i = 0; i < events; i++) {
+                        ring.publishEpc(name, "sku", epcs[i], null);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+
+            ring.close();
+            assertEquals(producers * events - 1, ring.getCursor());
+            for (AtomicInteger count : counts) {
+                assertEquals(producers * events, count.get());
+            }
+            assertEquals(0, outOfOrder.get());
+            assertTrue(batches.get() > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Printers publish epcs and errors in the shared ring")
+    public void printerEvents() throws Exception {
+        final EventRing ring = new EventRing(1_024);
+        final List<String> epcs = new CopyOnWriteArrayList<>();
+        final ConcurrentHashMap<String, Integer> printers = new ConcurrentHashMap<>();
+        final EventRing.Processor consumer = ring.addConsumer("test", (event, sequence, endOfBatch) -> {
+            if (event.getType() == PrinterEvent.Type.EPC) {
+                epcs.add(event.getEpc());
+                printers.merge(event.getSku(), 1, Integer::sum);
+            }
+        }, WaitStrategy.BLOCKING);
+
+        final FakePrinter a = new FakePrinter("a", 100);
+        final FakePrinter b = new FakePrinter("b", 100);
+        a.setEventRing(ring);
+        b.setEventRing(ring);
+
+        a.print("epc:A1;epc:A2;", "A", 2);
+        b.print("epc:B1;", "B", 1);
+
+        consumer.close();
+        assertEquals(3, epcs.size());
+        assertEquals(2, printers.get("A"));
+        assertEquals(1, printers.get("B"));
+        assertEquals(0, consumer.getLag());
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.bulk.ChunkSizer;
+import com.contare.printers.core.bulk.JobPartitioner;
+import com.contare.printers.core.bulk.LabelRenderer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.JobStats;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobPartitionerTest {
+
+    private final LabelRenderer<List<String>> renderer = (epcs) -> {
+        final StringBuilder sb = new StringBuilder();
+        for (String epc : epcs) {
+            sb.append("epc:").append(epc).append(';');
+        }
+        return sb.toString();
+    };
+
+    @Test
+    @DisplayName("Shrink chunks on buffer pressure and grow them back")
+    public void adaptChunkSize() {
+        final ChunkSizer sizer = new ChunkSizer(10, 1_000, 100);
+
+        sizer.record("SATO", new JobStats("A", 100, 100, 1_000, false, true));
+        assertEquals(125, sizer.next("SATO"));
+
+        sizer.record("SATO", new JobStats("A", 125, 125, 1_000, true, true));
+        assertEquals(62, sizer.next("SATO"));
+
+        // growth is capped below the size that caused pressure
+        for (int i = 0; i < 10; i++) {
+            final int size = sizer.next("SATO");
+            sizer.record("SATO", new JobStats("A", size, size, size * 10L, false, true));
+        }
+        assertEquals(94, sizer.next("SATO"));
+
+        // other models are not affected
+        assertEquals(100, sizer.next("ZEBRA"));
+    }
+
+    @Test
+    @DisplayName("Learn from every job when the next chunk is rendered ahead")
+    public void measureFinishedJob() {
+        final ChunkSizer sizer = new ChunkSizer(10, 1_000, 100);
+
+        // the second job was sized before the first one was measured
+        sizer.record("SATO", new JobStats("A", 100, 100, 1_000, false, true), 100);
+        assertEquals(125, sizer.next("SATO"));
+        sizer.record("SATO", new JobStats("A", 100, 100, 1_000, false, true), 100);
+        assertEquals(156, sizer.next("SATO"));
+
+        // last chunk of a sku is smaller than asked for, it says nothing
+        sizer.record("SATO", new JobStats("A", 30, 30, 100, false, true), 156);
+        assertEquals(156, sizer.next("SATO"));
+
+        // pressure on a job rendered before the size went down does not halve it twice
+        sizer.record("SATO", new JobStats("A", 156, 156, 1_560, true, true), 156);
+        assertEquals(78, sizer.next("SATO"));
+        sizer.record("SATO", new JobStats("A", 156, 156, 1_560, true, true), 156);
+        assertEquals(78, sizer.next("SATO"));
+    }
+
+    @Test
+    @DisplayName("Partition every EPC of a SKU into jobs")
+    public void partitionEpcs() throws PrinterException {
+        final FakePrinter printer = new FakePrinter("fake", 40);
+        final JobPartitioner partitioner = new JobPartitioner(new ChunkSizer(10, 1_000, 50));
+
+        final List<String> epcs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            epcs.add(String.format("%024X", i));
+        }
+
+        final Set<String> results = partitioner.print(printer, "812345", epcs, renderer);
+        assertEquals(500, results.size());
+        assertTrue(results.containsAll(epcs));
+
+        // first chunk overflowed the buffer, so the next ones got smaller
+        assertTrue(printer.getJobs().size() > 10);
+        assertTrue(partitioner.getSizer().next("FakePrinter") <= 40);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.SourceStats;
+import com.contare.printers.core.queue.DeadlineScheduler;
+import com.contare.printers.core.queue.FairScheduler;
+import com.contare.printers.core.queue.PrintJob;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobSchedulerTest {
+
+    private static String labels(final String prefix, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("epc:").append(prefix).append(i).append(';');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    @DisplayName("Urgent single labels are not starved by a bulk import")
+    public void weightedFairQueuing() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 1_000);
+        printer.setDelay(1);
+
+        try (PrinterQueue queue = new PrinterQueue(printer);
+             FairScheduler scheduler = new FairScheduler(Collections.singletonList(queue), 1)) {
+            scheduler.setWeight("orders", 2);
+
+            for (int i = 0; i < 6; i++) {
+                scheduler.submit("import", new PrintJob(labels("I" + i + "-", 50), "bulk", 50));
+            }
+            Thread.sleep(20);
+            final CompletableFuture<Set<String>> urgent = scheduler.submit("orders", new PrintJob(labels("O", 1), "order", 1));
+
+            final SourceStats imports = scheduler.getStats("import");
+            assertTrue(imports.getQueuedJobs() >= 4);
+            assertEquals(imports.getQueuedJobs() * 50L, imports.getQueuedLabels());
+
+            assertEquals(1, urgent.get(5, TimeUnit.SECONDS).size());
+
+            // the order went right after the jobs already dispatched, not after the whole import
+            final List<String> jobs = printer.getJobs();
+            assertTrue(jobs.size() <= 3, "order printed after " + jobs.size() + " jobs");
+            assertEquals(1, scheduler.getStats("orders").getDispatchedJobs());
+        }
+    }
+
+    @Test
+    @DisplayName("Dispatch by earliest deadline and reject jobs that cannot meet theirs")
+    public void earliestDeadlineFirst() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 1_000);
+        printer.setDelay(5);
+
+        try (PrinterQueue queue = new PrinterQueue(printer);
+             DeadlineScheduler scheduler = new DeadlineScheduler(Collections.singletonList(queue), 1)) {
+            final long now = System.currentTimeMillis();
+
+            // nothing measured yet, default speed: 10 labels take ~5 s
+            final PrintJob late = new PrintJob(labels("X", 10), "late", 10);
+            late.setDeadline(now + 1_000);
+            assertThrows(PrinterException.class, () -> scheduler.submit(late));
+            assertFalse(late.getResult().isDone());
+
+            final CompletableFuture<Set<String>> blocker = scheduler.submit(new PrintJob(labels("B", 40), "blocker", 40));
+            final PrintJob second = new PrintJob(labels("S", 1), "second", 1);
+            second.setDeadline(now + 60_000);
+            final PrintJob first = new PrintJob(labels("F", 1), "first", 1);
+            first.setDeadline(now + 30_000);
+            scheduler.submit(second);
+            scheduler.submit(first);
+
+            blocker.get(5, TimeUnit.SECONDS);
+            second.getResult().get(5, TimeUnit.SECONDS);
+            first.getResult().get(5, TimeUnit.SECONDS);
+
+            final List<String> jobs = printer.getJobs();
+            assertTrue(jobs.indexOf(labels("F", 1)) < jobs.indexOf(labels("S", 1)));
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.io.NewlineInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class NewlineInputStreamTest {
+
+    private static final Charset charset = StandardCharsets.UTF_8;
+
+    @Test
+    @DisplayName("Replace bare LF by CRLF")
+    public void normalizeBareLineFeeds() throws IOException {
+        assertEquals("A\r\nB\r\n\r\nC", normalize("A\nB\n\nC", 8_192));
+    }
+
+    @Test
+    @DisplayName("Keep existing CRLF")
+    public void keepCarriageReturnLineFeeds() throws IOException {
+        assertEquals("A\r\nB\r\nC\r\n", normalize("A\r\nB\nC\r\n", 8_192));
+    }
+
+    @Test
+    @DisplayName("Normalize across buffer boundaries")
+    public void normalizeAcrossChunks() throws IOException {
+        // CR and LF split between two internal reads
+        assertEquals("AB\r\nCD\r\n", normalize("AB\r\nCD\n", 3));
+        assertEquals("\r\n\r\n\r\n", normalize("\n\n\n", 1));
+    }
+
+    @Test
+    @DisplayName("Normalize Strings like streams")
+    public void normalizeStrings() throws IOException {
+        for (String value : new String[]{"A\nB\n\nC", "A\r\nB\nC\r\n", "\n\r\n\n", "A\r\n"}) {
+            assertEquals(normalize(value, 8_192), NewlineInputStream.normalize(value));
+        }
+        final String clean = "A\r\nB";
+        assertSame(clean, NewlineInputStream.normalize(clean));
+    }
+
+    private static String normalize(final String value, final int size) throws IOException {
+        final InputStream in = new NewlineInputStream(new ByteArrayInputStream(value.getBytes(charset)), size);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[2];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+}
@@ -6,12 +6,17 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -124,6 +129,130 @@ public class PrinterConnectionTest {
         }
     }
 
+    @Test
+    @DisplayName("Stream data in chunks")
+    void testStreamAndServerReceivesData() throws Exception {
+        final byte[] dataToSend = new byte[100_000];
+        for (int i = 0; i < dataToSend.length; i++) {
+            dataToSend[i] = (byte) ('A' + (i % 26));
+        }
+
+        final CompletableFuture<byte[]> receivedFuture = new CompletableFuture<>();
+
+        server.enqueueHandler((socket) -> {
+            try (InputStream in = socket.getInputStream();
+                 ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                byte[] buf = new byte[4096];
+                int r;
+                while ((r = in.read(buf)) != -1) {
+                    baos.write(buf, 0, r);
+                }
+                receivedFuture.complete(baos.toByteArray());
+            } catch (IOException e) {
+                receivedFuture.completeExceptionally(e);
+            }
+        });
+
+        final int port = server.getPort();
+        final PrinterConnection pc = new PrinterConnection("127.0.0.1", port);
+        try {
+            pc.connect(2_000);
+            final long sent = pc.send(new ByteArrayInputStream(dataToSend));
+            assertEquals(dataToSend.length, sent);
+            pc.close();
+
+            final byte[] received = receivedFuture.get(1, TimeUnit.SECONDS);
+            assertArrayEquals(dataToSend, received);
+        } finally {
+            pc.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Transfer file without copies")
+    void testTransferFileAndServerReceivesData() throws Exception {
+        final byte[] dataToSend = new byte[100_000];
+        for (int i = 0; i < dataToSend.length; i++) {
+            dataToSend[i] = (byte) ('A' + (i % 26));
+        }
+        final Path file = Files.createTempFile("printer-connection", ".txt");
+        Files.write(file, dataToSend);
+
+        final CompletableFuture<byte[]> receivedFuture = new CompletableFuture<>();
+
+        server.enqueueHandler((socket) -> {
+            try (InputStream in = socket.getInputStream();
+                 ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                byte[] buf = new byte[4096];
+                int r;
+                while ((r = in.read(buf)) != -1) {
+                    baos.write(buf, 0, r);
+                }
+                receivedFuture.complete(baos.toByteArray());
+            } catch (IOException e) {
+                receivedFuture.completeExceptionally(e);
+            }
+        });
+
+        final int port = server.getPort();
+        final PrinterConnection pc = new PrinterConnection("127.0.0.1", port);
+        try {
+            pc.connect(2_000, true);
+            pc.send("HEADER");
+            final long sent = pc.send(file);
+            assertEquals(dataToSend.length, sent);
+            pc.close();
+
+            final byte[] received = receivedFuture.get(1, TimeUnit.SECONDS);
+            assertEquals("HEADER", new String(received, 0, 6, charset));
+            assertArrayEquals(dataToSend, Arrays.copyOfRange(received, 6, received.length));
+        } finally {
+            pc.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Send segments with a gathering write")
+    void testSendSegmentsAndServerReceivesData() throws Exception {
+        final ByteBuffer header = ByteBuffer.wrap("HEADER;".getBytes(charset));
+        final ByteBuffer body = ByteBuffer.allocateDirect(16);
+        body.put("BODY;".getBytes(charset)).flip();
+        final ByteBuffer footer = ByteBuffer.wrap("Q2;Z".getBytes(charset));
+
+        final CompletableFuture<byte[]> receivedFuture = new CompletableFuture<>();
+
+        server.enqueueHandler((socket) -> {
+            try (InputStream in = socket.getInputStream();
+                 ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                byte[] buf = new byte[256];
+                int r;
+                while ((r = in.read(buf)) != -1) {
+                    baos.write(buf, 0, r);
+                }
+                receivedFuture.complete(baos.toByteArray());
+            } catch (IOException e) {
+                receivedFuture.completeExceptionally(e);
+            }
+        });
+
+        final int port = server.getPort();
+        final PrinterConnection pc = new PrinterConnection("127.0.0.1", port);
+        try {
+            pc.connect(2_000);
+            // the same body segment is reused, positions must not be consumed
+            final long sent = pc.send(header, body, body, footer);
+            assertEquals(21, sent);
+            assertEquals(0, body.position());
+            pc.close();
+
+            final byte[] received = receivedFuture.get(1, TimeUnit.SECONDS);
+            assertEquals("HEADER;BODY;BODY;Q2;Z", new String(received, charset));
+        } finally {
+            pc.close();
+        }
+    }
+
     @Test
     @DisplayName("Read multiple messages, ignoring leading bytes")
     void testReadMultipleMessagesAndIgnoreLeadingBytes() throws Exception {
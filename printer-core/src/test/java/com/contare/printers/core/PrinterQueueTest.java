@@ -0,0 +1,268 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.queue.JobBatcher;
+import com.contare.printers.core.queue.PrintJob;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.core.queue.SkuJobQueue;
+import com.contare.printers.utils.FakePrinter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrinterQueueTest {
+
+    @Test
+    @DisplayName("Print queued jobs in order and complete their futures")
+    public void printInOrder() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(2);
+
+        final List<CompletableFuture<Set<String>>> futures = new ArrayList<>();
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(queue.submit(String.format("epc:%024X;epc:%024X;", i * 2, i * 2 + 1), "sku-" + i, 2));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                final Set<String> printed = futures.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(2, printed.size());
+                assertTrue(printed.contains(String.format("%024X", i * 2)));
+            }
+        }
+
+        final List<String> jobs = printer.getJobs();
+        assertEquals(10, jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            assertTrue(jobs.get(i).startsWith(String.format("epc:%024X;", i * 2)));
+        }
+    }
+
+    @Test
+    @DisplayName("Render the next job while the current one prints")
+    public void pipelineRendering() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(50);
+
+        final AtomicInteger rendered = new AtomicInteger();
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final CompletableFuture<Set<String>> first = queue.submit(new PrintJob("A", 4, () -> {
+                rendered.incrementAndGet();
+                return "epc:1;epc:2;epc:3;epc:4;";
+            }));
+            final CompletableFuture<Set<String>> second = queue.submit(new PrintJob("B", 1, () -> {
+                rendered.incrementAndGet();
+                return "epc:5;";
+            }));
+
+            // first job takes ~200 ms, the second one is rendered meanwhile
+            Thread.sleep(100);
+            assertFalse(first.isDone());
+            assertEquals(2, rendered.get());
+
+            assertEquals(4, first.get(5, TimeUnit.SECONDS).size());
+            assertEquals(1, second.get(5, TimeUnit.SECONDS).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Fail the job future when the printer fails")
+    public void failJob() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setFailing(true);
+
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final CompletableFuture<Set<String>> result = queue.submit("epc:1;", "A", 1);
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(PrinterException.class, e.getCause());
+        }
+
+        // closed queue rejects new jobs
+        final PrinterQueue closed = new PrinterQueue(printer);
+        closed.close();
+        assertTrue(closed.submit("epc:1;", "A", 1).isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("Batch small jobs into one transmission and split their results")
+    public void batchSmallJobs() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+
+        try (PrinterQueue queue = new PrinterQueue(printer); JobBatcher batcher = new JobBatcher(queue, 100, 1_000)) {
+            final CompletableFuture<Set<String>> a = batcher.submit("epc:A1;epc:A2;", "A", Arrays.asList("A1", "A2"));
+            final CompletableFuture<Set<String>> b = batcher.submit("epc:B1;", "B", Collections.singletonList("B1"));
+            final CompletableFuture<Set<String>> c = batcher.submit("epc:C1;", "C", Collections.singletonList("C1"));
+
+            assertEquals(new TreeSet<>(Arrays.asList("A1", "A2")), a.get(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singleton("B1"), b.get(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singleton("C1"), c.get(5, TimeUnit.SECONDS));
+
+            // window expired once, every job went in the same transmission
+            assertEquals(Collections.singletonList("epc:A1;epc:A2;epc:B1;epc:C1;"), printer.getJobs());
+            assertEquals("A,B,C", printer.getLastJob().getSku());
+
+            // byte budget exceeded, pending jobs are sent without waiting for the window
+            final JobBatcher small = new JobBatcher(queue, 60_000, 10);
+            final CompletableFuture<Set<String>> d = small.submit("epc:D1;", "D", Collections.singletonList("D1"));
+            final CompletableFuture<Set<String>> e = small.submit("epc:E1;", "E", Collections.singletonList("E1"));
+            assertEquals(Collections.singleton("D1"), d.get(5, TimeUnit.SECONDS));
+            assertFalse(e.isDone());
+
+            // 8 characters but 11 bytes, too big to batch
+            final CompletableFuture<Set<String>> f = small.submit("epc:\u00C9\u00C9\u00C9;", "F", Collections.singletonList("\u00C9\u00C9\u00C9"));
+            assertEquals(Collections.singleton("E1"), e.get(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singleton("\u00C9\u00C9\u00C9"), f.get(5, TimeUnit.SECONDS));
+            small.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Cancel and ignore batched jobs by their own sku")
+    public void batchCancelSku() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(50);
+
+        try (PrinterQueue queue = new PrinterQueue(printer); JobBatcher batcher = new JobBatcher(queue, 60_000, 1_000)) {
+            // keeps the printer busy while the batch waits in the queue
+            final CompletableFuture<Set<String>> busy = queue.submit("epc:X1;epc:X2;epc:X3;epc:X4;", "X", 4);
+
+            final CompletableFuture<Set<String>> a = batcher.submit("epc:A1;", "A", Collections.singletonList("A1"));
+            final CompletableFuture<Set<String>> b = batcher.submit("epc:B1;", "B", Collections.singletonList("B1"));
+            final CompletableFuture<Set<String>> c = batcher.submit("epc:C1;", "C", Collections.singletonList("C1"));
+            batcher.flush();
+            final CompletableFuture<Set<String>> d = batcher.submit("epc:B2;", "B", Collections.singletonList("B2"));
+
+            // one job inside the queued batch, one still collected
+            assertEquals(2, batcher.cancelSku("B"));
+            assertTrue(b.isCancelled());
+            assertTrue(d.isCancelled());
+
+            assertEquals(4, busy.get(5, TimeUnit.SECONDS).size());
+            assertEquals(Collections.singleton("A1"), a.get(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singleton("C1"), c.get(5, TimeUnit.SECONDS));
+            assertEquals("epc:A1;epc:C1;", printer.getJobs().get(1));
+            assertEquals("A,C", printer.getLastJob().getSku());
+
+            // ignored sku is left out of the batch
+            printer.ignore("E");
+            final CompletableFuture<Set<String>> e = batcher.submit("epc:E1;", "E", Collections.singletonList("E1"));
+            final CompletableFuture<Set<String>> f = batcher.submit("epc:F1;", "F", Collections.singletonList("F1"));
+            batcher.flush();
+            assertEquals(Collections.singleton("F1"), f.get(5, TimeUnit.SECONDS));
+            assertTrue(e.get(5, TimeUnit.SECONDS).isEmpty());
+            assertEquals("epc:F1;", printer.getJobs().get(2));
+        }
+    }
+
+    @Test
+    @DisplayName("Drop every pending partition of a canceled SKU keeping FIFO order")
+    public void cancelSkuPartitions() throws Exception {
+        final SkuJobQueue jobs = new SkuJobQueue();
+        for (int i = 0; i < 300; i++) {
+            jobs.add(new PrintJob("epc:" + i + ";", (i % 3 == 0) ? "A" : "B" + (i % 3), 1));
+        }
+        assertEquals(100, jobs.size("A"));
+
+        assertEquals(100, jobs.cancel("A").size());
+        assertEquals(200, jobs.size());
+        assertEquals(0, jobs.size("A"));
+        assertTrue(jobs.cancel("A").isEmpty());
+
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 0) continue;
+            assertEquals("epc:" + i + ";", jobs.poll().getContent().get());
+        }
+        assertNull(jobs.poll());
+        assertTrue(jobs.isEmpty());
+
+        // queued jobs of the sku are canceled, the others still print
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(20);
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final CompletableFuture<Set<String>> first = queue.submit("epc:1;epc:2;epc:3;epc:4;epc:5;", "A", 5);
+            final List<CompletableFuture<Set<String>>> partitions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                partitions.add(queue.submit("epc:X" + i + ";", "X", 1));
+            }
+            final CompletableFuture<Set<String>> last = queue.submit("epc:6;", "B", 1);
+
+            assertEquals(10, queue.cancelSku("X"));
+            for (CompletableFuture<Set<String>> partition : partitions) {
+                assertTrue(partition.isCancelled());
+            }
+            assertEquals(5, first.get(5, TimeUnit.SECONDS).size());
+            assertEquals(1, last.get(5, TimeUnit.SECONDS).size());
+        }
+        assertEquals(2, printer.getJobs().size());
+    }
+
+    @Test
+    @DisplayName("Cancel the printing SKU from the worker thread, never from the caller")
+    public void cancelPrintingSku() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+        printer.setDelay(20);
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                content.append("epc:X").append(i).append(';');
+            }
+            final CompletableFuture<Set<String>> printing = queue.submit(content.toString(), "X", 100);
+            final CompletableFuture<Set<String>> next = queue.submit("epc:X100;", "X", 1);
+            while (queue.getCurrent() == null) {
+                Thread.sleep(5);
+            }
+
+            // the pending partition is dropped, the printing one is stopped by the worker between labels
+            assertEquals(2, queue.cancelSku("X"));
+            assertTrue(next.isCancelled());
+
+            final Set<String> printed = printing.get(5, TimeUnit.SECONDS);
+            assertTrue(printed.size() < 100);
+            assertTrue(printer.getCanceledBy().startsWith("printer-queue-worker-"));
+            assertFalse(printer.getLastJob().isCompleted());
+            assertTrue(printer.getLastJob().isCanceled());
+            assertTrue(printer.getIgnoredSkus().contains("X"));
+        }
+    }
+
+    @Test
+    @DisplayName("Tie cancel requests to the job they were posted for")
+    public void cancelStaleRequest() throws Exception {
+        final FakePrinter printer = new FakePrinter("fake", 100);
+
+        // posted while job 1 was finishing, must not abort the next job of the same sku
+        printer.setJobId(1);
+        assertTrue(printer.requestCancel(1));
+        printer.setJobId(2);
+        assertEquals(2, printer.print("epc:X1;epc:X2;", "X", 2).size());
+        assertTrue(printer.getLastJob().isCompleted());
+
+        // drivers that cannot cancel while printing refuse the request, the job runs to the end
+        printer.setCancelable(false);
+        printer.setDelay(20);
+        try (PrinterQueue queue = new PrinterQueue(printer)) {
+            final PrintJob job = new PrintJob("X", 5, () -> "epc:1;epc:2;epc:3;epc:4;epc:5;");
+            queue.submit(job);
+            while (queue.getCurrent() == null) {
+                Thread.sleep(5);
+            }
+            assertFalse(queue.cancel(job));
+            assertEquals(0, queue.cancelSku("X"));
+            assertEquals(5, job.getResult().get(5, TimeUnit.SECONDS).size());
+        }
+        assertNull(printer.getCanceledBy());
+    }
+
+}
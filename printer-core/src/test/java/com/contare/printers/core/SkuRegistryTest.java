@@ -0,0 +1,45 @@
+package com.contare.printers.core;
+
+import com.contare.printers.core.cache.SkuRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SkuRegistryTest {
+
+    @Test
+    @DisplayName("Forget canceled SKUs after their time-to-live")
+    public void expireEntries() throws InterruptedException {
+        final SkuRegistry registry = new SkuRegistry(50, 10);
+        assertTrue(registry.add("A"));
+        assertFalse(registry.add("A"));
+        assertTrue(registry.contains("A"));
+        assertFalse(registry.contains(null));
+
+        Thread.sleep(80);
+        assertFalse(registry.contains("A"));
+        assertEquals(1, registry.getExpired());
+        assertEquals(0, registry.size());
+
+        // can be canceled again
+        assertTrue(registry.add("A"));
+    }
+
+    @Test
+    @DisplayName("Evict least recently used SKUs when full")
+    public void evictWhenFull() {
+        final SkuRegistry registry = new SkuRegistry(60_000, 4);
+        for (int i = 0; i < 10; i++) {
+            registry.add("SKU-" + i);
+        }
+
+        assertEquals(4, registry.size());
+        assertEquals(6, registry.getEvicted());
+        assertEquals(0, registry.getExpired());
+
+        // the last one added is never the victim
+        assertTrue(registry.contains("SKU-9"));
+    }
+
+}
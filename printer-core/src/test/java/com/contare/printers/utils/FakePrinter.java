@@ -0,0 +1,172 @@
+package com.contare.printers.utils;
+
+import com.contare.printers.core.BasePrinter;
+import com.contare.printers.core.exceptions.PrinterException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory printer used by tests, it "prints" every 'epc:&lt;value&gt;' found in the job content.
+ * <p>
+ * Usage pattern:
+ * FakePrinter printer = new FakePrinter("fake", 100); // receive buffer fits 100 labels
+ * printer.print("epc:A;epc:B;", "sku", 2);
+ */
+public class FakePrinter extends BasePrinter {
+
+    private static final Pattern EPC = Pattern.compile("epc:([^,;]+)");
+
+    private final String name;
+    private final int bufferCapacity;   // jobs with more labels report buffer pressure
+
+    private final List<String> jobs = Collections.synchronizedList(new ArrayList<>());
+    private volatile long delay = 0;    // time spent printing each label (milliseconds)
+    private volatile boolean failing = false;
+    private volatile boolean cancelable = true; // false = behaves as drivers that cannot cancel while printing
+    private volatile String canceledBy;     // thread that sent the last cancel
+
+    public FakePrinter(final String name, final int bufferCapacity) {
+        super("127.0.0.1", 0);
+        this.name = name;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public List<String> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public void setDelay(final long delay) {
+        this.delay = delay;
+    }
+
+    public void setFailing(final boolean failing) {
+        this.failing = failing;
+    }
+
+    public void setCancelable(final boolean cancelable) {
+        this.cancelable = cancelable;
+    }
+
+    public String getCanceledBy() {
+        return canceledBy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean ignore(final String sku) {
+        return ignoreSku(sku);
+    }
+
+    @Override
+    protected String createLabel(final String ip, final Integer port) {
+        return String.format("Fake@%s:%d", ip, port);
+    }
+
+    @Override
+    protected boolean canCancelWhilePrinting(final boolean ignore) {
+        return cancelable;
+    }
+
+    @Override
+    public Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException {
+        final Set<String> results = new TreeSet<>();
+        setSku(sku);
+
+        if (isIgnoredSku(sku)) {
+            return results;
+        }
+        if (failing) {
+            throw new PrinterException("Printer %s is failing", name);
+        }
+
+        jobs.add(content);
+        bufferPressure = (epcs != null && epcs > bufferCapacity);
+
+        boolean completed = true;
+        final long start = System.currentTimeMillis();
+        final Matcher matcher = EPC.matcher(content);
+        while (matcher.find()) {
+            if (handleCancelRequest()) {
+                completed = false;
+                break;
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PrinterException(e, "Interrupted");
+                }
+            }
+            final String epc = matcher.group(1);
+            if (results.add(epc)) {
+                receiveEpc(epc, null);
+            }
+        }
+
+        // simulate 1 label per millisecond when there is no delay, so throughput is measurable
+        final long elapsed = Math.max(System.currentTimeMillis() - start, results.size());
+        recordJob(sku, epcs, results.size(), elapsed, completed);
+        return results;
+    }
+
+    @Override
+    public Set<String> print(final InputStream content, final String sku, final Integer epcs) throws PrinterException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = content.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return print(new String(out.toByteArray(), StandardCharsets.UTF_8), sku, epcs);
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error reading content");
+        }
+    }
+
+    @Override
+    public void onReceiveEpc(final String epc, final String tid) {
+        logger.debugf("Received EPC: '%s', TID: '%s'", epc, tid);
+    }
+
+    @Override
+    public void initialize() {
+        printing = false;
+    }
+
+    @Override
+    public boolean resume() {
+        return true;
+    }
+
+    @Override
+    public boolean pause() {
+        return true;
+    }
+
+    @Override
+    public boolean cancel() {
+        canceledBy = Thread.currentThread().getName();
+        settings.discard();
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.contare.printers.utils;
+
+/**
+ * Job contents for tests, every label is an 'epc:&lt;value&gt;' understood by {@link FakePrinter}.
+ * <p>
+ * Usage pattern:
+ * String content = Labels.of(12); // epc:C0;epc:C1;...;epc:C11;
+ */
+public final class Labels {
+
+    private Labels() {
+    }
+
+    /**
+     * @param count - number of labels
+     * @return job content with 'count' distinct epcs.
+     */
+    public static String of(final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("epc:C").append(i).append(';');
+        }
+        return sb.toString();
+    }
+
+}
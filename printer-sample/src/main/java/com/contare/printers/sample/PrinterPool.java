@@ -2,6 +2,9 @@ package com.contare.printers.sample;
 
 import com.contare.printers.averydennison.AveryDennisonPrinter;
 import com.contare.printers.core.Printer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.sample.routing.PrinterGroup;
+import com.contare.printers.sample.routing.PrinterRouter;
 import com.contare.printers.sato.SatoPrinter;
 import com.contare.printers.zebra.ZebraPrinter;
 import lombok.AllArgsConstructor;
@@ -12,6 +15,8 @@ import org.jboss.logging.Logger;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PrinterPool {
@@ -21,6 +26,8 @@ public class PrinterPool {
     private final Logger logger = Logger.getLogger(PrinterPool.class);
 
     private final Map<Pair<String, Integer>, Printer> pool = new ConcurrentHashMap<>();
+    private final Map<String, PrinterGroup> groups = new ConcurrentHashMap<>();
+    private final PrinterRouter router = new PrinterRouter();
 
     public static PrinterPool getInstance() {
         if (instance == null) {
@@ -66,6 +73,7 @@ public class PrinterPool {
         try {
             final Printer printer = get(ip, port);
             if (printer != null) {
+                groups.values().forEach((group) -> group.remove(printer));
                 printer.close();
             }
             final Pair<String, Integer> pair = new Pair<>(ip, port);
@@ -77,6 +85,8 @@ public class PrinterPool {
     }
 
     public void clear() {
+        groups.values().forEach(PrinterGroup::close);
+        groups.clear();
         pool.forEach((k, v) -> {
             try {
                 v.close();
@@ -87,6 +97,61 @@ public class PrinterPool {
         pool.clear();
     }
 
+    /**
+     * Get a printer group, creating it if needed.
+     *
+     * @param name - group name
+     * @return printer group.
+     */
+    public PrinterGroup group(final String name) {
+        return groups.computeIfAbsent(name, PrinterGroup::new);
+    }
+
+    public Map<String, PrinterGroup> getGroups() {
+        return Collections.unmodifiableMap(groups);
+    }
+
+    /**
+     * Add a printer of the pool to a group, from now on it is driven by the group queue.
+     *
+     * @param name - group name
+     * @param ip   - printer ip
+     * @param port - printer port
+     * @return printer group.
+     */
+    public PrinterGroup addToGroup(final String name, final String ip, final Integer port) {
+        final Printer printer = get(ip, port);
+        if (printer == null) {
+            throw new IllegalArgumentException("Printer " + ip + ":" + port + " is not in the pool");
+        }
+
+        final PrinterGroup group = group(name);
+        group.add(printer);
+        return group;
+    }
+
+    /**
+     * Send a job to the printer of the group expected to finish it first.
+     *
+     * @param name    - group name
+     * @param content - label content
+     * @param sku     - current sku
+     * @param epcs    - number of epcs inside content
+     * @return future completed with the epcs printed by printer.
+     * @throws PrinterException if the group does not exist or is empty.
+     */
+    public CompletableFuture<Set<String>> submit(final String name, final String content, final String sku, final Integer epcs) throws PrinterException {
+        final PrinterGroup group = groups.get(name);
+        if (group == null) {
+            throw new PrinterException("Printer group '%s' does not exist", name);
+        }
+        return router.select(group, (epcs != null) ? epcs : 0).submit(content, sku, epcs);
+    }
+
+    public PrinterRouter getRouter() {
+        return router;
+    }
+
     @Data
     @AllArgsConstructor
     @EqualsAndHashCode
@@ -0,0 +1,21 @@
+package com.contare.printers.sample.routing;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import lombok.Getter;
+
+/**
+ * A printer of the group failed, the result holds the epcs printed by every printer anyway.
+ */
+@Getter
+public class GroupPrintException extends PrinterException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient GroupResult result;   // holds printers, not serialized
+
+    public GroupPrintException(final GroupResult result, final Throwable cause, final String message) {
+        super(cause, message);
+        this.result = result;
+    }
+
+}
@@ -0,0 +1,472 @@
+package com.contare.printers.sample.routing;
+
+import com.contare.printers.core.Printer;
+import com.contare.printers.core.bulk.LabelRenderer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.EpcEvent;
+import com.contare.printers.core.queue.PrintJob;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.core.stream.EpcSubscriber;
+import com.contare.printers.core.stream.EpcSubscription;
+import com.contare.printers.sato.SatoMessage;
+import com.contare.printers.sato.SatoPrinter;
+import com.contare.printers.sato.enums.RibbonStatus;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Prints the EPC list of a SKU across every printer of a group at once.
+ * <p>
+ * Behaviour:
+ * - The EPC list (duplicates removed) is split into disjoint contiguous ranges, sized so every printer is
+ * expected to finish at the same time (queued labels and speed from {@link PrinterRouter}).
+ * - Each range is submitted to its printer queue in chunks, chunks are rendered by the queue right before printing.
+ * - Returned EPC sets are merged into one {@link GroupResult}, attributed per printer. Only requested EPCs are kept
+ * and each one appears once, as in a single {@link Printer#print} call.
+ * - During the run (rebalance), labels move between printers without duplicates:
+ * printers in error hand over every unconfirmed label (the job printing is canceled),
+ * printers running out of ribbon hand over the labels not started yet,
+ * idle printers take the labels not started yet of the busiest printer.
+ * Only EPCs not confirmed by any printer are resubmitted, EPCs a printer returned before failing
+ * (taken from the job EPC stream) are kept and attributed to it.
+ * - If labels are left unprinted because printers failed, a {@link GroupPrintException} is thrown carrying
+ * the EPCs printed by every printer.
+ * <p>
+ * Usage pattern:
+ * GroupResult result = new GroupPrinter().print(pool.group("line-1"), sku, epcs, renderer);
+ */
+public class GroupPrinter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final Logger logger = Logger.getLogger(GroupPrinter.class);
+
+    @Getter
+    private final PrinterRouter router;
+
+    @Getter
+    @Setter
+    private int chunkSize = DEFAULT_CHUNK_SIZE; // maximum labels per job
+
+    @Getter
+    @Setter
+    private boolean rebalance = true;           // move labels away from failing/slow printers during the run
+
+    @Getter
+    @Setter
+    private int maxAttempts = 3;                // resubmissions of an epc before giving up (e.g. tag that never encodes)
+
+    @Getter
+    @Setter
+    private long checkInterval = 250;           // time between progress checks (milliseconds)
+
+    public GroupPrinter(final PrinterRouter router) {
+        this.router = Objects.requireNonNull(router, "Router is required");
+    }
+
+    public GroupPrinter() {
+        this(new PrinterRouter());
+    }
+
+    /**
+     * Print every EPC of a SKU across a printer group.
+     *
+     * @param group    - printer group
+     * @param sku      - current sku
+     * @param epcs     - every epc of the sku
+     * @param renderer - render the job content of a list of epcs
+     * @return epcs printed, attributed per printer.
+     * @throws PrinterException if the group is empty or a printer fails (see {@link GroupPrintException}).
+     */
+    public GroupResult print(final PrinterGroup group,
+                             final String sku,
+                             final List<String> epcs,
+                             final LabelRenderer<List<String>> renderer) throws PrinterException {
+        Objects.requireNonNull(group, "Group is required");
+        Objects.requireNonNull(epcs, "EPC list is required");
+        Objects.requireNonNull(renderer, "Renderer is required");
+
+        final List<String> distinct = new ArrayList<>(new LinkedHashSet<>(epcs));
+        final GroupResult result = new GroupResult(sku, distinct.size());
+        if (distinct.isEmpty()) {
+            return result;
+        }
+
+        final Set<PrinterQueue> excluded = new HashSet<>();     // printers taken out of this run
+        final List<Part> parts = distribute(distinct, targets(group, excluded), sku, renderer);
+        final List<String> missing = new ArrayList<>();         // epcs to resubmit
+        final Map<String, Integer> attempts = new HashMap<>();  // resubmissions per epc
+        Throwable error = null;
+
+        while (!parts.isEmpty()) {
+            // merge finished parts
+            final Iterator<Part> it = parts.iterator();
+            while (it.hasNext()) {
+                final Part part = it.next();
+                if (!part.isDone()) continue;
+                it.remove();
+
+                final Printer printer = part.queue.getPrinter();
+                if (part.revoked) {
+                    continue;
+                }
+                try {
+                    final Set<String> printed = filter(part.result.get(), part.epcs);
+                    result.add(printer, printed);
+
+                    // printer stopped before the end of the job (canceled, error), find out what is still needed
+                    if (part.abandoned || printed.size() < part.epcs.size()) {
+                        missing.addAll(unconfirmed(part, printed));
+                    }
+                } catch (CancellationException e) {
+                    // canceled outside this run (e.g. sku canceled), its labels are not wanted anymore
+                    logger.infof("Job %d of sku %s canceled on printer %s", part.job.getId(), sku, printer);
+                    result.add(printer, filter(part.confirmed, part.epcs));
+                    result.fail(printer, e);
+                    error = e;
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    logger.warnf("Printer %s failed printing sku %s: %s", printer, sku, cause.getMessage());
+                    // tags encoded before the error are printed, only the others move
+                    final Set<String> printed = filter(part.confirmed, part.epcs);
+                    result.add(printer, printed);
+                    result.fail(printer, cause);
+                    error = cause;
+                    missing.addAll(unconfirmed(part, printed));
+                    if (rebalance && excluded.add(part.queue)) {
+                        revoke(part.queue, parts, missing);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GroupPrintException(result, e, "Interrupted while printing group '" + group.getName() + "'");
+                }
+            }
+
+            if (rebalance) {
+                // printers in error or running out of ribbon hand over their remaining labels
+                for (PrinterQueue queue : group.getMembers()) {
+                    if (excluded.contains(queue) || !hasWork(queue, parts)) continue;
+
+                    final Printer printer = queue.getPrinter();
+                    if (!router.isHealthy(printer)) {
+                        logger.warnf("Printer %s is in error, moving its remaining labels of sku %s", printer, sku);
+                        excluded.add(queue);
+                        revoke(queue, parts, missing);
+                        abandon(queue, parts);
+                    } else if (isDegraded(printer)) {
+                        logger.warnf("Printer %s is degraded, moving its pending labels of sku %s", printer, sku);
+                        excluded.add(queue);
+                        revoke(queue, parts, missing);
+                    }
+                }
+
+                // idle printers steal the pending labels of the busiest one
+                final List<PrinterQueue> available = available(group, excluded);
+                boolean idle = false;
+                for (PrinterQueue queue : available) {
+                    idle |= !hasWork(queue, parts);
+                }
+                if (idle && missing.isEmpty()) {
+                    final PrinterQueue busiest = busiest(available, parts);
+                    if (busiest != null) {
+                        logger.infof("Rebalancing pending labels of sku %s from %s", sku, busiest.getPrinter());
+                        revoke(busiest, parts, missing);
+                    }
+                }
+            }
+
+            if (!rebalance) {
+                missing.clear();
+            } else if (!missing.isEmpty()) {
+                // never resubmit epcs already confirmed, nor epcs that keep failing
+                missing.removeAll(result.getEpcs());
+                final List<String> retry = new ArrayList<>();
+                for (String epc : missing) {
+                    if (attempts.merge(epc, 1, Integer::sum) <= maxAttempts) {
+                        retry.add(epc);
+                    }
+                }
+                if (retry.size() < missing.size()) {
+                    logger.errorf("Giving up %d labels of sku %s after %d attempts", missing.size() - retry.size(), sku, maxAttempts);
+                }
+                missing.clear();
+
+                final List<PrinterQueue> available = available(group, excluded);
+                if (!retry.isEmpty() && available.isEmpty()) {
+                    logger.errorf("No printer left in group '%s', %d labels of sku %s not printed", group.getName(), retry.size(), sku);
+                    if (error == null) {
+                        error = new PrinterException("No printer left in group '%s'", group.getName());
+                    }
+                } else if (!retry.isEmpty()) {
+                    logger.infof("Resubmitting %d labels of sku %s to %d printers", retry.size(), sku, available.size());
+                    parts.addAll(distribute(retry, available, sku, renderer));
+                }
+            }
+
+            if (!parts.isEmpty()) {
+                try {
+                    Thread.sleep(checkInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GroupPrintException(result, e, "Interrupted while printing group '" + group.getName() + "'");
+                }
+            }
+        }
+
+        logger.infof("SKU %s printed by group '%s': %s", sku, group.getName(), result);
+        if (!result.isComplete() && error != null) {
+            throw new GroupPrintException(result, error, "Printer failed while printing group '" + group.getName() + "'");
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the printer keeps working but should not receive new labels (e.g. ribbon near end).
+     */
+    public boolean isDegraded(final Printer printer) {
+        if (printer instanceof SatoPrinter) {
+            final SatoMessage.PrinterInfo status = ((SatoPrinter) printer).getLastStatus();
+            return (status != null) && (status.getRe() == RibbonStatus.RIBBON_NEAR_END || status.getRe() == RibbonStatus.NO_RIBBON);
+        }
+        return false;
+    }
+
+    private List<Part> distribute(final List<String> epcs, final List<PrinterQueue> members, final String sku, final LabelRenderer<List<String>> renderer) {
+        final int[] sizes = split(epcs.size(), members);
+        final List<Part> parts = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < members.size(); i++) {
+            final List<String> range = new ArrayList<>(epcs.subList(offset, offset + sizes[i]));
+            offset += sizes[i];
+            parts.addAll(submit(members.get(i), sku, range, renderer));
+
+            if (!range.isEmpty()) {
+                logger.infof("SKU %s: %d labels sent to %s", sku, range.size(), members.get(i).getPrinter());
+            }
+        }
+        return parts;
+    }
+
+    // revoke every part of a printer not started yet, their epcs go back to 'missing'
+    private void revoke(final PrinterQueue queue, final List<Part> parts, final List<String> missing) {
+        for (Part part : parts) {
+            if (part.queue == queue && !part.revoked && part.job.revoke()) {
+                part.revoked = true;
+                missing.addAll(unconfirmed(part, Collections.emptySet()));
+            }
+        }
+    }
+
+    // cancel the part being printed through its queue (the worker owns the connection),
+    // epcs it did not confirm are resubmitted when it finishes
+    private void abandon(final PrinterQueue queue, final List<Part> parts) {
+        for (Part part : parts) {
+            if (part.queue == queue && !part.revoked && part.job.isClaimed() && !part.result.isDone()) {
+                part.abandoned = queue.cancel(part.job);
+            }
+        }
+    }
+
+    private static boolean hasWork(final PrinterQueue queue, final List<Part> parts) {
+        for (Part part : parts) {
+            if (part.queue == queue && !part.revoked && !part.result.isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // printer with the most labels not started yet
+    private static PrinterQueue busiest(final List<PrinterQueue> members, final List<Part> parts) {
+        PrinterQueue busiest = null;
+        int max = 0;
+        for (PrinterQueue queue : members) {
+            int pending = 0;
+            for (Part part : parts) {
+                if (part.queue == queue && !part.revoked && !part.job.isClaimed()) {
+                    pending += part.epcs.size();
+                }
+            }
+            if (pending > max) {
+                busiest = queue;
+                max = pending;
+            }
+        }
+        return busiest;
+    }
+
+    private List<PrinterQueue> available(final PrinterGroup group, final Set<PrinterQueue> excluded) {
+        final List<PrinterQueue> out = new ArrayList<>();
+        for (PrinterQueue queue : group.getMembers()) {
+            if (!excluded.contains(queue) && router.isHealthy(queue.getPrinter()) && !isDegraded(queue.getPrinter())) {
+                out.add(queue);
+            }
+        }
+        return out;
+    }
+
+    // healthy members, or every member when none is healthy
+    protected List<PrinterQueue> targets(final PrinterGroup group, final Set<PrinterQueue> excluded) throws PrinterException {
+        final List<PrinterQueue> members = group.getMembers();
+        if (members.isEmpty()) {
+            throw new PrinterException("Printer group '%s' is empty", group.getName());
+        }
+
+        final List<PrinterQueue> healthy = new ArrayList<>();
+        for (PrinterQueue queue : members) {
+            if (router.isHealthy(queue.getPrinter()) && !isDegraded(queue.getPrinter())) {
+                healthy.add(queue);
+            }
+        }
+        if (healthy.isEmpty()) {
+            // nothing better, but do not move labels away from them during the run
+            excluded.addAll(members);
+            return members;
+        }
+        return healthy;
+    }
+
+    /**
+     * Split labels so every printer is expected to finish at the same time.
+     * <p>
+     * Each printer i gets n(i) = T * speed(i) - queued(i), where T = (labels + sum(queued)) / sum(speed).
+     *
+     * @return number of labels per member.
+     */
+    protected int[] split(final int labels, final List<PrinterQueue> members) {
+        final int n = members.size();
+        final double[] share = new double[n];
+
+        double speeds = 0.0;
+        double queued = 0.0;
+        for (PrinterQueue queue : members) {
+            speeds += router.getLabelsPerSecond(queue.getPrinter());
+            queued += queue.getQueuedLabels();
+        }
+
+        final double target = (labels + queued) / speeds;
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            final PrinterQueue queue = members.get(i);
+            share[i] = Math.max(0.0, target * router.getLabelsPerSecond(queue.getPrinter()) - queue.getQueuedLabels());
+            total += share[i];
+        }
+
+        final int[] sizes = new int[n];
+        int assigned = 0;
+        for (int i = 0; i < n; i++) {
+            sizes[i] = (total > 0) ? (int) Math.floor(labels * share[i] / total) : labels / n;
+            assigned += sizes[i];
+        }
+
+        // rounding leftovers go to the fastest shares
+        for (int i = 0; assigned < labels; i = (i + 1) % n) {
+            if (share[i] > 0 || total <= 0) {
+                sizes[i]++;
+                assigned++;
+            }
+        }
+        return sizes;
+    }
+
+    // submit a range as chunks, rendered lazily by the queue
+    protected List<Part> submit(final PrinterQueue queue, final String sku, final List<String> range, final LabelRenderer<List<String>> renderer) {
+        final List<Part> parts = new ArrayList<>();
+        for (int offset = 0; offset < range.size(); offset += chunkSize) {
+            final List<String> chunk = range.subList(offset, Math.min(range.size(), offset + chunkSize));
+            final PrintJob job = new PrintJob(sku, chunk.size(), () -> renderer.render(chunk));
+            final Part part = new Part(queue, chunk, job);
+            queue.submit(job);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    // epcs of a part neither returned with its result nor seen on its job stream
+    private static List<String> unconfirmed(final Part part, final Set<String> printed) {
+        final List<String> out = new ArrayList<>();
+        for (String epc : part.epcs) {
+            if (!printed.contains(epc) && !part.confirmed.contains(epc)) {
+                out.add(epc);
+            }
+        }
+        return out;
+    }
+
+    private static Set<String> filter(final Set<String> printed, final List<String> requested) {
+        final Set<String> allowed = new HashSet<>(requested);
+        final Set<String> out = new LinkedHashSet<>();
+        for (String epc : printed) {
+            if (allowed.contains(epc)) {
+                out.add(epc);
+            }
+        }
+        return out;
+    }
+
+    protected static class Part {
+        protected final PrinterQueue queue;
+        protected final List<String> epcs;
+        protected final PrintJob job;
+        protected final CompletableFuture<Set<String>> result;
+        protected final Set<String> confirmed = ConcurrentHashMap.newKeySet();   // epcs returned so far (job stream)
+        protected final CompletableFuture<Void> drained = new CompletableFuture<>(); // job stream ended, 'confirmed' is final
+        protected boolean revoked = false;      // taken back before printing, epcs moved to other printers
+        protected boolean abandoned = false;    // canceled while printing, unconfirmed epcs moved to other printers
+
+        // obs.: subscribes to the job stream, so the part must be created before the job is submitted
+        protected Part(final PrinterQueue queue, final List<String> epcs, final PrintJob job) {
+            this.queue = queue;
+            this.epcs = epcs;
+            this.job = job;
+            this.result = job.getResult();
+            job.getEpcStream().subscribe(new EpcSubscriber() {
+                @Override
+                public void onSubscribe(final EpcSubscription s) {
+                    s.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final List<EpcEvent> batch) {
+                    for (EpcEvent event : batch) {
+                        confirmed.add(event.getEpc());
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    drained.complete(null);
+                }
+
+                @Override
+                public void onComplete() {
+                    drained.complete(null);
+                }
+            });
+        }
+
+        /**
+         * @return true once the job finished and every epc it returned was seen.
+         */
+        protected boolean isDone() {
+            return result.isDone() && drained.isDone();
+        }
+    }
+
+}
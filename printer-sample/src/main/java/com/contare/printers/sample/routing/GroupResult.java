@@ -0,0 +1,82 @@
+package com.contare.printers.sample.routing;
+
+import com.contare.printers.core.Printer;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Merged result of a SKU printed by a printer group.
+ * <p>
+ * Every EPC appears once, attributed to the printer that returned it.
+ */
+@Getter
+public class GroupResult {
+
+    private final String sku;
+    private final int requested;                                        // number of distinct epcs requested
+    private final Set<String> epcs = new TreeSet<>();                   // every epc printed
+    private final Map<Printer, Set<String>> byPrinter = new LinkedHashMap<>();
+    private final Map<Printer, Throwable> failures = new LinkedHashMap<>();
+
+    public GroupResult(final String sku, final int requested) {
+        this.sku = sku;
+        this.requested = requested;
+    }
+
+    /**
+     * Attribute printed epcs to a printer, epcs already attributed to another printer are ignored.
+     *
+     * @return number of epcs added.
+     */
+    public int add(final Printer printer, final Set<String> printed) {
+        final Set<String> own = byPrinter.computeIfAbsent(printer, (k) -> new TreeSet<>());
+        int added = 0;
+        for (String epc : printed) {
+            if (epcs.add(epc)) {
+                own.add(epc);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public void fail(final Printer printer, final Throwable error) {
+        failures.put(printer, error);
+    }
+
+    /**
+     * @return printer that printed an epc, null if it was not printed.
+     */
+    public Printer getPrinter(final String epc) {
+        for (Map.Entry<Printer, Set<String>> e : byPrinter.entrySet()) {
+            if (e.getValue().contains(epc)) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    public Map<Printer, Set<String>> getByPrinter() {
+        return Collections.unmodifiableMap(byPrinter);
+    }
+
+    public Map<Printer, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isComplete() {
+        return epcs.size() == requested;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{ sku = %s, requested = %d, printed = %d, printers = %d, failures = %d }",
+            getClass().getSimpleName(), sku, requested, epcs.size(), byPrinter.size(), failures.size());
+    }
+
+}
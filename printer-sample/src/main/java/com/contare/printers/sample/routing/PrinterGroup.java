@@ -0,0 +1,98 @@
+package com.contare.printers.sample.routing;
+
+import com.contare.printers.core.Printer;
+import com.contare.printers.core.queue.PrinterQueue;
+import lombok.Getter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Set of equivalent printers (same media, same labels), each one driven by its own {@link PrinterQueue}.
+ * <p>
+ * obs.: printers in a group are owned by their queue, they must not be printed to directly.
+ */
+public class PrinterGroup implements AutoCloseable {
+
+    private final Logger logger = Logger.getLogger(PrinterGroup.class);
+
+    @Getter
+    private final String name;
+
+    private final List<PrinterQueue> members = new CopyOnWriteArrayList<>();
+
+    public PrinterGroup(final String name) {
+        this.name = Objects.requireNonNull(name, "Group name is required");
+    }
+
+    /**
+     * Add a printer to the group, starting its queue.
+     *
+     * @param printer - printer to add
+     * @return printer queue.
+     */
+    public PrinterQueue add(final Printer printer) {
+        final PrinterQueue queue = find(printer);
+        if (queue != null) {
+            return queue;
+        }
+
+        final PrinterQueue created = new PrinterQueue(printer);
+        members.add(created);
+        logger.infof("Printer %s added to group '%s'", printer, name);
+        return created;
+    }
+
+    /**
+     * Remove a printer from the group, its queue is closed (and so is the printer).
+     *
+     * @param printer - printer to remove
+     * @return true if the printer was a member.
+     */
+    public boolean remove(final Printer printer) {
+        final PrinterQueue queue = find(printer);
+        if (queue == null || !members.remove(queue)) {
+            return false;
+        }
+
+        try {
+            queue.close();
+        } catch (Exception e) {
+            logger.errorf(e, "Error while closing printer: %s", printer);
+        }
+        return true;
+    }
+
+    public PrinterQueue find(final Printer printer) {
+        for (PrinterQueue queue : members) {
+            if (queue.getPrinter() == printer) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    public List<PrinterQueue> getMembers() {
+        return new ArrayList<>(members);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    @Override
+    public void close() {
+        for (PrinterQueue queue : members) {
+            try {
+                queue.close();
+            } catch (Exception e) {
+                logger.errorf(e, "Error while closing printer: %s", queue.getPrinter());
+            }
+        }
+        members.clear();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.contare.printers.sample.routing;
+
+import com.contare.printers.core.Printer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.objects.JobStats;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.sato.SatoMessage;
+import com.contare.printers.sato.SatoPrinter;
+import com.contare.printers.sato.enums.ErrorNumber;
+import com.contare.printers.sato.enums.PrinterStatus;
+import lombok.Getter;
+import lombok.Setter;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Chooses the printer of a group expected to finish a new job first.
+ * <p>
+ * Expected completion = (labels already queued + labels of the new job) / printer speed, where speed is:
+ * - the speed measured from the 'Q' countdown (SATO), or
+ * - the speed of the last job, or
+ * - a default speed for printers that never printed.
+ * <p>
+ * Printers in error (last status offline/error, error number other than online/offline, or last job not completed)
+ * only receive jobs when every printer of the group is in error.
+ * <p>
+ * obs.: a printer in error gets no new jobs, so its last status / job would never change. Both expire after
+ * 'recoveryTime' milliseconds, the printer then gets the next job as a probe and is back in error if it fails again.
+ */
+public class PrinterRouter {
+
+    public static final double DEFAULT_LABELS_PER_SECOND = 2.0;
+    public static final long DEFAULT_RECOVERY_TIME = 30_000;
+
+    /**
+     * Time (milliseconds) after which the error state of a printer is no longer trusted.
+     */
+    @Getter
+    @Setter
+    private long recoveryTime = DEFAULT_RECOVERY_TIME;
+
+    private final Logger logger = Logger.getLogger(PrinterRouter.class);
+
+    /**
+     * @param group  - printer group
+     * @param labels - labels of the new job
+     * @return queue of the printer expected to finish the job first.
+     * @throws PrinterException if the group is empty.
+     */
+    public PrinterQueue select(final PrinterGroup group, final int labels) throws PrinterException {
+        final List<PrinterQueue> members = group.getMembers();
+        if (members.isEmpty()) {
+            throw new PrinterException("Printer group '%s' is empty", group.getName());
+        }
+
+        PrinterQueue best = null;
+        double bestEstimate = Double.MAX_VALUE;
+        boolean bestHealthy = false;
+        for (PrinterQueue queue : members) {
+            final boolean healthy = isHealthy(queue.getPrinter());
+            final double estimate = estimate(queue, labels);
+
+            // healthy printers always win over printers in error
+            if (best == null || (healthy && !bestHealthy) || (healthy == bestHealthy && estimate < bestEstimate)) {
+                best = queue;
+                bestEstimate = estimate;
+                bestHealthy = healthy;
+            }
+        }
+
+        if (!bestHealthy) {
+            logger.warnf("Every printer of group '%s' is in error, routing to %s", group.getName(), best.getPrinter());
+        }
+        logger.debugf("Routing to %s: %d labels, expected completion %.1f s", best.getPrinter(), labels, bestEstimate);
+        return best;
+    }
+
+    /**
+     * @param queue  - printer queue
+     * @param labels - labels of the new job
+     * @return expected time to finish every queued job plus the new one (seconds).
+     */
+    public double estimate(final PrinterQueue queue, final int labels) {
+        return (queue.getQueuedLabels() + labels) / getLabelsPerSecond(queue.getPrinter());
+    }
+
+    public double getLabelsPerSecond(final Printer printer) {
+        if (printer instanceof SatoPrinter) {
+            final double measured = ((SatoPrinter) printer).getLabelsPerSecond();
+            if (measured > 0) {
+                return measured;
+            }
+        }
+
+        final JobStats last = printer.getLastJob();
+        if (last != null && last.getLabelsPerSecond() > 0) {
+            return last.getLabelsPerSecond();
+        }
+        return DEFAULT_LABELS_PER_SECOND;
+    }
+
+    public boolean isHealthy(final Printer printer) {
+        final long now = System.currentTimeMillis();
+        if (printer instanceof SatoPrinter) {
+            final SatoPrinter sato = (SatoPrinter) printer;
+            final SatoMessage.PrinterInfo status = sato.getLastStatus();
+            if (status != null && now - sato.getLastStatusAt() < recoveryTime) {
+                if (status.getPs() == PrinterStatus.OFFLINE || status.getPs() == PrinterStatus.ERROR) {
+                    return false;
+                }
+                if (status.getEn() != null && status.getEn() != ErrorNumber.ONLINE && status.getEn() != ErrorNumber.OFFLINE) {
+                    return false;
+                }
+            }
+        }
+
+        final JobStats last = printer.getLastJob();
+        // a skipped or canceled job is not a printer failure
+        return (last == null) || last.isCompleted() || last.isCanceled() || now - last.getTimestamp() >= recoveryTime;
+    }
+
+}
@@ -0,0 +1,362 @@
+package com.contare.printers.sample;
+
+import com.contare.printers.core.BasePrinter;
+import com.contare.printers.core.bulk.LabelRenderer;
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.queue.PrinterQueue;
+import com.contare.printers.sample.routing.GroupPrintException;
+import com.contare.printers.sample.routing.GroupPrinter;
+import com.contare.printers.sample.routing.GroupResult;
+import com.contare.printers.sample.routing.PrinterGroup;
+import com.contare.printers.sample.routing.PrinterRouter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupPrinterTest {
+
+    private final LabelRenderer<List<String>> renderer = (epcs) -> {
+        final StringBuilder sb = new StringBuilder();
+        for (String epc : epcs) {
+            sb.append("epc:").append(epc).append(';');
+        }
+        return sb.toString();
+    };
+
+    private static List<String> epcs(final int count) {
+        final List<String> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            out.add(String.format("%024X", i));
+        }
+        return out;
+    }
+
+    @Test
+    @DisplayName("Fan out a SKU across the group with per-printer attribution")
+    public void fanOut() throws PrinterException {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+        final TestPrinter c = new TestPrinter("c");
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+            group.add(c);
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setChunkSize(50);
+
+            final List<String> epcs = epcs(300);
+            epcs.add(epcs.get(0)); // duplicates are printed once
+
+            final GroupResult result = printer.print(group, "812345", epcs, renderer);
+            assertTrue(result.isComplete());
+            assertEquals(300, result.getEpcs().size());
+
+            // disjoint ranges, every printer got a share
+            int total = 0;
+            for (Set<String> printed : result.getByPrinter().values()) {
+                assertEquals(100, printed.size());
+                total += printed.size();
+            }
+            assertEquals(300, total);
+            assertEquals(a, result.getPrinter(String.format("%024X", 0)));
+            assertEquals(c, result.getPrinter(String.format("%024X", 299)));
+        }
+    }
+
+    @Test
+    @DisplayName("Keep the EPCs of healthy printers when one fails")
+    public void partialFailure() {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+            b.failing = true;
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setRebalance(false);
+
+            final GroupPrintException e = assertThrows(GroupPrintException.class, () -> printer.print(group, "812345", epcs(10), renderer));
+            assertEquals(5, e.getResult().getEpcs().size());
+            assertTrue(e.getResult().getFailures().containsKey(b));
+            assertFalse(e.getResult().isComplete());
+        }
+    }
+
+    @Test
+    @DisplayName("Resubmit the labels of a failing printer to the healthy ones")
+    public void failover() throws PrinterException {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+        final TestPrinter c = new TestPrinter("c");
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+            group.add(c);
+            b.failing = true;
+            c.limit = 10; // stops mid-job, job not completed
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setChunkSize(20);
+            printer.setCheckInterval(20);
+
+            final GroupResult result = printer.print(group, "812345", epcs(90), renderer);
+            assertTrue(result.isComplete());
+            assertTrue(result.getFailures().containsKey(b));
+            assertEquals(10, result.getByPrinter().get(c).size());
+            assertEquals(80, result.getByPrinter().get(a).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Resubmit only the labels a failing printer did not encode")
+    public void failoverPartialJob() throws PrinterException {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+            b.failAfter = 3; // encodes 3 tags of its job, then throws
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setCheckInterval(20);
+
+            final GroupResult result = printer.print(group, "812345", epcs(10), renderer);
+            assertTrue(result.isComplete());
+            assertTrue(result.getFailures().containsKey(b));
+            assertEquals(3, result.getByPrinter().get(b).size());
+            assertEquals(7, result.getByPrinter().get(a).size());
+            // a got the 2 labels b did not encode, not its whole job
+            assertEquals(2, a.getLastJob().getLabels());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle printers take the pending labels of a slow printer")
+    public void workStealing() throws PrinterException {
+        final TestPrinter slow = new TestPrinter("slow");
+        final TestPrinter fast = new TestPrinter("fast");
+        slow.delay = 20;
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(slow);
+            group.add(fast);
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setChunkSize(10);
+            printer.setCheckInterval(20);
+
+            final GroupResult result = printer.print(group, "812345", epcs(200), renderer);
+            assertTrue(result.isComplete());
+            assertTrue(result.getByPrinter().get(fast).size() > 150);
+
+            int total = 0;
+            for (Set<String> printed : result.getByPrinter().values()) {
+                total += printed.size();
+            }
+            assertEquals(200, total);
+        }
+    }
+
+    @Test
+    @DisplayName("Cancel the job of a printer in error through its queue and move its labels")
+    public void abandonPrintingJob() throws Exception {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+        b.delay = 50;
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+
+            final GroupPrinter printer = new GroupPrinter();
+            printer.setChunkSize(10);
+            printer.setCheckInterval(20);
+
+            final Thread error = new Thread(() -> {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                b.fail();
+            });
+            error.start();
+
+            final GroupResult result = printer.print(group, "812345", epcs(40), renderer);
+            error.join();
+
+            // the cancel was sent by the queue worker, never by the group thread
+            assertTrue(result.isComplete());
+            assertTrue(b.canceledBy.startsWith("printer-queue-worker-"));
+            assertTrue(result.getByPrinter().get(b).size() < 10);
+            assertEquals(40 - result.getByPrinter().get(b).size(), result.getByPrinter().get(a).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Route jobs to a printer again once its error state expires")
+    public void recoverFromError() throws Exception {
+        final TestPrinter a = new TestPrinter("a");
+        final TestPrinter b = new TestPrinter("b");
+
+        try (PrinterGroup group = new PrinterGroup("line-1")) {
+            group.add(a);
+            group.add(b);
+
+            final PrinterRouter router = new PrinterRouter();
+            router.setRecoveryTime(200);
+
+            // b stops mid-job, jobs go to a
+            b.limit = 1;
+            final PrinterQueue queue = group.find(b);
+            assertEquals(1, queue.submit("epc:1;epc:2;", "812345", 2).get(5, TimeUnit.SECONDS).size());
+            assertFalse(router.isHealthy(b));
+            assertEquals(a, router.select(group, 10).getPrinter());
+
+            // error state expired, b gets the next job as a probe and is healthy again once it completes
+            Thread.sleep(250);
+            b.limit = -1;
+            assertTrue(router.isHealthy(b));
+            assertEquals(queue, router.select(group, 10));
+            assertEquals(2, queue.submit("epc:3;epc:4;", "812345", 2).get(5, TimeUnit.SECONDS).size());
+            assertTrue(router.isHealthy(b));
+            assertTrue(b.getLastJob().isCompleted());
+
+            // a skipped sku is not a printer failure
+            b.ignore("999");
+            assertTrue(queue.submit("epc:5;", "999", 1).get(5, TimeUnit.SECONDS).isEmpty());
+            assertTrue(b.getLastJob().isCanceled());
+            assertTrue(router.isHealthy(b));
+        }
+    }
+
+    /**
+     * Prints every 'epc:&lt;value&gt;' found in the job content.
+     */
+    static class TestPrinter extends BasePrinter {
+
+        private static final Pattern EPC = Pattern.compile("epc:([^;]+)");
+
+        private final String name;
+        volatile boolean failing = false;
+        volatile long delay = 0;    // time spent printing each label (milliseconds)
+        volatile int limit = -1;    // labels printed before the printer stops (-1 = unlimited)
+        volatile int failAfter = -1; // labels printed before the printer throws (-1 = never)
+        volatile String canceledBy; // thread that sent the last cancel
+
+        TestPrinter(final String name) {
+            super("127.0.0.1", 0);
+            this.name = name;
+        }
+
+        @Override
+        protected String createLabel(final String ip, final Integer port) {
+            return "Test@" + ip + ":" + port;
+        }
+
+        @Override
+        protected boolean canCancelWhilePrinting(final boolean ignore) {
+            return true;
+        }
+
+        void ignore(final String sku) {
+            ignoreSku(sku);
+        }
+
+        @Override
+        public Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException {
+            setSku(sku);
+            if (failing) {
+                throw new PrinterException("Printer %s is failing", name);
+            }
+
+            final Set<String> results = new TreeSet<>();
+            final long start = System.currentTimeMillis();
+            final Matcher matcher = EPC.matcher(content);
+            boolean completed = true;
+            while (matcher.find()) {
+                if (isIgnoredSku(sku) || limit == 0 || handleCancelRequest()) {
+                    completed = false;
+                    break;
+                }
+                if (limit > 0) limit--;
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PrinterException(e, "Interrupted");
+                }
+                if (results.add(matcher.group(1))) {
+                    receiveEpc(matcher.group(1), null);
+                }
+                if (failAfter > 0 && --failAfter == 0) {
+                    recordJob(sku, epcs, results.size(), Math.max(1, System.currentTimeMillis() - start), false);
+                    throw new PrinterException("Printer %s failed after %d labels", name, results.size());
+                }
+            }
+            recordJob(sku, epcs, results.size(), Math.max(1, System.currentTimeMillis() - start), completed);
+            return results;
+        }
+
+        @Override
+        public Set<String> print(final InputStream content, final String sku, final Integer epcs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onReceiveEpc(final String epc, final String tid) {
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public boolean resume() {
+            return true;
+        }
+
+        @Override
+        public boolean pause() {
+            return true;
+        }
+
+        @Override
+        public boolean cancel() {
+            canceledBy = Thread.currentThread().getName();
+            return true;
+        }
+
+        // error reported by the printer while it prints (e.g. head open)
+        void fail() {
+            recordJob(sku, 0, 0, 1, false);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+}
@@ -2,9 +2,18 @@ package com.contare.printers.sato;
 
 import com.contare.printers.core.BasePrinter;
 import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.core.io.NewlineInputStream;
+import com.contare.printers.core.types.SendFunction;
+import com.contare.printers.core.utils.FileUtils;
 import com.contare.printers.sato.enums.PrinterStatus;
+import com.contare.printers.sato.enums.ReceiveBufferStatus;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -12,6 +21,37 @@ import java.util.TreeSet;
 
 public class SatoPrinter extends BasePrinter {
 
+    private static final byte ETX = 0x03;
+
+    /**
+     * Flow control interval (bytes): when positive, jobs are sent in label-sized blocks and the receive buffer status
+     * is checked every 'flowControl' bytes, pausing the transmission while it is near full. Disabled by default.
+     */
+    @Getter
+    @Setter
+    private int flowControl = 0;
+
+    /**
+     * Last status reported by the printer, null if it was never queried.
+     */
+    @Getter
+    private volatile SatoMessage.PrinterInfo lastStatus;
+
+    /**
+     * Time the last status was received (epoch milliseconds), 0 if it was never queried.
+     */
+    @Getter
+    private volatile long lastStatusAt = 0;
+
+    /**
+     * Print speed measured from the 'Q' (remaining labels) countdown, smoothed across jobs. 0 if unknown.
+     */
+    @Getter
+    private volatile double labelsPerSecond = 0.0;
+
+    private int lastQ = -1;         // last 'Q' value of the current job
+    private long lastQAt = 0;       // time 'Q' last decreased (milliseconds)
+
     public SatoPrinter(final String ip, final Integer port) {
         super(ip, port);
     }
@@ -25,22 +65,81 @@ public class SatoPrinter extends BasePrinter {
     public Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException {
         Objects.requireNonNull(content, "SBPL content cannot be null");
 
-        // list of results
+        // normalize label file content (bare LF only, same bytes as the stream overloads)
+        final String normalized = NewlineInputStream.normalize(content);
+
+        final Set<String> results = new TreeSet<>();
+        return print(sku, epcs, results, false, (conn) -> {
+            // skip setup commands already applied on this printer
+            final String filtered = SatoSettingsFilter.filter(normalized, settings);
+
+            // full content is only logged at debug level, bulk jobs may have tens of MB
+            logger.infof("SBPL size: '%d' chars", filtered.length());
+            logger.debug("------------------------------------------------------------");
+            logger.debug("# SBPL");
+            logger.debug("------------------------------------------------------------");
+            logger.debug(filtered);
+            logger.debug("------------------------------------------------------------");
+
+            // send SBPL to printer
+            if (flowControl > 0) {
+                sendWithFlowControl(new ByteArrayInputStream(filtered.getBytes(conn.getCharset())), results);
+            } else {
+                conn.send(filtered);
+            }
+        });
+    }
+
+    @Override
+    public Set<String> print(final InputStream content, final String sku, final Integer epcs) throws PrinterException {
+        Objects.requireNonNull(content, "SBPL content cannot be null");
+
         final Set<String> results = new TreeSet<>();
+        return print(sku, epcs, results, false, (conn) -> {
+            // stream SBPL to printer, normalizing line endings on the fly
+            final InputStream normalized = new NewlineInputStream(content);
+            final long sent = (flowControl > 0) ? sendWithFlowControl(normalized, results) : conn.send(normalized);
+            logger.infof("SBPL streamed: '%d' bytes", sent);
+        });
+    }
 
-        // normalize label file content
-        final String normalized = content.replaceAll("\n", "\r\n");
+    @Override
+    public Set<String> print(final Path content, final String sku, final Integer epcs) throws PrinterException {
+        Objects.requireNonNull(content, "SBPL content cannot be null");
+
+        try {
+            if (flowControl > 0 || FileUtils.hasBareLineFeed(content)) {
+                // line endings must be normalized or the transmission paced, so bytes have to go through the heap
+                return super.print(content, sku, epcs);
+            }
+        } catch (IOException e) {
+            throw new PrinterException(e, "Error reading file '%s'", content);
+        }
 
+        return print(sku, epcs, new TreeSet<>(), true, (conn) -> {
+            // file is already normalized, transfer it without copies
+            final long sent = conn.send(content);
+            logger.infof("SBPL transferred: '%d' bytes", sent);
+        });
+    }
+
+    // transfer: the job sends a file, so the socket is backed by a channel
+    private Set<String> print(final String sku, final Integer epcs, final Set<String> results, final boolean transfer, final SendFunction sender) throws PrinterException {
         setSku(sku);
 
+        boolean completed = false;
+        long sentAt = System.currentTimeMillis();
+        bufferPressure = false;
+        lastQ = -1;
+
         try {
             if (isIgnoredSku(sku)) {
                 logger.warnf("Aborting printing of sku '%s'", sku);
                 return results;
             }
 
-            // make sure the printer is connected
-            connection.reconnect();
+            // make sure the printer is connected (socket only, applied settings are kept)
+            connection.reconnect(transfer);
 
             // clear printer buffer
             final boolean canceled = queryCancel();
@@ -53,14 +152,10 @@ public class SatoPrinter extends BasePrinter {
 
             logger.infof("Sku: '%s'", sku);
             logger.infof("Number of EPCs: '%d'", epcs);
-            logger.info("------------------------------------------------------------");
-            logger.info("# SBPL");
-            logger.info("------------------------------------------------------------");
-            logger.info(normalized);
-            logger.info("------------------------------------------------------------");
 
             // send SBPL to printer
-            connection.send(normalized);
+            sentAt = System.currentTimeMillis();
+            sender.send(connection);
 
             // wait a little since se send a big file to the printer
             try {
@@ -86,6 +181,12 @@ public class SatoPrinter extends BasePrinter {
             while ((elapsed = System.currentTimeMillis() - start) < READ_TIMEOUT && remaining > 0) {
                 logger.infof("Socket iteration '%d' (%d ms)", iteration, elapsed);
 
+                // cancel posted by another thread (e.g. the printer queue), sent from here so requests do not interleave
+                if (handleCancelRequest()) {
+                    logger.infof("Sku '%s' canceled while printing", sku);
+                    break;
+                }
+
                 // request printer status and EPC/TID
                 final List<SatoMessage> messages = this.queryStatusAndTags();
                 logger.debugf("Socket received '%d' messages", messages.size());
@@ -99,11 +200,17 @@ public class SatoPrinter extends BasePrinter {
                         final SatoMessage.PrinterInfo obj = (SatoMessage.PrinterInfo) m;
                         logger.infof("Printer status: %s", obj);
 
+                        track(obj);
                         if (!Objects.equals(obj, prev)) {
                             remaining = obj.getQ();
+                            receiveStatus(obj);
                             onUpdateStatus(obj);
                         }
 
+                        if (obj.getRs() != null && obj.getRs() != ReceiveBufferStatus.BUFFER_AVAILABLE) {
+                            bufferPressure = true;
+                        }
+
                         if (remaining == 0 && obj.getPs() == PrinterStatus.STANDBY) {
                             stableCount++;
                             logger.debugf("Printer status is STANDBY, count: %d", stableCount);
@@ -119,14 +226,7 @@ public class SatoPrinter extends BasePrinter {
                     }
                     // collect epc
                     else if (m instanceof SatoMessage.TagInfo) {
-                        final SatoMessage.TagInfo obj = (SatoMessage.TagInfo) m;
-                        logger.infof("Tag info: %s", obj);
-
-                        final String epc = obj.getEpc();
-                        final String tid = obj.getTid();
-                        if (epc != null && results.add(epc)) {
-                            onReceiveEpc(epc, tid);
-                        }
+                        collect((SatoMessage.TagInfo) m, results);
                     }
                     // command failed
                     else if (m instanceof SatoMessage.Nak) {
@@ -141,15 +241,31 @@ public class SatoPrinter extends BasePrinter {
 
                 iteration++;
             }
+
+            completed = (remaining == 0);
         } catch (IOException e) {
             throw new PrinterException(e, "Error communicating with printer");
         } finally {
             printing = false;
 
+            recordJob(sku, epcs, results.size(), System.currentTimeMillis() - sentAt, completed);
+
+            // settings sent with this job are only trusted when the printer finished it
+            if (completed) {
+                settings.commit();
+            } else if (lastJob.isCanceled()) {
+                // skipped or canceled on purpose, the printer state is still known
+                settings.discard();
+            } else {
+                settings.invalidate();
+            }
+
             try {
                 // cancel printing
                 // if the loop broke because of an error, the printer will continue anyway, so let's try to force it to stop
-                cancel();
+                if (!queryCancel()) {
+                    logger.warn("Failed to cancel printing.");
+                }
             } catch (PrinterException e) {
                 logger.error("Error cancelling printing job", e);
             }
@@ -165,6 +281,115 @@ public class SatoPrinter extends BasePrinter {
         return results;
     }
 
+    /**
+     * Send SBPL in label-sized blocks, pausing the transmission while the printer receive buffer is near full.
+     * <p>
+     * obs.: blocks are cut at frame boundaries (ETX), the buffer status is queried every 'flowControl' bytes.
+     *
+     * @param in      - SBPL content
+     * @param results - list of epcs printed, tags reported while waiting are collected into it
+     * @return number of bytes sent.
+     */
+    protected long sendWithFlowControl(final InputStream in, final Set<String> results) throws IOException, PrinterException {
+        final byte[] buf = new byte[8_192];
+        long total = 0;
+        long pending = 0; // bytes sent since the last buffer check
+
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (buf[i] == ETX && (pending + (i + 1 - start)) >= flowControl) {
+                    connection.send(buf, start, i + 1 - start);
+                    total += i + 1 - start;
+                    pending = 0;
+                    start = i + 1;
+
+                    awaitReceiveBuffer(results);
+                }
+            }
+            if (start < n) {
+                connection.send(buf, start, n - start);
+                total += n - start;
+                pending += n - start;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Block while the printer reports its receive buffer near full / full.
+     *
+     * @param results - list of epcs printed, tags reported while waiting are collected into it
+     * @throws PrinterException if the buffer does not drain before the read timeout.
+     */
+    protected void awaitReceiveBuffer(final Set<String> results) throws PrinterException {
+        final long start = System.currentTimeMillis();
+        while (true) {
+            boolean full = false;
+            for (SatoMessage m : queryStatusAndTags()) {
+                if (m instanceof SatoMessage.PrinterInfo) {
+                    final SatoMessage.PrinterInfo obj = (SatoMessage.PrinterInfo) m;
+                    track(obj);
+                    if (obj.getRs() != null && obj.getRs() != ReceiveBufferStatus.BUFFER_AVAILABLE) {
+                        bufferPressure = true;
+                        full = true;
+                    }
+                } else if (m instanceof SatoMessage.TagInfo) {
+                    collect((SatoMessage.TagInfo) m, results);
+                }
+            }
+
+            if (!full) {
+                return;
+            }
+
+            final long elapsed = System.currentTimeMillis() - start;
+            if (elapsed >= READ_TIMEOUT) {
+                throw new PrinterException("Printer receive buffer still full after %d ms", elapsed);
+            }
+            logger.debugf("Printer receive buffer near full, pausing transmission (%d ms)", elapsed);
+
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrinterException(e, "Interrupted while waiting for printer receive buffer");
+            }
+        }
+    }
+
+    // keep the last status and measure the print speed from the 'Q' countdown
+    private void track(final SatoMessage.PrinterInfo obj) {
+        lastStatus = obj;
+        lastStatusAt = System.currentTimeMillis();
+
+        final Integer q = obj.getQ();
+        if (q == null) return;
+
+        final long now = System.currentTimeMillis();
+        if (lastQ < 0 || q > lastQ) {
+            // new job
+            lastQ = q;
+            lastQAt = now;
+        } else if (q < lastQ && now > lastQAt) {
+            final double rate = ((lastQ - q) * 1_000.0) / (now - lastQAt);
+            labelsPerSecond = (labelsPerSecond > 0) ? (0.7 * labelsPerSecond + 0.3 * rate) : rate;
+            lastQ = q;
+            lastQAt = now;
+        }
+    }
+
+    private void collect(final SatoMessage.TagInfo obj, final Set<String> results) throws PrinterException {
+        logger.infof("Tag info: %s", obj);
+
+        final String epc = obj.getEpc();
+        final String tid = obj.getTid();
+        if (epc != null && results.add(epc)) {
+            receiveEpc(epc, tid);
+        }
+    }
+
     public void onUpdateStatus(final SatoMessage.PrinterInfo curr) {
         logger.debugf("Printer status changed to: %s", curr);
     }
@@ -208,6 +433,7 @@ public class SatoPrinter extends BasePrinter {
 
     @Override
     public boolean cancel() throws PrinterException {
+        settings.discard();
         final boolean cancelled = queryCancel();
         if (cancelled) {
             logger.info("Printing cancelled.");
@@ -217,6 +443,12 @@ public class SatoPrinter extends BasePrinter {
         return cancelled;
     }
 
+    @Override
+    protected boolean canCancelWhilePrinting(final boolean ignore) {
+        // the print loop polls 'handleCancelRequest' between status queries
+        return true;
+    }
+
     // COMMANDS
 
     /**
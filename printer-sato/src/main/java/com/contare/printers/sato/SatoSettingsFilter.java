@@ -0,0 +1,129 @@
+package com.contare.printers.sato;
+
+import com.contare.printers.core.cache.SettingsCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Strips SBPL setup commands that would not change the printer configuration.
+ * <p>
+ * Behaviour:
+ * - Scans the content for 0x02 (STX) .. 0x03 (ETX) framed blocks.
+ * - Blocks containing a print quantity (ESC + Q) are label bodies and are kept untouched.
+ * - Every other block is a setup block: known setting commands (e.g. ESC + CS8) already applied are removed,
+ * the remaining ones are staged into the cache.
+ * - A setup block left without any command besides ESC + A / ESC + Z is dropped entirely.
+ */
+public final class SatoSettingsFilter {
+
+    private static final char STX = '\u0002';
+    private static final char ETX = '\u0003';
+    private static final char DC2 = '\u0012';
+    private static final char ESC = '\u001B';
+
+    // setting commands that persist on the printer between jobs ("PH" is left out: DC2 + PH is the cancel/status command)
+    private static final Set<String> SETTINGS = new HashSet<>(Arrays.asList("PI", "IP", "IG", "PM", "PO", "CS", "#F", "A1", "A3"));
+
+    private SatoSettingsFilter() { /* utility */ }
+
+    /**
+     * Remove redundant setup commands from a SBPL job.
+     *
+     * @param content - normalized SBPL content
+     * @param cache   - printer settings cache
+     * @return SBPL content without redundant setup commands.
+     */
+    public static String filter(final String content, final SettingsCache cache) {
+        if (content == null || cache == null) return content;
+
+        final StringBuilder out = new StringBuilder(content.length());
+        int idx = 0;
+        while (idx < content.length()) {
+            final int start = content.indexOf(STX, idx);
+            final int end = (start < 0) ? -1 : content.indexOf(ETX, start + 1);
+            if (start < 0 || end < 0) {
+                // no more complete frames
+                out.append(content, idx, content.length());
+                break;
+            }
+
+            out.append(content, idx, start);
+            out.append(filterFrame(content.substring(start + 1, end), cache));
+            idx = end + 1;
+        }
+        return out.toString();
+    }
+
+    private static String filterFrame(final String payload, final SettingsCache cache) {
+        final String framed = STX + payload + ETX;
+
+        // split payload into commands, each one starting with its control character
+        int first = 0;
+        while (first < payload.length() && !isControl(payload.charAt(first))) first++;
+        final String prefix = payload.substring(0, first);
+
+        final List<String> tokens = new ArrayList<>();
+        int i = first;
+        while (i < payload.length()) {
+            int j = i + 1;
+            while (j < payload.length() && !isControl(payload.charAt(j))) j++;
+            tokens.add(payload.substring(i, j));
+            i = j;
+        }
+
+        // label body, never touch it
+        for (String token : tokens) {
+            if (token.charAt(0) == ESC && commandName(command(token)).equals("Q")) {
+                return framed;
+            }
+        }
+
+        final StringBuilder out = new StringBuilder(framed.length());
+        boolean keep = false;
+        for (String token : tokens) {
+            final String command = command(token);
+            final String name = commandName(command);
+            if (SETTINGS.contains(name)) {
+                final String key = token.charAt(0) + name;
+                final String value = command.substring(name.length());
+                if (cache.isApplied(key, value)) {
+                    continue;
+                }
+                cache.stage(key, value);
+                keep = true;
+            } else if (!name.equals("A") && !name.equals("Z")) {
+                keep = true;
+            }
+            out.append(token);
+        }
+
+        if (!keep) {
+            return "";
+        }
+        return STX + prefix + out.toString() + ETX;
+    }
+
+    private static boolean isControl(final char c) {
+        return c == ESC || c == DC2;
+    }
+
+    // command text without control character and trailing CR/LF
+    private static String command(final String token) {
+        return token.substring(1).trim();
+    }
+
+    // e.g. "CS8" -> "CS", "A1V00312H1200" -> "A1", "#F10" -> "#F", "A" -> "A"
+    private static String commandName(final String command) {
+        if (command.length() >= 2 && (command.charAt(0) == '#' || (command.charAt(0) == 'A' && Character.isDigit(command.charAt(1))))) {
+            return command.substring(0, 2);
+        }
+        int n = 0;
+        while (n < command.length() && n < 2 && Character.isLetter(command.charAt(n))) n++;
+        return command.substring(0, n);
+    }
+
+}
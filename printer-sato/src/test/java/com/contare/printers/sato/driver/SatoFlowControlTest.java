@@ -0,0 +1,187 @@
+package com.contare.printers.sato.driver;
+
+import com.contare.printers.core.exceptions.PrinterException;
+import com.contare.printers.sato.SatoMessage;
+import com.contare.printers.sato.SatoPrinter;
+import com.contare.printers.sato.enums.ReceiveBufferStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SatoFlowControlTest {
+
+    private static final String LABEL = "\u0002A%02dLABEL-CONTENT\u0003"; // 18 bytes per label
+
+    private ServerSocket server;
+    private Thread reader;
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+        reader = new Thread(() -> {
+            try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+                final byte[] buf = new byte[256];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    synchronized (received) {
+                        received.write(buf, 0, n);
+                    }
+                }
+            } catch (IOException ignored) {
+                // server closed
+            }
+        }, "sato-flow-control-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Cut the transmission at ETX, pause while the receive buffer is full and collect tags while waiting")
+    public void pauseWhileBufferFull() throws Exception {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            content.append(String.format(LABEL, i));
+        }
+        final byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        final ScriptedPrinter printer = new ScriptedPrinter(server.getLocalPort());
+        printer.setFlowControl(30); // checked after every second label (36 bytes)
+        printer.script(status(ReceiveBufferStatus.BUFFER_FULL), tag("303402422000000000000001"));
+        printer.script(status(ReceiveBufferStatus.BUFFER_NEAR_FULL));
+        printer.script(status(ReceiveBufferStatus.BUFFER_AVAILABLE), tag("303402422000000000000002"));
+        printer.script(status(ReceiveBufferStatus.BUFFER_AVAILABLE));
+
+        // small reads, so frames span several reads
+        final Set<String> results = new TreeSet<>();
+        final long sent = printer.send(new ChunkedInputStream(bytes, 7), results);
+        printer.close();
+
+        assertEquals(bytes.length, sent);
+        assertEquals(Arrays.asList("303402422000000000000001", "303402422000000000000002"), new ArrayList<>(results));
+        assertTrue(printer.isBufferPressure());
+
+        // paused after 2 labels until the buffer was available again, then checked after 4 labels
+        assertEquals(Arrays.asList(36, 36, 36, 72), printer.sentAtQuery);
+        for (int at : printer.sentAtQuery) {
+            assertEquals(0x03, bytes[at - 1], "blocks must end at ETX");
+        }
+        assertTrue(printer.queriedAt.get(2) - printer.queriedAt.get(0) >= 400, "transmission must pause between polls");
+
+        waitFor(bytes.length);
+        synchronized (received) {
+            assertArrayEquals(bytes, received.toByteArray());
+        }
+    }
+
+    // wait until the server has read at least 'count' bytes, then let in-flight bytes arrive
+    private int waitFor(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 2_000;
+        int size;
+        while ((size = size()) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        return size();
+    }
+
+    private int size() {
+        synchronized (received) {
+            return received.size();
+        }
+    }
+
+    private static SatoMessage.PrinterInfo status(final ReceiveBufferStatus rs) {
+        return new SatoMessage.PrinterInfo("", 0, null, rs, null, null, null, null, null);
+    }
+
+    private static SatoMessage.TagInfo tag(final String epc) {
+        return new SatoMessage.TagInfo("", 0, "1", "N", epc, null);
+    }
+
+    /**
+     * Sato printer answering status queries from a script, recording how many bytes the server had read at each query.
+     */
+    private class ScriptedPrinter extends SatoPrinter {
+
+        private final Queue<List<SatoMessage>> responses = new LinkedList<>();
+        private final List<Integer> sentAtQuery = new ArrayList<>();
+        private final List<Long> queriedAt = new ArrayList<>();
+
+        ScriptedPrinter(final int port) throws IOException {
+            super("127.0.0.1", port);
+            connection.connect();
+        }
+
+        void script(final SatoMessage... messages) {
+            responses.add(Arrays.asList(messages));
+        }
+
+        long send(final InputStream in, final Set<String> results) throws IOException, PrinterException {
+            return sendWithFlowControl(in, results);
+        }
+
+        boolean isBufferPressure() {
+            return bufferPressure;
+        }
+
+        @Override
+        protected List<SatoMessage> queryStatusAndTags() throws PrinterException {
+            try {
+                sentAtQuery.add(waitFor(sentAtQuery.isEmpty() ? 1 : sentAtQuery.get(sentAtQuery.size() - 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrinterException(e, "Interrupted");
+            }
+            queriedAt.add(System.currentTimeMillis());
+
+            final List<SatoMessage> next = responses.poll();
+            return (next != null) ? next : Collections.emptyList();
+        }
+
+    }
+
+    /**
+     * Input stream returning at most 'chunk' bytes per read.
+     */
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+
+        private final int chunk;
+
+        ChunkedInputStream(final byte[] buf, final int chunk) {
+            super(buf);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.contare.printers.sato.driver;
+
+import com.contare.printers.core.cache.SettingsCache;
+import com.contare.printers.sato.SatoSettingsFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SatoSettingsFilterTest {
+
+    private static final String SETUP = "\u0002\r\n\u0012PI,SB\r\n\u001BA\r\n\u001BIG0\r\n\u001BCS8\r\n\u001BA1V00312H1200\r\n\u001BZ\r\n\u0003\r\n";
+    private static final String BODY = "\u0002\r\n\u001BA\r\n\u001BIP0e:h,epc:3074257BF7194E4000001A85,fsw:0;\r\n\u001BQ1\r\n\u001BZ\r\n\u0003\r\n";
+
+    @Test
+    @DisplayName("Keep setup commands until the job completes")
+    public void keepUntilCommit() {
+        final SettingsCache cache = new SettingsCache();
+        assertEquals(SETUP + BODY, SatoSettingsFilter.filter(SETUP + BODY, cache));
+        assertEquals(0, cache.size());
+
+        // job failed, nothing was applied
+        cache.invalidate();
+        assertEquals(SETUP + BODY, SatoSettingsFilter.filter(SETUP + BODY, cache));
+    }
+
+    @Test
+    @DisplayName("Drop setup block already applied")
+    public void dropAppliedSetup() {
+        final SettingsCache cache = new SettingsCache();
+        SatoSettingsFilter.filter(SETUP + BODY, cache);
+        cache.commit();
+
+        assertEquals("\r\n" + BODY, SatoSettingsFilter.filter(SETUP + BODY, cache));
+    }
+
+    @Test
+    @DisplayName("Strip only settings that did not change")
+    public void stripUnchangedSettings() {
+        final SettingsCache cache = new SettingsCache();
+        SatoSettingsFilter.filter(SETUP, cache);
+        cache.commit();
+
+        final String changed = SETUP.replace("CS8", "CS5");
+        final String result = SatoSettingsFilter.filter(changed + BODY, cache);
+        assertEquals("\u0002\r\n\u001BA\r\n\u001BCS5\r\n\u001BZ\r\n\u0003\r\n" + BODY, result);
+    }
+
+    @Test
+    @DisplayName("Keep applied settings when a job is canceled")
+    public void keepAppliedOnCancel() {
+        final SettingsCache cache = new SettingsCache();
+        SatoSettingsFilter.filter(SETUP, cache);
+        cache.commit();
+
+        // canceled with a new darkness staged, only that setting is sent again
+        SatoSettingsFilter.filter(SETUP.replace("CS8", "CS5") + BODY, cache);
+        cache.discard();
+        final String result = SatoSettingsFilter.filter(SETUP + BODY, cache);
+        assertEquals("\u0002\r\n\u001BA\r\n\u001BCS8\r\n\u001BZ\r\n\u0003\r\n" + BODY, result);
+    }
+
+    @Test
+    @DisplayName("Never touch label bodies")
+    public void keepLabelBody() {
+        final SettingsCache cache = new SettingsCache();
+        SatoSettingsFilter.filter(BODY, cache);
+        cache.commit();
+
+        assertEquals(BODY, SatoSettingsFilter.filter(BODY, cache));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -3,9 +3,12 @@ package com.contare.printers.zebra;
 import com.contare.printers.core.BasePrinter;
 import com.contare.printers.core.exceptions.PrinterException;
 import com.contare.printers.core.objects.RawPacket;
+import com.contare.printers.core.types.SendFunction;
 import com.contare.printers.zebra.enums.RFIDOperation;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -23,13 +26,49 @@ public class ZebraPrinter extends BasePrinter {
 
     @Override
     public Set<String> print(final String content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, false, (conn) -> {
+            // skip setup commands already applied on this printer
+            final String filtered = ZebraSettingsFilter.filter(content, settings);
+
+            logger.infof("Send content -> sku: %s - number of epcs: %d", sku, epcs);
+            logger.debug("------------------------------------------------------------");
+            logger.debug(filtered);
+            logger.debug("------------------------------------------------------------");
+
+            conn.send(filtered);
+        });
+    }
+
+    @Override
+    public Set<String> print(final InputStream content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, false, (conn) -> {
+            logger.infof("Stream content -> sku: %s - number of epcs: %d", sku, epcs);
+            final long sent = conn.send(content);
+            logger.infof("Content streamed: %d bytes", sent);
+        });
+    }
+
+    @Override
+    public Set<String> print(final Path content, final String sku, final Integer epcs) throws PrinterException {
+        return print(sku, epcs, true, (conn) -> {
+            logger.infof("Transfer file -> sku: %s - number of epcs: %d", sku, epcs);
+            final long sent = conn.send(content);
+            logger.infof("File transferred: %d bytes", sent);
+        });
+    }
+
+    // transfer: the job sends a file, so the socket is backed by a channel (kept by the reconnects of the commands below)
+    private Set<String> print(final String sku, final Integer epcs, final boolean transfer, final SendFunction sender) throws PrinterException {
         final Set<String> results = new TreeSet<>();
 
         this.sku = sku;
 
+        boolean completed = false;
+        long sentAt = System.currentTimeMillis();
+
         try {
-            // make sure the printer is connected
-            connection.reconnect();
+            // make sure the printer is connected (socket only, applied settings are kept)
+            connection.reconnect(transfer);
 
             // cancelar a impressao de todos os sku de uma impressão
             if (_skus.contains(this.sku)) {
@@ -37,21 +76,14 @@ public class ZebraPrinter extends BasePrinter {
                 return results;
             }
 
-            // make sure the printer is connected
-            connection.reconnect();
-
             this.printing = true;                   // marcado como false quando a impressão é cancelada ou quando recebemos o comando de finalização.
 
             this.CancelCmd();                          // cancela jobs e limpa buffer para começar a impressão
             this.resume();                            // despausa caso a impressora esteja em pausa
             this.sendXAHLXZ();                      // limpa o buffer em firmware antigo e novo
 
-            logger.infof("Send content -> sku: %s - number of epcs: %d", sku, epcs);
-            logger.info("------------------------------------------------------------");
-            logger.info(content);
-            logger.info("------------------------------------------------------------");
-
-            connection.send(content);
+            sentAt = System.currentTimeMillis();
+            sender.send(connection);
 
             try {
                 Thread.sleep(500);
@@ -60,6 +92,7 @@ public class ZebraPrinter extends BasePrinter {
             }
 
             ZebraMessage prev = null;
+            boolean broken = false;                 // iteration limit reached, the job did not finish
             int iteration = 0;                      // loop iterations
             long elapsed = 0L;
             long last = System.currentTimeMillis();
@@ -90,7 +123,7 @@ public class ZebraPrinter extends BasePrinter {
                                 if (obj.getOperation() == RFIDOperation.WRITE) {
                                     final String epc = obj.getData();
                                     if (epc != null && results.add(epc)) {
-                                        onReceiveEpc(epc, null);
+                                        receiveEpc(epc, null);
                                     }
                                 }
                             } else {
@@ -113,7 +146,8 @@ public class ZebraPrinter extends BasePrinter {
 
                         if (iteration > MAX_ITERATIONS) {
                             logger.error("Break free from infinite loop infinito");
-                            break;
+                            broken = true;
+                            break mainLoop;
                         }
                     }
                 } catch (IOException e) {
@@ -122,9 +156,22 @@ public class ZebraPrinter extends BasePrinter {
 
                 iteration++;
             }
+
+            completed = !broken;
         } catch (IOException e) {
             throw new PrinterException(e, "Error printing");
         } finally {
+            recordJob(sku, epcs, results.size(), System.currentTimeMillis() - sentAt, completed);
+
+            // settings sent with this job are only trusted when it went through without errors
+            if (completed) {
+                settings.commit();
+            } else if (lastJob.isCanceled()) {
+                // skipped or canceled on purpose, the printer state is still known
+                settings.discard();
+            } else {
+                settings.invalidate();
+            }
             // stop printing
             printing = false;
             // close printer connection
@@ -181,6 +228,7 @@ public class ZebraPrinter extends BasePrinter {
             connection.reconnect();
 
             printing = false;
+            settings.discard();
 
             logger.info("Socket send - cancel printing: ~JA");
 
@@ -0,0 +1,133 @@
+package com.contare.printers.zebra;
+
+import com.contare.printers.core.cache.SettingsCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Strips ZPL setup commands that would not change the printer configuration.
+ * <p>
+ * Behaviour:
+ * - Formats (^XA .. ^XZ) made only of setting commands (e.g. ^RS, ^RW, ^PW) are setup formats:
+ * settings already applied are removed and the remaining ones are staged into the cache.
+ * - A setup format left empty is dropped entirely.
+ * - Standalone setting commands outside formats (e.g. ~RV) are filtered the same way.
+ * - Formats containing any other command (label bodies) are kept untouched.
+ */
+public final class ZebraSettingsFilter {
+
+    // setting commands that persist on the printer between formats
+    private static final Set<String> SETTINGS = new HashSet<>(Arrays.asList("RS", "RW", "RV", "MM", "MN", "MT", "MD", "PW", "LL", "LS", "LT", "PR", "SD", "PO", "JM"));
+
+    // commands changing the command prefix, content is not tokenizable with the default '^' and '~'
+    private static final Set<String> PREFIXES = new HashSet<>(Arrays.asList("CC", "CT", "CD"));
+
+    private ZebraSettingsFilter() { /* utility */ }
+
+    /**
+     * Remove redundant setup commands from a ZPL job.
+     *
+     * @param content - ZPL content
+     * @param cache   - printer settings cache
+     * @return ZPL content without redundant setup commands.
+     */
+    public static String filter(final String content, final SettingsCache cache) {
+        if (content == null || cache == null) return content;
+
+        int first = 0;
+        while (first < content.length() && !isPrefix(content.charAt(first))) first++;
+
+        final List<String> tokens = new ArrayList<>();
+        int i = first;
+        while (i < content.length()) {
+            int j = i + 1;
+            while (j < content.length() && !isPrefix(content.charAt(j))) j++;
+            final String token = content.substring(i, j);
+            if (PREFIXES.contains(name(token))) {
+                return content;
+            }
+            tokens.add(token);
+            i = j;
+        }
+
+        final StringBuilder out = new StringBuilder(content.length());
+        out.append(content, 0, first);
+
+        int idx = 0;
+        while (idx < tokens.size()) {
+            final String token = tokens.get(idx);
+            if (name(token).equals("XA")) {
+                // collect the whole format
+                int end = idx + 1;
+                while (end < tokens.size() && !name(tokens.get(end)).equals("XZ")) end++;
+                final List<String> format = tokens.subList(idx, Math.min(end + 1, tokens.size()));
+                out.append(filterFormat(format, cache));
+                idx = end + 1;
+            } else {
+                if (!isRedundant(token, cache)) {
+                    out.append(token);
+                }
+                idx++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static String filterFormat(final List<String> format, final SettingsCache cache) {
+        final StringBuilder raw = new StringBuilder();
+        for (String token : format) {
+            raw.append(token);
+        }
+
+        // label body, never touch it
+        for (String token : format) {
+            final String name = name(token);
+            if (!name.equals("XA") && !name.equals("XZ") && !SETTINGS.contains(name)) {
+                return raw.toString();
+            }
+        }
+
+        final StringBuilder out = new StringBuilder(raw.length());
+        boolean keep = false;
+        for (String token : format) {
+            if (SETTINGS.contains(name(token))) {
+                if (isRedundant(token, cache)) {
+                    continue;
+                }
+                keep = true;
+            }
+            out.append(token);
+        }
+        return keep ? out.toString() : "";
+    }
+
+    // check the token against the cache, staging it when it changes the printer state
+    private static boolean isRedundant(final String token, final SettingsCache cache) {
+        final String name = name(token);
+        if (!SETTINGS.contains(name)) {
+            return false;
+        }
+
+        final String key = token.charAt(0) + name;
+        final String value = token.substring(1 + name.length()).trim();
+        if (cache.isApplied(key, value)) {
+            return true;
+        }
+        cache.stage(key, value);
+        return false;
+    }
+
+    private static boolean isPrefix(final char c) {
+        return c == '^' || c == '~';
+    }
+
+    // ZPL command names are always two characters (e.g. "^XA" -> "XA")
+    private static String name(final String token) {
+        return (token.length() >= 3) ? token.substring(1, 3).toUpperCase() : token.substring(1).toUpperCase();
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.contare.printers.zebra;
+
+import com.contare.printers.core.cache.SettingsCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZebraSettingsFilterTest {
+
+    private static final String SETUP = "^XA\r\n^RS8\r\n^PW812\r\n^LL1218\r\n^XZ\r\n";
+    private static final String BODY = "^XA\r\n^RFW,H^FD3074257BF7194E4000001A85^FS\r\n^PQ1\r\n^XZ\r\n";
+
+    @Test
+    @DisplayName("Keep setup commands until the job completes")
+    public void keepUntilCommit() {
+        final SettingsCache cache = new SettingsCache();
+        assertEquals(SETUP + BODY, ZebraSettingsFilter.filter(SETUP + BODY, cache));
+        assertEquals(0, cache.size());
+
+        // job failed, nothing was applied
+        cache.invalidate();
+        assertEquals(SETUP + BODY, ZebraSettingsFilter.filter(SETUP + BODY, cache));
+    }
+
+    @Test
+    @DisplayName("Drop setup format already applied")
+    public void dropAppliedSetup() {
+        final SettingsCache cache = new SettingsCache();
+        ZebraSettingsFilter.filter(SETUP + BODY, cache);
+        cache.commit();
+
+        assertEquals(BODY, ZebraSettingsFilter.filter(SETUP + BODY, cache));
+    }
+
+    @Test
+    @DisplayName("Strip only settings that did not change")
+    public void stripUnchangedSettings() {
+        final SettingsCache cache = new SettingsCache();
+        ZebraSettingsFilter.filter(SETUP, cache);
+        cache.commit();
+
+        final String changed = SETUP.replace("PW812", "PW600");
+        final String result = ZebraSettingsFilter.filter(changed + BODY, cache);
+        assertEquals("^XA\r\n^PW600\r\n^XZ\r\n" + BODY, result);
+    }
+
+    @Test
+    @DisplayName("Never touch label bodies")
+    public void keepLabelBody() {
+        final SettingsCache cache = new SettingsCache();
+        ZebraSettingsFilter.filter(BODY, cache);
+        cache.commit();
+
+        assertEquals(BODY, ZebraSettingsFilter.filter(BODY, cache));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Leave content changing the command prefix untouched")
+    public void keepPrefixChange() {
+        final SettingsCache cache = new SettingsCache();
+        ZebraSettingsFilter.filter(SETUP, cache);
+        cache.commit();
+
+        final String content = "^CC+\r\n+XA\r\n+PW812\r\n+XZ\r\n" + SETUP;
+        assertEquals(content, ZebraSettingsFilter.filter(content, cache));
+    }
+
+}